@@ -0,0 +1,108 @@
+package com.andreibozhek.jobscheduler.tasks.api;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON response of one GET /tasks page of 100 tasks.
+ * <p>
+ * "raw" is TaskResponse, which writes the stored payload text as is. "tree"
+ * is the previous TaskResponse, which parsed every payload into a JsonNode
+ * and serialized the tree again. The old version is kept here only as a
+ * baseline.
+ * <p>
+ * Allocation is the main difference; run with the GC profiler to see it as
+ * gc.alloc.rate.norm (bytes per page):
+ * ./gradlew jmh -PjmhIncludes=TaskPageSerializationBenchmark -PjmhProfilers=gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskPageSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"raw", "tree"})
+    String implementation;
+
+    @Param({"64", "1024"})
+    int payloadBytes;
+
+    private ObjectMapper objectMapper;
+    private List<Task> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            String payload = "{\"message\": \"" + "x".repeat(payloadBytes) + "\", \"index\": " + i
+                    + ", \"tags\": [\"a\", \"b\"], \"nested\": {\"flag\": true}}";
+            page.add(new Task(UUID.randomUUID(), "echo", payload, TaskStatus.PENDING, now,
+                    0, 3, null, null, null, now, now, 0));
+        }
+    }
+
+    /**
+     * Maps the page to responses and writes the JSON array, like the controller.
+     */
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        if ("raw".equals(implementation)) {
+            return objectMapper.writeValueAsBytes(page.stream().map(TaskResponse::from).toList());
+        }
+        return objectMapper.writeValueAsBytes(page.stream().map(this::treeResponse).toList());
+    }
+
+    private TreeTaskResponse treeResponse(Task t) {
+        try {
+            return new TreeTaskResponse(t.id(), t.type(), objectMapper.readTree(t.payloadJson()), t.status(),
+                    t.runAt(), t.attempt(), t.maxAttempts(), t.error(), t.priority());
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * The TaskResponse used before payloads were passed through as raw JSON.
+     */
+    public record TreeTaskResponse(
+            UUID            id,
+            String          type,
+            JsonNode        payload,
+            TaskStatus      status,
+            OffsetDateTime  runAt,
+            int             attempt,
+            int             maxAttempts,
+            String          error,
+            int             priority
+    ) {}
+}
@@ -0,0 +1,208 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many tasks per second concurrent workers can claim.
+ * <p>
+ * The benchmark compares the single statement claim in TaskRepository with the
+ * previous three statement claim (SELECT ... FOR UPDATE SKIP LOCKED, UPDATE with
+ * an IN list, and a re-SELECT). The old version is kept here only as a baseline.
+ * <p>
+ * Each iteration starts with a pool of due PENDING tasks. The claimedTasks
+ * counter is the number to compare: once the pool is drained, claims return
+ * empty batches and the plain operation count is no longer meaningful.
+ * <p>
+ * Run with: ./gradlew jmh -PjmhIncludes=ClaimDueTasksBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClaimDueTasksBenchmark {
+
+    private static final List<String> TYPES = List.of("echo");
+
+    @Param({"single-statement", "three-statement"})
+    String implementation;
+
+    @Param("10")
+    int batchSize;
+
+    @Param("200000")
+    int poolSize;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private TaskRepository repo;
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        postgres = new PostgreSQLContainer<>("postgres:16");
+        postgres.start();
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(postgres.getJdbcUrl());
+        config.setUsername(postgres.getUsername());
+        config.setPassword(postgres.getPassword());
+        config.setMaximumPoolSize(40);
+        dataSource = new HikariDataSource(config);
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        jdbc = new JdbcTemplate(dataSource);
+        tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repo = new TaskRepository(jdbc);
+
+        jdbc.update("""
+                INSERT INTO tasks(id, type, payload, status, run_at)
+                SELECT gen_random_uuid(), 'echo', '{"message":"bench"}'::jsonb, 'PENDING', now() - interval '1 minute'
+                FROM generate_series(1, ?)
+                """, poolSize);
+        jdbc.execute("VACUUM ANALYZE tasks");
+    }
+
+    /**
+     * Puts every task back to the due PENDING state before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void resetTasks() {
+        jdbc.update("""
+                UPDATE tasks
+                SET status = 'PENDING',
+                    attempt = 0,
+                    locked_by = NULL,
+                    locked_until = NULL
+                WHERE status <> 'PENDING'
+                """);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        dataSource.close();
+        postgres.stop();
+    }
+
+    /**
+     * Per-thread counters reported next to the operation throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ClaimCounters {
+        public long claimedTasks;
+        public long emptyClaims;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            claimedTasks = 0;
+            emptyClaims = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<Task> claim1Worker(ClaimCounters counters) {
+        return claim(counters);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<Task> claim8Workers(ClaimCounters counters) {
+        return claim(counters);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public List<Task> claim32Workers(ClaimCounters counters) {
+        return claim(counters);
+    }
+
+    private List<Task> claim(ClaimCounters counters) {
+        String workerId = "bench-" + Thread.currentThread().getId();
+        List<Task> claimed = "single-statement".equals(implementation)
+                ? repo.claimDueTasks(workerId, TYPES, batchSize, 30)
+                : claimThreeStatements(workerId, batchSize, 30);
+
+        if (claimed.isEmpty()) {
+            counters.emptyClaims++;
+        }
+        counters.claimedTasks += claimed.size();
+        return claimed;
+    }
+
+    /**
+     * The claim implementation used before the single statement version.
+     */
+    private List<Task> claimThreeStatements(String workerId, int batchSize, int lockSeconds) {
+        return tx.execute(status -> {
+            List<UUID> ids = jdbc.query("""
+                    SELECT id
+                    FROM tasks
+                    WHERE status = 'PENDING'
+                    AND run_at <= now()
+                    ORDER BY run_at
+                    FOR UPDATE SKIP LOCKED
+                    LIMIT ?
+                    """,
+                    (rs, rowNum) -> UUID.fromString(rs.getString("id")),
+                    batchSize
+            );
+
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+
+            String inSql = String.join(",", ids.stream().map(x -> "?").toList());
+
+            ArrayList<Object> params = new ArrayList<>();
+            params.add(workerId);
+            params.add(lockSeconds);
+            params.addAll(ids);
+
+            jdbc.update("""
+                    UPDATE tasks
+                    SET status = 'RUNNING',
+                        locked_by = ?,
+                        locked_until = now() + (? * interval '1 second'),
+                        attempt = attempt + 1
+                    WHERE id IN (%s)
+                    """.formatted(inSql), params.toArray());
+
+            return jdbc.query("""
+                    SELECT %s FROM tasks
+                    WHERE id IN (%s)
+                    """.formatted(TaskRepository.TASK_COLUMNS, inSql), repo.taskRowMapper(), ids.toArray());
+        });
+    }
+}
@@ -0,0 +1,205 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import com.andreibozhek.jobscheduler.tasks.domain.TaskCompletion;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how many task results per second can be written.
+ * <p>
+ * "per-task" is the previous write path: three autocommit statements per task
+ * (insert the attempt, finish the attempt, mark the task DONE). "batched" is
+ * TaskRepository.completeAll, which writes batchSize results in one transaction.
+ * <p>
+ * Compare the completedTasks counter, it counts task results, while the
+ * operation count of the batched variant counts batches.
+ * <p>
+ * Run with: ./gradlew jmh -PjmhIncludes=TaskCompletionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskCompletionBenchmark {
+
+    @Param({"per-task", "batched"})
+    String implementation;
+
+    @Param("100")
+    int batchSize;
+
+    @Param("200000")
+    int poolSize;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TaskRepository repo;
+    private List<UUID> taskIds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        postgres = new PostgreSQLContainer<>("postgres:16");
+        postgres.start();
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(postgres.getJdbcUrl());
+        config.setUsername(postgres.getUsername());
+        config.setPassword(postgres.getPassword());
+        config.setMaximumPoolSize(16);
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+        dataSource = new HikariDataSource(config);
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        jdbc = new JdbcTemplate(dataSource);
+        repo = transactional(new TaskRepository(jdbc));
+
+        jdbc.update("""
+                INSERT INTO tasks(id, type, payload, status, run_at, attempt, locked_by, locked_until)
+                SELECT gen_random_uuid(), 'echo', '{"message":"bench"}'::jsonb, 'RUNNING', now(), 1,
+                       'bench', now() + interval '1 hour'
+                FROM generate_series(1, ?)
+                """, poolSize);
+        taskIds = jdbc.queryForList("SELECT id FROM tasks", UUID.class);
+    }
+
+    /**
+     * Puts every task back to RUNNING and removes attempts before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void resetTasks() {
+        jdbc.update("TRUNCATE task_attempts");
+        jdbc.update("""
+                UPDATE tasks
+                SET status = 'RUNNING',
+                    locked_by = 'bench',
+                    locked_until = now() + interval '1 hour'
+                WHERE status <> 'RUNNING'
+                """);
+        jdbc.execute("VACUUM ANALYZE tasks");
+        next.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        dataSource.close();
+        postgres.stop();
+    }
+
+    /**
+     * Per-thread counter reported next to the operation throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class CompletionCounters {
+        public long completedTasks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            completedTasks = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void complete8Workers(CompletionCounters counters) {
+        if ("per-task".equals(implementation)) {
+            completeOne(counters);
+        } else {
+            completeBatch(counters);
+        }
+    }
+
+    private void completeOne(CompletionCounters counters) {
+        int i = next.getAndIncrement();
+        if (i >= taskIds.size()) {
+            return;
+        }
+        UUID id = taskIds.get(i);
+
+        jdbc.update("""
+                INSERT INTO task_attempts(task_id, attempt, status)
+                VALUES (?, ?, 'STARTED')
+                """, id, 1);
+        jdbc.update("""
+                UPDATE task_attempts
+                SET finished_at = now(),
+                    status = ?,
+                    error = ?
+                WHERE task_id = ? AND attempt = ?
+                """, "SUCCESS", null, id, 1);
+        jdbc.update("""
+                UPDATE tasks
+                SET status = 'DONE',
+                    locked_by = NULL,
+                    locked_until = NULL,
+                    error = NULL
+                WHERE id = ?
+                """, id);
+        counters.completedTasks++;
+    }
+
+    private void completeBatch(CompletionCounters counters) {
+        int from = next.getAndAdd(batchSize);
+        int to = Math.min(from + batchSize, taskIds.size());
+        if (from >= to) {
+            return;
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        List<TaskCompletion> batch = new ArrayList<>(to - from);
+        for (UUID id : taskIds.subList(from, to)) {
+            batch.add(new TaskCompletion(id, "bench", 1, TaskStatus.DONE, null, 0, now, now));
+        }
+
+        repo.completeAll(batch);
+        counters.completedTasks += batch.size();
+    }
+
+    /**
+     * Applies @Transactional of the repository without starting Spring.
+     */
+    private TaskRepository transactional(TaskRepository target) {
+        ProxyFactory proxy = new ProxyFactory(target);
+        proxy.setProxyTargetClass(true);
+        proxy.addAdvice(new TransactionInterceptor(
+                new DataSourceTransactionManager(dataSource),
+                new AnnotationTransactionAttributeSource()
+        ));
+        return (TaskRepository) proxy.getProxy();
+    }
+}
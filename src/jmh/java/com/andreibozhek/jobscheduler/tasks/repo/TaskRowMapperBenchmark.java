@@ -0,0 +1,106 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.RowMapper;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of turning one tasks row into a Task.
+ * <p>
+ * The rows are read once into a scrollable result set, which the PostgreSQL
+ * driver keeps in memory. Every invocation maps the same rows again, so the
+ * score only contains the Java side: column access by index, decoding of the
+ * driver, UUID and timestamp parsing and the Task allocation. The database
+ * round trip is left out on purpose, ClaimDueTasksBenchmark covers it.
+ * <p>
+ * Run with: ./gradlew jmh -PjmhIncludes=TaskRowMapperBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskRowMapperBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({"64", "4096"})
+    int payloadBytes;
+
+    private PostgreSQLContainer<?> postgres;
+    private Connection connection;
+    private Statement statement;
+    private ResultSet rows;
+    private RowMapper<Task> mapper;
+
+    @Setup(Level.Trial)
+    public void loadRows() throws SQLException {
+        postgres = new PostgreSQLContainer<>("postgres:16");
+        postgres.start();
+
+        connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .load()
+                .migrate();
+
+        try (Statement insert = connection.createStatement()) {
+            insert.execute("""
+                    INSERT INTO tasks(id, type, payload, status, run_at, attempt, locked_by, locked_until, error)
+                    SELECT gen_random_uuid(), 'echo',
+                           jsonb_build_object('message', repeat('x', %d)),
+                           'RUNNING', now(), 1, 'bench-worker', now() + interval '30 seconds', NULL
+                    FROM generate_series(1, %d)
+                    """.formatted(payloadBytes, ROWS));
+        }
+
+        statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rows = statement.executeQuery("SELECT " + TaskRepository.TASK_COLUMNS + " FROM tasks");
+        mapper = new TaskRepository(null).taskRowMapper();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        rows.close();
+        statement.close();
+        connection.close();
+        postgres.stop();
+    }
+
+    /**
+     * Maps all rows of the result set; the score is per row.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapRow(Blackhole bh) throws SQLException {
+        rows.beforeFirst();
+        int rowNum = 0;
+        while (rows.next()) {
+            bh.consume(mapper.mapRow(rows, rowNum++));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.andreibozhek.jobscheduler.tasks.service;
+
+import com.andreibozhek.jobscheduler.tasks.api.CreateTaskRequest;
+import com.andreibozhek.jobscheduler.tasks.api.TaskResponse;
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.handler.EchoTaskHandler;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskHandler;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskPayloadBinder;
+import com.andreibozhek.jobscheduler.tasks.repo.PayloadProperties;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Java side of the task API: TaskService.create and TaskResponse.from.
+ * <p>
+ * The repository does not write anything, so the score contains type
+ * normalization, payload serialization, validation of runAt and the Task
+ * allocation of create, and the mapping of the response. Together they are
+ * the CPU cost of one POST /tasks without the database and JSON output.
+ * The inline limit is raised above both payload sizes, so no payload is
+ * offloaded to the (absent) database.
+ * <p>
+ * Run with: ./gradlew jmh -PjmhIncludes=TaskCreateBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskCreateBenchmark {
+
+    @Param({"64", "4096"})
+    int payloadBytes;
+
+    private TaskService service;
+    private CreateTaskRequest request;
+    private Task task;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        List<TaskHandler> handlers = List.of(new EchoTaskHandler());
+        service = new TaskService(
+                new DiscardingTaskRepository(),
+                objectMapper,
+                validator,
+                handlers,
+                new TaskPayloadBinder(handlers, objectMapper, validator),
+                new TaskPayloadStore(null, new PayloadProperties(1 << 20, 10 << 20, 1)),
+                10_000,
+                10_000
+        );
+
+        JsonNode payload = objectMapper.readTree(
+                "{\"message\":\"" + "x".repeat(payloadBytes) + "\",\"count\":3}");
+        request = new CreateTaskRequest(
+                "Echo", payload, OffsetDateTime.now().plusYears(1), null, null, null, null);
+        task = service.create(request);
+    }
+
+    @Benchmark
+    public Task create() {
+        return service.create(request);
+    }
+
+    @Benchmark
+    public TaskResponse toResponse() {
+        return TaskResponse.from(task);
+    }
+
+    /**
+     * Repository that accepts plain inserts and drops them.
+     */
+    private static final class DiscardingTaskRepository extends TaskRepository {
+        DiscardingTaskRepository() {
+            super(null);
+        }
+
+        @Override
+        public void insert(Task t) {
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.JobschedulerApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end throughput and pickup latency of running worker nodes.
+ * <p>
+ * Every node is a full application context with its own TaskWorker, all of
+ * them on one PostgreSQL. One operation submits a burst of echo tasks that are
+ * due now in a single INSERT and waits until all of them are DONE, so the score is
+ * the time to drain a burst, including LISTEN/NOTIFY wake-up, claims, execution
+ * and batched completion.
+ * <p>
+ * After each measured iteration the harness reads tasks/sec and the pickup
+ * latency (task_attempts.started_at - tasks.run_at) percentiles from the
+ * database. They are written per parameter combination to
+ * build/reports/jmh/worker-throughput-n{nodes}-c{concurrency}.json next to the
+ * JMH results.
+ * <p>
+ * Run with: ./gradlew jmh -PjmhIncludes=WorkerThroughputBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WorkerThroughputBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkerThroughputBenchmark.class);
+
+    private static final long DRAIN_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
+    @Param({"1", "2", "4"})
+    int nodes;
+
+    @Param("16")
+    int concurrency;
+
+    @Param("10000")
+    int tasks;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private final List<Map<String, Object>> iterations = new ArrayList<>();
+    private long drainNanos;
+
+    @Setup(Level.Trial)
+    public void startNodes() {
+        postgres = new PostgreSQLContainer<>("postgres:16");
+        postgres.start();
+
+        for (int i = 0; i < nodes; i++) {
+            contexts.add(new SpringApplicationBuilder(JobschedulerApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties(
+                            "spring.main.banner-mode=off",
+                            "spring.datasource.url=" + postgres.getJdbcUrl(),
+                            "spring.datasource.username=" + postgres.getUsername(),
+                            "spring.datasource.password=" + postgres.getPassword(),
+                            "logging.level.root=WARN",
+                            "tasks.archive.enabled=false",
+                            "tasks.schedules.enabled=false",
+                            "worker.concurrency=" + concurrency
+                    )
+                    .run());
+        }
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(postgres.getJdbcUrl());
+        config.setUsername(postgres.getUsername());
+        config.setPassword(postgres.getPassword());
+        config.setMaximumPoolSize(2);
+        dataSource = new HikariDataSource(config);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTasks() {
+        jdbc.update("DELETE FROM task_attempts");
+        jdbc.update("DELETE FROM tasks");
+        jdbc.execute("VACUUM ANALYZE tasks");
+    }
+
+    /**
+     * Submits one burst and waits until the workers have finished it.
+     */
+    @Benchmark
+    public long drainBurst() throws InterruptedException {
+        long start = System.nanoTime();
+        jdbc.update("""
+                INSERT INTO tasks(id, type, payload, status, run_at)
+                SELECT gen_random_uuid(), 'echo', '{"message":"bench"}'::jsonb, 'PENDING', now()
+                FROM generate_series(1, ?)
+                """, tasks);
+
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        long open;
+        while ((open = countOpen()) > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException(open + " tasks still open after " + DRAIN_TIMEOUT_MS + " ms");
+            }
+            Thread.sleep(5);
+        }
+        drainNanos = System.nanoTime() - start;
+        return drainNanos;
+    }
+
+    /**
+     * Records tasks/sec and pickup latency of a measured iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void recordIteration(IterationParams params) {
+        if (params.getType() != IterationType.MEASUREMENT) {
+            return;
+        }
+        Map<String, Object> row = jdbc.queryForMap("""
+                SELECT count(*) AS tasks,
+                       percentile_disc(0.50) WITHIN GROUP (ORDER BY l.ms) AS pickup_p50_ms,
+                       percentile_disc(0.90) WITHIN GROUP (ORDER BY l.ms) AS pickup_p90_ms,
+                       percentile_disc(0.99) WITHIN GROUP (ORDER BY l.ms) AS pickup_p99_ms,
+                       max(l.ms) AS pickup_max_ms
+                FROM (
+                    SELECT extract(epoch FROM a.started_at - t.run_at) * 1000 AS ms
+                    FROM tasks t
+                    JOIN task_attempts a ON a.task_id = t.id AND a.attempt = 1
+                ) l
+                """);
+
+        Map<String, Object> iteration = new LinkedHashMap<>();
+        iteration.put("tasks", row.get("tasks"));
+        iteration.put("drainMs", TimeUnit.NANOSECONDS.toMillis(drainNanos));
+        iteration.put("tasksPerSecond", tasks * 1e9 / drainNanos);
+        iteration.put("pickupP50Ms", row.get("pickup_p50_ms"));
+        iteration.put("pickupP90Ms", row.get("pickup_p90_ms"));
+        iteration.put("pickupP99Ms", row.get("pickup_p99_ms"));
+        iteration.put("pickupMaxMs", row.get("pickup_max_ms"));
+        iterations.add(iteration);
+        log.info("worker throughput: {}", iteration);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopNodes() throws IOException {
+        writeReport();
+        contexts.forEach(ConfigurableApplicationContext::close);
+        dataSource.close();
+        postgres.stop();
+    }
+
+    /**
+     * Writes the parameters, every measured iteration and the median iteration
+     * by tasks/sec as JSON.
+     */
+    private void writeReport() throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("benchmark", getClass().getSimpleName());
+        report.put("nodes", nodes);
+        report.put("concurrency", concurrency);
+        report.put("tasks", tasks);
+        report.put("median", iterations.stream()
+                .sorted(Comparator.comparingDouble(i -> (double) i.get("tasksPerSecond")))
+                .skip(iterations.size() / 2)
+                .findFirst()
+                .orElse(null));
+        report.put("iterations", iterations);
+
+        Path dir = Path.of("build", "reports", "jmh");
+        Files.createDirectories(dir);
+        Path file = dir.resolve("worker-throughput-n%d-c%d.json".formatted(nodes, concurrency));
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        log.info("worker throughput: report written to {}", file.toAbsolutePath());
+    }
+
+    private long countOpen() {
+        Long open = jdbc.queryForObject("""
+                SELECT count(*)
+                FROM tasks
+                WHERE status IN ('PENDING', 'RUNNING')
+                """, Long.class);
+        return open == null ? 0 : open;
+    }
+}
@@ -23,6 +23,14 @@ public class ApiExceptionHandler {
         return pd;
     }
 
+    @ExceptionHandler(ScheduleNotFoundException.class)
+    public ProblemDetail scheduleNotFound(ScheduleNotFoundException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.NOT_FOUND);
+        pd.setTitle("Not Found");
+        pd.setDetail(ex.getMessage());
+        return pd;
+    }
+
     @ExceptionHandler(TaskConflictException.class)
     public ProblemDetail conflict(TaskConflictException ex) {
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.CONFLICT);
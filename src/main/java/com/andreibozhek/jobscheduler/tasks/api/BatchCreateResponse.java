@@ -0,0 +1,11 @@
+package com.andreibozhek.jobscheduler.tasks.api;
+
+import java.util.List;
+
+public record BatchCreateResponse(
+        int                     accepted,
+        int                     rejected,
+        List<BatchItemResult>   items
+) {
+
+}
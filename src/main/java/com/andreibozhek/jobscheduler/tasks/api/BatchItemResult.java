@@ -0,0 +1,17 @@
+package com.andreibozhek.jobscheduler.tasks.api;
+
+import java.util.UUID;
+
+public record BatchItemResult(
+        int     index,
+        UUID    id,
+        String  error
+) {
+    public static BatchItemResult created(int index, UUID id) {
+        return new BatchItemResult(index, id, null);
+    }
+
+    public static BatchItemResult rejected(int index, String error) {
+        return new BatchItemResult(index, null, error);
+    }
+}
@@ -0,0 +1,23 @@
+package com.andreibozhek.jobscheduler.tasks.api;
+
+import com.andreibozhek.jobscheduler.tasks.domain.MisfirePolicy;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.time.OffsetDateTime;
+
+public record CreateScheduleRequest(
+        @NotBlank           String          type,
+        @NotNull            JsonNode        payload,
+                            String          cron,
+        @Min(1000)          Long            fixedRateMs,
+                            String          timeZone,
+                            OffsetDateTime  startAt,
+        @Positive @Max(5)   Integer         maxAttempts,
+        @Min(0) @Max(9)     Integer         priority,
+                            MisfirePolicy   misfirePolicy
+) {}
@@ -2,15 +2,22 @@ package com.andreibozhek.jobscheduler.tasks.api;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 
 import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
 
 public record CreateTaskRequest(
         @NotBlank           String          type,
         @NotNull            JsonNode        payload,
         @NotNull            OffsetDateTime  runAt,
-        @Positive @Max(5)   Integer         maxAttempts
+        @Positive @Max(5)   Integer         maxAttempts,
+        @Min(0) @Max(9)     Integer         priority,
+        @Size(max = 1000)   List<UUID>      dependsOn,
+        @Size(min = 1, max = 200) String    idempotencyKey
 ) {}
\ No newline at end of file
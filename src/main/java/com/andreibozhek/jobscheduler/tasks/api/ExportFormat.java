@@ -0,0 +1,43 @@
+package com.andreibozhek.jobscheduler.tasks.api;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Output format of the export endpoints.
+ * <p>
+ * NDJSON writes one JSON object per line, payloads stay JSON objects. CSV
+ * writes a header line and one line per row, payloads are a quoted JSON
+ * string column.
+ */
+public enum ExportFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+    CSV(new MediaType("text", "csv"), "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    ExportFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * Parses the format request parameter, ignoring case.
+     */
+    public static ExportFormat parse(String value) {
+        for (ExportFormat f : values()) {
+            if (f.extension.equalsIgnoreCase(value)) {
+                return f;
+            }
+        }
+        throw new BadRequestApiException("format must be ndjson or csv");
+    }
+}
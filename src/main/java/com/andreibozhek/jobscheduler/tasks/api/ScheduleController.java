@@ -0,0 +1,58 @@
+package com.andreibozhek.jobscheduler.tasks.api;
+
+import com.andreibozhek.jobscheduler.tasks.domain.TaskSchedule;
+import com.andreibozhek.jobscheduler.tasks.service.ScheduleService;
+
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/schedules")
+public class ScheduleController {
+
+    private final ScheduleService service;
+
+    public ScheduleController(ScheduleService service) {
+        this.service = service;
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public ScheduleResponse create(@Valid @RequestBody CreateScheduleRequest req) {
+        TaskSchedule s = service.create(req);
+        return ScheduleResponse.from(s);
+    }
+
+    @GetMapping("/{id}")
+    public ScheduleResponse get(@PathVariable UUID id) {
+        TaskSchedule s = service.get(id).orElseThrow(() -> new ScheduleNotFoundException(id));
+        return ScheduleResponse.from(s);
+    }
+
+    @GetMapping
+    public List<ScheduleResponse> list(
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "0") int offset
+    ) {
+        if (limit < 1 || limit > 100) {
+            throw new BadRequestApiException("limit must be in range 1..100");
+        }
+        if (offset < 0) {
+            throw new BadRequestApiException("offset must be >=0");
+        }
+        return service.list(limit, offset).stream().map(ScheduleResponse::from).toList();
+    }
+
+    /**
+     * Deletes a schedule. Tasks it has already created are not canceled.
+     */
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void delete(@PathVariable UUID id) {
+        service.delete(id);
+    }
+}
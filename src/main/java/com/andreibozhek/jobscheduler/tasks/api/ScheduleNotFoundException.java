@@ -0,0 +1,9 @@
+package com.andreibozhek.jobscheduler.tasks.api;
+
+import java.util.UUID;
+
+public class ScheduleNotFoundException extends RuntimeException {
+    public ScheduleNotFoundException(UUID id) {
+        super("Schedule not found: " + id);
+    }
+}
@@ -0,0 +1,41 @@
+package com.andreibozhek.jobscheduler.tasks.api;
+
+import com.andreibozhek.jobscheduler.tasks.domain.MisfirePolicy;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskSchedule;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * API view of a schedule.
+ * <p>
+ * payload is written as raw JSON like in TaskResponse.
+ */
+public record ScheduleResponse(
+        UUID            id,
+        String          type,
+        @JsonRawValue   String          payload,
+        String          cron,
+        Long            fixedRateMs,
+        String          timeZone,
+        int             maxAttempts,
+        int             priority,
+        MisfirePolicy   misfirePolicy,
+        OffsetDateTime  nextFireAt
+) {
+    public static ScheduleResponse from(TaskSchedule s) {
+        return new ScheduleResponse(
+                s.id(),
+                s.type(),
+                s.payloadJson(),
+                s.cron(),
+                s.fixedRateMs(),
+                s.timeZone(),
+                s.maxAttempts(),
+                s.priority(),
+                s.misfirePolicy(),
+                s.nextFireAt()
+        );
+    }
+}
@@ -1,13 +1,23 @@
 package com.andreibozhek.jobscheduler.tasks.api;
 
 import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskExportFilter;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskPage;
 import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
 import com.andreibozhek.jobscheduler.tasks.service.TaskService;
 
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -15,6 +25,8 @@ import java.util.UUID;
 @RequestMapping("/tasks")
 public class TaskController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final TaskService service;
 
     public TaskController(TaskService service) {
@@ -28,17 +40,46 @@ public class TaskController {
         return TaskResponse.from(t);
     }
 
+    /**
+     * Creates many tasks in one request.
+     * <p>
+     * The body is either a JSON array of CreateTaskRequest objects or NDJSON
+     * (one object per line). The response reports the id or the error of every
+     * item by its position in the body.
+     */
+    @PostMapping(
+            path = "/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    public BatchCreateResponse createBatch(InputStream body) {
+        return service.createBatch(body);
+    }
+
     @GetMapping("/{id}")
     public TaskResponse get(@PathVariable UUID id) {
         Task t = service.get(id).orElseThrow(()-> new TaskNotFoundException(id));
         return TaskResponse.from(t);
     }
 
+    /**
+     * Lists tasks, newest first.
+     * <p>
+     * The body stays a plain JSON array. When another page exists, its cursor
+     * is returned in the X-Next-Cursor header; passing it back as cursor loads
+     * the next page with an index range scan instead of an OFFSET scan.
+     * <p>
+     * With payload=false the tasks are listed without their payload, which is
+     * then neither read from the database nor written to the response. A
+     * payload offloaded to task_payloads is listed as its reference; GET
+     * /tasks/{id} returns it in full.
+     */
     @GetMapping
-    public List<TaskResponse> list(
+    public ResponseEntity<List<TaskResponse>> list(
             @RequestParam(required = false) TaskStatus status,
             @RequestParam(defaultValue = "20") int limit,
-            @RequestParam(defaultValue = "0") int offset
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean payload
     ) {
         if (limit < 1 || limit > 100) {
             throw new TaskConflictException("limit must be in range 1..100");
@@ -47,7 +88,12 @@ public class TaskController {
             throw new TaskConflictException("offset must be >=0");
         }
 
-        return service.list(status, limit, offset).stream().map(TaskResponse::from).toList();
+        TaskPage page = service.list(status, limit, offset, cursor, payload);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().encode());
+        }
+        return response.body(page.items().stream().map(TaskResponse::from).toList());
     }
 
     @GetMapping("/{id}/runs")
@@ -55,6 +101,56 @@ public class TaskController {
         return service.listRuns(id);
     }
 
+    /**
+     * Streams all tasks matching the filters, including archived ones.
+     * <p>
+     * The response is written while the rows are read from a database cursor,
+     * so its size is not limited by memory. from and to filter on createdAt
+     * (from inclusive, to exclusive); format is ndjson (default) or csv.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) TaskStatus status,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(defaultValue = "ndjson") String format
+    ) {
+        ExportFormat f = ExportFormat.parse(format);
+        TaskExportFilter filter = service.taskExportFilter(status, type, from, to);
+        return attachment("tasks", f, out -> service.exportTasks(filter, f, out));
+    }
+
+    /**
+     * Streams all attempts matching the filters, including archived ones.
+     * <p>
+     * status is the attempt status (SUCCESS or FAILED), type is the task type,
+     * and from and to filter on startedAt.
+     */
+    @GetMapping("/runs/export")
+    public ResponseEntity<StreamingResponseBody> exportRuns(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(defaultValue = "ndjson") String format
+    ) {
+        ExportFormat f = ExportFormat.parse(format);
+        TaskExportFilter filter = service.attemptExportFilter(status, type, from, to);
+        return attachment("task-runs", f, out -> service.exportAttempts(filter, f, out));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> attachment(
+            String name, ExportFormat format, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(format.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(name + "." + format.extension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
     @PostMapping("/{id}/cancel")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void cancel(@PathVariable UUID id) {
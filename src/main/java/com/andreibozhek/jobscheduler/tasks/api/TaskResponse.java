@@ -2,42 +2,45 @@ package com.andreibozhek.jobscheduler.tasks.api;
 
 import com.andreibozhek.jobscheduler.tasks.domain.Task;
 import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
 
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
+/**
+ * API view of a task.
+ * <p>
+ * payload is the stored JSON text and is written into the response as is
+ * (@JsonRawValue), so clients still get a JSON object. It is never parsed into
+ * a JsonNode tree only to be serialized again. This is safe because payloads
+ * come from a JSONB column, which only holds valid JSON.
+ * <p>
+ * A task listed without payload has a null payload, the field is then left out.
+ */
 public record TaskResponse(
         UUID            id,
         String          type,
-        JsonNode        payload,
+        @JsonRawValue @JsonInclude(JsonInclude.Include.NON_NULL)
+        String          payload,
         TaskStatus      status,
         OffsetDateTime  runAt,
         int             attempt,
         int             maxAttempts,
-        String          error
+        String          error,
+        int             priority
 ) {
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-
     public static TaskResponse from(Task t) {
         return new TaskResponse(
                 t.id(),
                 t.type(),
-                readPayload(t.payloadJson()),
+                t.payloadJson(),
                 t.status(),
                 t.runAt(),
                 t.attempt(),
                 t.maxAttempts(),
-                t.error()
+                t.error(),
+                t.priority()
         );
     }
-
-    private static JsonNode readPayload(String payloadJson) {
-        try {
-            return OBJECT_MAPPER.readTree(payloadJson);
-        } catch (Exception ex) {
-            throw new IllegalStateException("Stored task payload is not valid JSON", ex);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+/**
+ * What a schedule does with fires that were missed, for example while no
+ * node was running.
+ * <p>
+ * A fire is missed when it is older than tasks.schedules.misfireThresholdMs at
+ * the time it is materialized.
+ */
+public enum MisfirePolicy {
+    /** Creates a task for every missed fire. */
+    FIRE_ALL,
+    /** Creates one task for all missed fires together. */
+    FIRE_ONCE,
+    /** Drops missed fires and continues with the next regular fire. */
+    SKIP
+}
@@ -0,0 +1,10 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+/**
+ * Size and lag of the PENDING queue.
+ *
+ * @param pending               number of PENDING tasks, due or not
+ * @param oldestDueLagSeconds   how long the oldest due PENDING task is already
+ *                              waiting past its run_at, 0 when no task is due
+ */
+public record QueueStats(long pending, double oldestDueLagSeconds) {}
@@ -0,0 +1,51 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Computes the fire times of a schedule.
+ */
+public sealed interface ScheduleTrigger {
+
+    /**
+     * Returns the first fire strictly after the given time, or null when there
+     * is none.
+     */
+    OffsetDateTime next(OffsetDateTime after);
+
+    /**
+     * Fires at the times of a Spring cron expression (six fields, with
+     * seconds), evaluated in the given time zone.
+     */
+    record Cron(CronExpression expression, ZoneId zone) implements ScheduleTrigger {
+
+        @Override
+        public OffsetDateTime next(OffsetDateTime after) {
+            ZonedDateTime next = expression.next(after.atZoneSameInstant(zone));
+            return next == null ? null : next.toOffsetDateTime();
+        }
+    }
+
+    /**
+     * Fires every rateMs on the grid anchor + n * rateMs.
+     * <p>
+     * The next fire is computed directly instead of stepping through the
+     * grid, so skipping a long downtime costs the same as one step.
+     */
+    record FixedRate(OffsetDateTime anchor, long rateMs) implements ScheduleTrigger {
+
+        @Override
+        public OffsetDateTime next(OffsetDateTime after) {
+            if (after.isBefore(anchor)) {
+                return anchor;
+            }
+            long steps = Duration.between(anchor, after).toMillis() / rateMs + 1;
+            return anchor.plus(Duration.ofMillis(steps * rateMs));
+        }
+    }
+}
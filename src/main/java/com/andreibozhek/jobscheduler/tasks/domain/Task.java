@@ -15,5 +15,23 @@ public record Task(
   String            lockedBy,
   OffsetDateTime    lockedUntil,
   OffsetDateTime    createdAt,
-  OffsetDateTime    updatedAt
-) {}
+  OffsetDateTime    updatedAt,
+  int               priority
+) {
+
+    /**
+     * Returns a copy of this task with another status.
+     */
+    public Task withStatus(TaskStatus newStatus) {
+        return new Task(id, type, payloadJson, newStatus, runAt, attempt, maxAttempts, error,
+                lockedBy, lockedUntil, createdAt, updatedAt, priority);
+    }
+
+    /**
+     * Returns a copy of this task with another payload.
+     */
+    public Task withPayloadJson(String newPayloadJson) {
+        return new Task(id, type, newPayloadJson, status, runAt, attempt, maxAttempts, error,
+                lockedBy, lockedUntil, createdAt, updatedAt, priority);
+    }
+}
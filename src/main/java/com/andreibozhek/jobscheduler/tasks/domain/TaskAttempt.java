@@ -0,0 +1,18 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * One execution attempt with the type of its task, as exported.
+ */
+public record TaskAttempt(
+        long            id,
+        UUID            taskId,
+        String          type,
+        int             attempt,
+        String          status,
+        OffsetDateTime  startedAt,
+        OffsetDateTime  finishedAt,
+        String          error
+) {}
@@ -0,0 +1,24 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Result of one task execution, waiting to be written to the database.
+ * <p>
+ * status is the next task status: DONE, PENDING for a retry, or FAILED.
+ * retryDelayMs is only used for PENDING.
+ * <p>
+ * workerId and attempt identify the lease the task was executed under.
+ * The result is only applied while the task still holds that lease.
+ */
+public record TaskCompletion(
+        UUID            taskId,
+        String          workerId,
+        int             attempt,
+        TaskStatus      status,
+        String          error,
+        long            retryDelayMs,
+        OffsetDateTime  startedAt,
+        OffsetDateTime  finishedAt
+) {}
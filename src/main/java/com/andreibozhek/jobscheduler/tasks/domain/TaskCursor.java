@@ -0,0 +1,50 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in the task list ordered by (created_at DESC, id DESC).
+ * <p>
+ * Clients only see the encoded form: a URL-safe Base64 string of
+ * "created_at|id". The id breaks ties between tasks created in the same
+ * transaction, which share one created_at value.
+ */
+public record TaskCursor(OffsetDateTime createdAt, UUID id) {
+
+    /**
+     * Returns the cursor pointing after the given task.
+     */
+    public static TaskCursor after(Task t) {
+        return new TaskCursor(t.createdAt(), t.id());
+    }
+
+    public String encode() {
+        String raw = createdAt.toInstant() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a cursor produced by encode().
+     *
+     * @throws IllegalArgumentException when the value is not a valid cursor
+     */
+    public static TaskCursor decode(String value) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("invalid cursor");
+            }
+            Instant createdAt = Instant.parse(raw.substring(0, sep));
+            UUID id = UUID.fromString(raw.substring(sep + 1));
+            return new TaskCursor(createdAt.atOffset(ZoneOffset.UTC), id);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("invalid cursor", ex);
+        }
+    }
+}
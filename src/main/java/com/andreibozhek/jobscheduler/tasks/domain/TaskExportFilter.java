@@ -0,0 +1,22 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Filter of a task or attempt export. Every field is optional.
+ * <p>
+ * For tasks, status is a TaskStatus name and the time range applies to
+ * created_at. For attempts, status is the attempt status (SUCCESS or FAILED),
+ * type is the type of the attempt's task, and the range applies to started_at.
+ *
+ * @param status    exported status, null for all
+ * @param type      exported task type, null for all
+ * @param from      inclusive lower bound of the time range
+ * @param to        exclusive upper bound of the time range
+ */
+public record TaskExportFilter(
+        String          status,
+        String          type,
+        OffsetDateTime  from,
+        OffsetDateTime  to
+) {}
@@ -0,0 +1,24 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import java.util.List;
+
+/**
+ * One page of the task list.
+ * <p>
+ * nextCursor is null when the page is the last one.
+ */
+public record TaskPage(List<Task> items, TaskCursor nextCursor) {
+
+    /**
+     * Builds a page from rows loaded with limit + 1.
+     * <p>
+     * The extra row only tells whether another page exists and is not returned.
+     */
+    public static TaskPage of(List<Task> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new TaskPage(rows, null);
+        }
+        List<Task> items = rows.subList(0, limit);
+        return new TaskPage(items, TaskCursor.after(items.get(limit - 1)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import org.springframework.scheduling.support.CronExpression;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * A recurring task definition.
+ * <p>
+ * Exactly one of cron and fixedRateMs is set. nextFireAt is the first fire that
+ * has no task yet, null when the schedule never fires again.
+ */
+public record TaskSchedule(
+        UUID            id,
+        String          type,
+        String          payloadJson,
+        String          cron,
+        Long            fixedRateMs,
+        String          timeZone,
+        int             maxAttempts,
+        int             priority,
+        MisfirePolicy   misfirePolicy,
+        OffsetDateTime  nextFireAt,
+        OffsetDateTime  createdAt
+) {
+
+    /**
+     * Returns the trigger of this schedule. A fixed rate is anchored at nextFireAt.
+     */
+    public ScheduleTrigger trigger() {
+        if (cron != null) {
+            return new ScheduleTrigger.Cron(CronExpression.parse(cron), ZoneId.of(timeZone));
+        }
+        return new ScheduleTrigger.FixedRate(nextFireAt, fixedRateMs);
+    }
+
+    /**
+     * Builds the PENDING task of one fire.
+     * <p>
+     * The task id is derived from the schedule id and the fire time, so the
+     * same fire always maps to the same task, no matter which node or run
+     * materializes it.
+     */
+    public Task occurrence(OffsetDateTime fireAt, OffsetDateTime runAt, OffsetDateTime now) {
+        return new Task(
+                occurrenceId(id, fireAt),
+                type,
+                payloadJson,
+                TaskStatus.PENDING,
+                runAt,
+                0,
+                maxAttempts,
+                null,
+                null,
+                null,
+                now,
+                now,
+                priority
+        );
+    }
+
+    public static UUID occurrenceId(UUID scheduleId, OffsetDateTime fireAt) {
+        String key = scheduleId + "|" + fireAt.toInstant();
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+    }
+}
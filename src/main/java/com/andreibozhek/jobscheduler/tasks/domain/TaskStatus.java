@@ -1,6 +1,7 @@
 package com.andreibozhek.jobscheduler.tasks.domain;
 
 public enum TaskStatus {
+    BLOCKED,
     PENDING,
     RUNNING,
     DONE,
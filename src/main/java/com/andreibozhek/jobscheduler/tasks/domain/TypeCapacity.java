@@ -0,0 +1,18 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+/**
+ * How many tasks of one type a claim may take.
+ * <p>
+ * free is the local limit of this worker (free in-flight slots and rate tokens).
+ * clusterMaxInFlight is the cluster-wide limit of RUNNING tasks of the type,
+ * null when the type has no such limit. clusterPermitsPerSecond is the
+ * cluster-wide start rate of the type, null when the type has no such limit.
+ * leaseMs is the lease of claimed tasks, null for the worker default.
+ */
+public record TypeCapacity(
+        String          type,
+        int             free,
+        Integer         clusterMaxInFlight,
+        Double          clusterPermitsPerSecond,
+        Long            leaseMs
+) {}
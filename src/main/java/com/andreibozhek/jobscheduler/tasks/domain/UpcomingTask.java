@@ -0,0 +1,9 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public record UpcomingTask(
+        UUID            id,
+        OffsetDateTime  runAt
+) {}
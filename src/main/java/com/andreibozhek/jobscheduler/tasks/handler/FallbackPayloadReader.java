@@ -0,0 +1,31 @@
+package com.andreibozhek.jobscheduler.tasks.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Binds a payload for TypedTaskHandler.handle(task), when a typed handler is
+ * called directly instead of through TaskPayloadBinder.
+ * <p>
+ * The mapper is a plain ObjectMapper with the modules found on the classpath.
+ * It holds no state of any application context, so handlers of several
+ * contexts in one JVM do not affect each other. The worker does not use it,
+ * it binds with the readers of TaskPayloadBinder.
+ */
+final class FallbackPayloadReader {
+
+    private static final ObjectMapper FALLBACK_MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    private FallbackPayloadReader() {
+    }
+
+    static <P> P read(Class<P> payloadType, String taskType, String payloadJson) {
+        try {
+            return FALLBACK_MAPPER.readerFor(payloadType).readValue(payloadJson);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Stored payload does not match type " + taskType, ex);
+        }
+    }
+}
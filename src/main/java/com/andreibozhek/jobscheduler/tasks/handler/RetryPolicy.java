@@ -0,0 +1,111 @@
+package com.andreibozhek.jobscheduler.tasks.handler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed task is retried and when.
+ * <p>
+ * Delays grow exponentially from baseDelayMs and are capped at maxDelayMs.
+ * Jitter spreads retries of tasks that failed at the same time, for example
+ * during a downstream outage, so they do not come back as one wave:
+ * - NONE: base * 2^(attempt - 1);
+ * - FULL: a random value between 0 and the exponential delay;
+ * - DECORRELATED: a random value between base and three times the previous
+ *   delay. The previous delays are replayed from a random sequence seeded with
+ *   the task id, so no delay has to be stored with the task.
+ * <p>
+ * retryOn limits retries to the listed exception types and their subclasses.
+ * An empty list retries every exception.
+ *
+ * @param baseDelayMs   delay of the first retry (before jitter)
+ * @param maxDelayMs    upper limit of any delay
+ * @param jitter        how the delay is randomized
+ * @param retryOn       exception types that are retried, empty for all
+ */
+public record RetryPolicy(
+        long                                baseDelayMs,
+        long                                maxDelayMs,
+        Jitter                              jitter,
+        List<Class<? extends Throwable>>    retryOn
+) {
+    public enum Jitter {
+        NONE,
+        FULL,
+        DECORRELATED
+    }
+
+    public RetryPolicy {
+        if (baseDelayMs < 1 || maxDelayMs < baseDelayMs) {
+            throw new IllegalArgumentException("baseDelayMs must be positive and not above maxDelayMs");
+        }
+        retryOn = List.copyOf(retryOn);
+    }
+
+    /**
+     * Exponential backoff that retries every exception.
+     */
+    public static RetryPolicy exponential(Duration baseDelay, Duration maxDelay, Jitter jitter) {
+        return new RetryPolicy(baseDelay.toMillis(), maxDelay.toMillis(), jitter, List.of());
+    }
+
+    /**
+     * Returns a copy that only retries the given exception types.
+     */
+    @SafeVarargs
+    public final RetryPolicy retryOn(Class<? extends Throwable>... types) {
+        return new RetryPolicy(baseDelayMs, maxDelayMs, jitter, List.of(types));
+    }
+
+    /**
+     * Returns true when a task that failed with this error may be retried.
+     */
+    public boolean shouldRetry(Throwable error) {
+        if (retryOn.isEmpty()) {
+            return true;
+        }
+        for (Class<? extends Throwable> type : retryOn) {
+            if (type.isInstance(error)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the delay before the next run after the given failed attempt.
+     *
+     * @param taskId  seeds the decorrelated jitter sequence of the task
+     * @param attempt number of the attempt that failed, starting at 1
+     */
+    public long delayMs(UUID taskId, int attempt) {
+        return switch (jitter) {
+            case NONE -> exponentialMs(attempt);
+            case FULL -> ThreadLocalRandom.current().nextLong(exponentialMs(attempt) + 1);
+            case DECORRELATED -> decorrelatedMs(taskId, attempt);
+        };
+    }
+
+    private long exponentialMs(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 62);
+        long delay = baseDelayMs << shift;
+        if (delay <= 0 || (delay >> shift) != baseDelayMs) {
+            return maxDelayMs;
+        }
+        return Math.min(delay, maxDelayMs);
+    }
+
+    private long decorrelatedMs(UUID taskId, int attempt) {
+        SplittableRandom random = new SplittableRandom(
+                taskId.getMostSignificantBits() ^ taskId.getLeastSignificantBits());
+        long delay = baseDelayMs;
+        for (int i = 0; i < attempt; i++) {
+            long upper = Math.min(maxDelayMs, Math.max(delay * 3, baseDelayMs + 1));
+            delay = random.nextLong(baseDelayMs, upper + 1);
+        }
+        return Math.min(delay, maxDelayMs);
+    }
+}
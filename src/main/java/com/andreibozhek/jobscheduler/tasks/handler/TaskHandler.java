@@ -2,6 +2,8 @@ package com.andreibozhek.jobscheduler.tasks.handler;
 
 import com.andreibozhek.jobscheduler.tasks.domain.Task;
 
+import java.time.Duration;
+
 /**
  * Defines how one task type is executed.
  * <p>
@@ -25,4 +27,65 @@ public interface TaskHandler {
      * failed.
      */
     void handle(Task task);
+
+    /**
+     * Returns the lease length for tasks of this type.
+     * <p>
+     * The worker renews the lease of a running task every
+     * worker.heartbeat.intervalMs, so the lease only has to cover the time
+     * between two heartbeats, not the whole execution. A shorter lease lets
+     * another worker take over sooner when a node dies. null uses
+     * worker.lockSeconds.
+     */
+    default Duration lease() {
+        return null;
+    }
+
+    /**
+     * Returns the maximum number of tasks of this type running at the same time
+     * in the whole cluster, 0 for no limit.
+     * <p>
+     * The claim counts RUNNING tasks of the type and only takes tasks while
+     * the count is below the limit. Each worker also never runs more than
+     * this number itself.
+     */
+    default int maxInFlight() {
+        return 0;
+    }
+
+    /**
+     * Returns how many tasks of this type one worker may start per second,
+     * 0 for no limit.
+     * <p>
+     * The rate is enforced per node with a token bucket that allows a burst of
+     * one second. With N nodes the cluster starts up to N times this rate, use
+     * clusterPermitsPerSecond() for a limit of the whole cluster.
+     */
+    default double permitsPerSecond() {
+        return 0;
+    }
+
+    /**
+     * Returns how many tasks of this type the whole cluster may start per
+     * second, 0 for no limit.
+     * <p>
+     * All workers take tokens from one bucket row in task_rate_limits, inside
+     * the claim statement, with a burst of one second. It can be combined with
+     * permitsPerSecond(), which then only spreads the work over the nodes.
+     */
+    default double clusterPermitsPerSecond() {
+        return 0;
+    }
+
+    /**
+     * Returns the retry policy for a failed task of this type.
+     * <p>
+     * The task is passed in, so a handler can choose a policy per task, for
+     * example from its payload. The policy decides whether the error is worth
+     * a retry and how long to wait; maxAttempts of the task still limits the
+     * number of attempts. null uses the worker.retry settings.
+     */
+    default RetryPolicy retryPolicy(Task task) {
+        return null;
+    }
 }
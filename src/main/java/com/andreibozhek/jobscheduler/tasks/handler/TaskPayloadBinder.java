@@ -0,0 +1,99 @@
+package com.andreibozhek.jobscheduler.tasks.handler;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Binds payloads of typed task types with one cached ObjectReader per type.
+ * <p>
+ * Readers are created once from the TypedTaskHandler beans. An ObjectReader
+ * is immutable and keeps its resolved deserializer, so binding a payload does
+ * not look up or build anything. Types of plain TaskHandlers have no reader,
+ * their tasks are passed to handle(task) unchanged.
+ */
+@Component
+public class TaskPayloadBinder {
+
+    private final Map<String, ObjectReader> readers = new HashMap<>();
+    private final Validator validator;
+
+    public TaskPayloadBinder(List<TaskHandler> handlers, ObjectMapper objectMapper, Validator validator) {
+        for (TaskHandler handler : handlers) {
+            if (handler instanceof TypedTaskHandler<?> typed) {
+                readers.put(typed.type(), objectMapper.readerFor(typed.payloadType()));
+            }
+        }
+        this.validator = validator;
+    }
+
+    /**
+     * Checks that a payload binds to the payload type of its task type and
+     * meets its constraints.
+     *
+     * @param type normalized task type
+     * @throws IllegalArgumentException with the reason when the payload is invalid
+     */
+    public void validate(String type, JsonNode payload) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            return;
+        }
+
+        Object bound;
+        try {
+            bound = reader.readValue(payload);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("payload does not match type " + type + ": " + ex.getOriginalMessage());
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("payload does not match type " + type);
+        }
+        if (bound == null) {
+            throw new IllegalArgumentException("payload must not be null");
+        }
+
+        Set<ConstraintViolation<Object>> violations = validator.validate(bound);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(v -> "payload." + v.getPropertyPath() + " " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    /**
+     * Runs a task on its handler, binding the payload first for typed handlers.
+     * <p>
+     * The payload was validated when the task was created, so it is only bound
+     * here.
+     */
+    @SuppressWarnings("unchecked")
+    public void execute(TaskHandler handler, Task task) {
+        ObjectReader reader = readers.get(handler.type());
+        if (reader == null || !(handler instanceof TypedTaskHandler<?>)) {
+            handler.handle(task);
+            return;
+        }
+
+        Object payload;
+        try {
+            payload = reader.readValue(task.payloadJson());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Stored payload does not match type " + task.type(), ex);
+        }
+        ((TypedTaskHandler<Object>) handler).handle(task, payload);
+    }
+}
@@ -0,0 +1,47 @@
+package com.andreibozhek.jobscheduler.tasks.handler;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+
+/**
+ * Handler that receives its payload already bound to a Java type.
+ * <p>
+ * TaskPayloadBinder creates one ObjectReader for payloadType() at startup.
+ * POST /tasks binds and validates the payload with that reader (including
+ * jakarta.validation constraints on P), so a task of this type cannot be
+ * stored with a payload the handler cannot read. The worker then only binds
+ * the stored payload and calls handle(task, payload); it does not validate
+ * again.
+ * <p>
+ * A typed handler is still a complete TaskHandler: handle(task) binds the
+ * payload with a plain ObjectMapper and calls handle(task, payload), so
+ * callers that do not go through TaskPayloadBinder work too.
+ *
+ * @param <P> payload type, usually a record
+ */
+public interface TypedTaskHandler<P> extends TaskHandler {
+
+    /**
+     * Returns the class the payload is bound to.
+     */
+    Class<P> payloadType();
+
+    /**
+     * Executes the task with its bound payload.
+     * <p>
+     * Errors are handled like in TaskHandler.handle(task).
+     */
+    void handle(Task task, P payload);
+
+    /**
+     * Binds the stored payload to payloadType() and calls handle(task, payload).
+     * <p>
+     * Only for direct calls. The worker runs typed handlers through
+     * TaskPayloadBinder.execute(), which binds with the reader of the type.
+     *
+     * @throws java.io.UncheckedIOException when the payload does not match payloadType()
+     */
+    @Override
+    default void handle(Task task) {
+        handle(task, FallbackPayloadReader.read(payloadType(), type(), task.payloadJson()));
+    }
+}
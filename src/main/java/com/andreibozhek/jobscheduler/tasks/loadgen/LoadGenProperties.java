@@ -0,0 +1,50 @@
+package com.andreibozhek.jobscheduler.tasks.loadgen;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Load generator settings bound from the loadgen.* properties.
+ * <p>
+ * They are only used when the loadgen profile is active.
+ *
+ * @param ratePerSecond     target rate of POST /tasks requests
+ * @param warmupSeconds     submission time before measuring starts, tasks
+ *                          submitted during warmup are not recorded
+ * @param durationSeconds   measured submission time
+ * @param drainTimeoutSeconds how long to wait for submitted tasks to finish
+ *                          after the last submission
+ * @param maxAttempts       maxAttempts of the submitted tasks
+ * @param payloadBytes      size of the padding string in each payload
+ * @param reportDir         directory for the .hgrm histogram files
+ * @param exitWhenDone      stops the application after the report
+ * @param handler           behaviour of the synthetic task handler
+ */
+@ConfigurationProperties(prefix = "loadgen")
+public record LoadGenProperties(
+        @DefaultValue("100")            double          ratePerSecond,
+        @DefaultValue("10")             int             warmupSeconds,
+        @DefaultValue("60")             int             durationSeconds,
+        @DefaultValue("60")             int             drainTimeoutSeconds,
+        @DefaultValue("3")              int             maxAttempts,
+        @DefaultValue("64")             int             payloadBytes,
+        @DefaultValue("build/loadgen")  String          reportDir,
+        @DefaultValue("true")           boolean         exitWhenDone,
+        @DefaultValue                   Handler         handler
+) {
+    /**
+     * Settings of SyntheticTaskHandler.
+     * <p>
+     * Execution time is log-normal, which matches most remote calls: most
+     * tasks are close to the median and a few are much slower.
+     *
+     * @param latencyMedianMs   median execution time
+     * @param latencyP99Ms      99th percentile of the execution time
+     * @param failureRate       share of executions that throw, 0 to 1
+     */
+    public record Handler(
+            @DefaultValue("5")          double          latencyMedianMs,
+            @DefaultValue("50")         double          latencyP99Ms,
+            @DefaultValue("0")          double          failureRate
+    ) {}
+}
@@ -0,0 +1,76 @@
+package com.andreibozhek.jobscheduler.tasks.loadgen;
+
+import org.HdrHistogram.Recorder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counters of one load generator run.
+ * <p>
+ * All latencies are recorded in microseconds into HdrHistogram Recorders,
+ * which are safe for concurrent writers and never block them:
+ * - submit: intended send time until the HTTP response of POST /tasks;
+ * - scheduleToStart: runAt of the task until the handler starts;
+ * - endToEnd: intended send time until the handler finishes successfully.
+ * <p>
+ * submit and endToEnd start at the intended send time, not at the actual one,
+ * so a stalled generator does not hide the delay it caused (coordinated
+ * omission). Tasks submitted during warmup are counted but not recorded.
+ */
+@Component
+@Profile("loadgen")
+public class LoadGenStats {
+
+    private static final long HIGHEST_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    final Recorder submit = new Recorder(HIGHEST_MICROS, 3);
+    final Recorder scheduleToStart = new Recorder(HIGHEST_MICROS, 3);
+    final Recorder endToEnd = new Recorder(HIGHEST_MICROS, 3);
+
+    final LongAdder accepted = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder succeeded = new LongAdder();
+    final LongAdder failedAttempts = new LongAdder();
+    final LongAdder failedFinally = new LongAdder();
+
+    void recordSubmit(long micros, boolean ok, boolean measured) {
+        (ok ? accepted : rejected).increment();
+        if (measured) {
+            submit.recordValue(clamp(micros));
+        }
+    }
+
+    void recordStart(long scheduleToStartMicros, boolean measured) {
+        if (measured) {
+            scheduleToStart.recordValue(clamp(scheduleToStartMicros));
+        }
+    }
+
+    void recordSuccess(long endToEndMicros, boolean measured) {
+        succeeded.increment();
+        if (measured) {
+            endToEnd.recordValue(clamp(endToEndMicros));
+        }
+    }
+
+    void recordFailure(boolean finalAttempt) {
+        failedAttempts.increment();
+        if (finalAttempt) {
+            failedFinally.increment();
+        }
+    }
+
+    /**
+     * Number of submitted tasks that will not run again.
+     */
+    long finished() {
+        return succeeded.sum() + failedFinally.sum();
+    }
+
+    private static long clamp(long micros) {
+        return Math.min(Math.max(micros, 0), HIGHEST_MICROS);
+    }
+}
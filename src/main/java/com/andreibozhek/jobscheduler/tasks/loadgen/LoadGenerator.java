@@ -0,0 +1,203 @@
+package com.andreibozhek.jobscheduler.tasks.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Submits synthetic tasks at a fixed rate and reports latency and throughput.
+ * <p>
+ * Runs once at startup when the loadgen profile is active. Tasks go through
+ * POST /tasks of this node, so the measured path is the real one: HTTP,
+ * TaskController, TaskService, the insert and its notification, the worker
+ * claim and SyntheticTaskHandler. Point spring.datasource at a local
+ * PostgreSQL; the node itself is the worker under test.
+ * <p>
+ * The generator is open-loop: send times are fixed in advance from the target
+ * rate and requests are sent asynchronously, so a slow response does not delay
+ * the next request. Latencies are measured from the intended send time.
+ * <p>
+ * After warmupSeconds + durationSeconds of submissions the generator waits up
+ * to drainTimeoutSeconds for the submitted tasks to finish, logs a summary and
+ * writes one .hgrm percentile file per histogram to reportDir.
+ */
+@Component
+@Profile("loadgen")
+public class LoadGenerator implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final LoadGenProperties props;
+    private final LoadGenStats stats;
+    private final ObjectMapper objectMapper;
+    private final Environment env;
+    private final ConfigurableApplicationContext context;
+
+    public LoadGenerator(
+            LoadGenProperties props,
+            LoadGenStats stats,
+            ObjectMapper objectMapper,
+            Environment env,
+            ConfigurableApplicationContext context) {
+        this.props = props;
+        this.stats = stats;
+        this.objectMapper = objectMapper;
+        this.env = env;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Integer port = env.getProperty("local.server.port", Integer.class);
+        if (port == null) {
+            throw new IllegalStateException("loadgen needs the web server, local.server.port is not set");
+        }
+        URI uri = URI.create("http://localhost:" + port + "/tasks");
+        String pad = "x".repeat(Math.max(props.payloadBytes(), 0));
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / props.ratePerSecond());
+        long total = (long) ((props.warmupSeconds() + props.durationSeconds()) * props.ratePerSecond());
+        log.info("loadgen: {} tasks/s for {} s ({} s warmup) against {}",
+                props.ratePerSecond(), props.durationSeconds(), props.warmupSeconds(), uri);
+
+        long measuredFinished;
+        long measuredNanos;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            long start = System.nanoTime();
+            long startEpochMicros = SyntheticTaskHandler.epochMicros(Instant.now());
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(props.warmupSeconds());
+            long finishedAtMeasureStart = -1;
+
+            for (long i = 0; i < total; i++) {
+                long intended = start + i * intervalNanos;
+                parkUntil(intended);
+                boolean measured = intended >= measureFrom;
+                if (measured && finishedAtMeasureStart < 0) {
+                    finishedAtMeasureStart = stats.finished();
+                }
+                long submittedAtMicros = startEpochMicros + (intended - start) / 1_000;
+                send(client, uri, requestBody(submittedAtMicros, measured, pad), intended, measured);
+            }
+            long end = System.nanoTime();
+            measuredFinished = stats.finished() - Math.max(finishedAtMeasureStart, 0);
+            measuredNanos = Math.max(end - measureFrom, 1);
+
+            awaitDrain(total);
+            client.close();
+        }
+
+        report(measuredFinished, measuredNanos);
+
+        if (props.exitWhenDone()) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void send(HttpClient client, URI uri, String body, long intended, boolean measured) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> stats.recordSubmit(
+                        (System.nanoTime() - intended) / 1_000,
+                        error == null && response.statusCode() == 201,
+                        measured));
+    }
+
+    private String requestBody(long submittedAtMicros, boolean measured, String pad) {
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("type", "synthetic")
+                .put("runAt", OffsetDateTime.now(ZoneOffset.UTC).toString())
+                .put("maxAttempts", props.maxAttempts());
+        body.set("payload", objectMapper.valueToTree(new SyntheticPayload(submittedAtMicros, measured, pad)));
+        return body.toString();
+    }
+
+    /**
+     * Waits until every request got a response and every accepted task finished.
+     */
+    private void awaitDrain(long total) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(props.drainTimeoutSeconds());
+        while (System.nanoTime() < deadline) {
+            long responses = stats.accepted.sum() + stats.rejected.sum();
+            if (responses >= total && stats.finished() >= stats.accepted.sum()) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        log.warn("loadgen: drain timeout, {} of {} accepted tasks finished",
+                stats.finished(), stats.accepted.sum());
+    }
+
+    private void report(long measuredFinished, long measuredNanos) throws IOException {
+        double seconds = measuredNanos / 1e9;
+        log.info("loadgen: accepted {}, rejected {}, succeeded {}, failed attempts {}, failed finally {}",
+                stats.accepted.sum(), stats.rejected.sum(), stats.succeeded.sum(),
+                stats.failedAttempts.sum(), stats.failedFinally.sum());
+        log.info("loadgen: target {} tasks/s, finished {} tasks/s while measuring",
+                props.ratePerSecond(), String.format("%.1f", measuredFinished / seconds));
+
+        Path dir = Path.of(props.reportDir());
+        Files.createDirectories(dir);
+        report(dir, "submit", stats.submit);
+        report(dir, "schedule-to-start", stats.scheduleToStart);
+        report(dir, "end-to-end", stats.endToEnd);
+        log.info("loadgen: histograms written to {}", dir.toAbsolutePath());
+    }
+
+    private void report(Path dir, String name, Recorder recorder) throws IOException {
+        Histogram h = recorder.getIntervalHistogram();
+        log.info("loadgen: {} ms: count {}, p50 {}, p90 {}, p99 {}, p99.9 {}, max {}",
+                name, h.getTotalCount(),
+                millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                millis(h.getMaxValue()));
+        try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(name + ".hgrm")))) {
+            h.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
+    private static void parkUntil(long nanoTime) {
+        long wait;
+        while ((wait = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.andreibozhek.jobscheduler.tasks.loadgen;
+
+/**
+ * Payload of a synthetic task.
+ *
+ * @param submittedAtMicros intended send time, epoch microseconds
+ * @param measured          false for tasks submitted during warmup
+ * @param pad               filler that gives the payload its configured size
+ */
+public record SyntheticPayload(
+        long            submittedAtMicros,
+        boolean         measured,
+        String          pad
+) {}
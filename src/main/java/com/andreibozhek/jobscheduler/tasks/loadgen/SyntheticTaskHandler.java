@@ -0,0 +1,89 @@
+package com.andreibozhek.jobscheduler.tasks.loadgen;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.handler.TypedTaskHandler;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Handler for synthetic tasks submitted by LoadGenerator.
+ * <p>
+ * The handler sleeps for a log-normal execution time and fails with the
+ * configured failure rate, so the worker sees the same mix of short, slow and
+ * failing tasks as with a real downstream system. It records schedule-to-start
+ * latency when it starts and end-to-end latency when it succeeds.
+ * <p>
+ * The payload is bound to SyntheticPayload by the worker.
+ */
+@Component
+@Profile("loadgen")
+public class SyntheticTaskHandler implements TypedTaskHandler<SyntheticPayload> {
+
+    /** Standard normal quantile of 0.99. */
+    private static final double Z_99 = 2.3263;
+
+    private final LoadGenStats stats;
+    private final double medianMs;
+    private final double sigma;
+    private final double failureRate;
+
+    public SyntheticTaskHandler(LoadGenProperties props, LoadGenStats stats) {
+        LoadGenProperties.Handler h = props.handler();
+        this.stats = stats;
+        this.medianMs = Math.max(h.latencyMedianMs(), 0);
+        this.sigma = h.latencyP99Ms() > medianMs && medianMs > 0
+                ? Math.log(h.latencyP99Ms() / medianMs) / Z_99
+                : 0;
+        this.failureRate = h.failureRate();
+    }
+
+    /**
+     * Registers this handler for the synthetic task type.
+     */
+    @Override
+    public String type() {
+        return "synthetic";
+    }
+
+    @Override
+    public Class<SyntheticPayload> payloadType() {
+        return SyntheticPayload.class;
+    }
+
+    @Override
+    public void handle(Task task, SyntheticPayload payload) {
+        Instant started = Instant.now();
+        stats.recordStart(ChronoUnit.MICROS.between(task.runAt().toInstant(), started), payload.measured());
+
+        try {
+            Thread.sleep(sampleLatencyMs());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", ex);
+        }
+
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            stats.recordFailure(task.attempt() >= task.maxAttempts());
+            throw new IllegalStateException("synthetic failure");
+        }
+        stats.recordSuccess(epochMicros(Instant.now()) - payload.submittedAtMicros(), payload.measured());
+    }
+
+    /**
+     * Draws one execution time: median * e^(sigma * N(0, 1)).
+     */
+    long sampleLatencyMs() {
+        if (sigma == 0) {
+            return Math.round(medianMs);
+        }
+        return Math.round(medianMs * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    static long epochMicros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+}
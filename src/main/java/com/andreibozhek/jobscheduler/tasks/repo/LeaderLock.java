@@ -0,0 +1,57 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Runs cluster-wide jobs on one node at a time.
+ * <p>
+ * The lock is a PostgreSQL transaction-level advisory lock. It is taken with
+ * pg_try_advisory_xact_lock at the start of a transaction and released by the
+ * database at commit or rollback, also when the node dies. No connection is
+ * held between runs and there is no lock table to clean up.
+ * <p>
+ * Every run competes again, so leadership moves to another node as soon as
+ * the current one stops running the job.
+ */
+@Component
+public class LeaderLock {
+
+    /** Lock key of TaskArchiver. */
+    public static final long TASK_ARCHIVER = 7_316_001L;
+
+    /** Lock key of LeaseReaper. */
+    public static final long LEASE_REAPER = 7_316_002L;
+
+    /** Lock key of ScheduleMaterializer. */
+    public static final long SCHEDULE_MATERIALIZER = 7_316_003L;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    public LeaderLock(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Runs the action in one transaction if no other node holds the lock.
+     *
+     * @return the result of the action, or Optional.empty() when another node
+     *         holds the lock and the action was skipped
+     */
+    public <T> Optional<T> runIfLeader(long key, Supplier<T> action) {
+        return tx.execute(status -> {
+            Boolean locked = jdbc.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, key);
+            if (!Boolean.TRUE.equals(locked)) {
+                return Optional.<T>empty();
+            }
+            return Optional.ofNullable(action.get());
+        });
+    }
+}
@@ -0,0 +1,21 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Payload storage settings bound from the tasks.payload.* properties.
+ * <p>
+ * Payloads up to inlineMaxBytes stay in tasks.payload. Larger ones are
+ * compressed and stored in task_payloads, see TaskPayloadStore.
+ *
+ * @param inlineMaxBytes    largest payload, in UTF-8 bytes of its JSON, stored in the tasks row
+ * @param maxBytes          largest accepted payload, larger ones are rejected on create
+ * @param compressionLevel  Deflater level of offloaded payloads, 1 (fastest) to 9 (smallest)
+ */
+@ConfigurationProperties(prefix = "tasks.payload")
+public record PayloadProperties(
+        @DefaultValue("2048")       int             inlineMaxBytes,
+        @DefaultValue("10485760")   int             maxBytes,
+        @DefaultValue("1")          int             compressionLevel
+) {}
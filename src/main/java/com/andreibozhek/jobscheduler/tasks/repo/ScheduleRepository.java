@@ -0,0 +1,166 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import com.andreibozhek.jobscheduler.tasks.domain.MisfirePolicy;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskSchedule;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public class ScheduleRepository {
+
+    /**
+     * Columns of a schedule, in the order the row mapper reads them.
+     */
+    static final String SCHEDULE_COLUMNS = """
+            id, type, payload, cron, fixed_rate_ms, time_zone, \
+            max_attempts, priority, misfire_policy, next_fire_at, created_at""";
+
+    private static final RowMapper<TaskSchedule> SCHEDULE_ROW_MAPPER = new RowMapper<>() {
+        @Override
+        public TaskSchedule mapRow(@NonNull ResultSet rs, int rowNum) throws SQLException {
+            return new TaskSchedule(
+                    rs.getObject(1, UUID.class),
+                    rs.getString(2),
+                    rs.getString(3),
+                    rs.getString(4),
+                    rs.getObject(5, Long.class),
+                    rs.getString(6),
+                    rs.getInt(7),
+                    rs.getInt(8),
+                    MisfirePolicy.valueOf(rs.getString(9)),
+                    rs.getObject(10, OffsetDateTime.class),
+                    rs.getObject(11, OffsetDateTime.class)
+            );
+        }
+    };
+
+    private final JdbcTemplate jdbc;
+
+    public ScheduleRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void insert(TaskSchedule s) {
+        jdbc.update("""
+                INSERT INTO task_schedules(
+                    id, type, payload,
+                    cron, fixed_rate_ms, time_zone,
+                    max_attempts, priority, misfire_policy,
+                    next_fire_at
+                ) VALUES (
+                    ?, ?, ?::jsonb,
+                    ?, ?, ?,
+                    ?, ?, ?,
+                    ?
+                )
+                """,
+                s.id(),
+                s.type(),
+                s.payloadJson(),
+                s.cron(),
+                s.fixedRateMs(),
+                s.timeZone(),
+                s.maxAttempts(),
+                s.priority(),
+                s.misfirePolicy().name(),
+                s.nextFireAt()
+        );
+    }
+
+    public Optional<TaskSchedule> findById(UUID id) {
+        List<TaskSchedule> rows = jdbc.query(
+                "SELECT " + SCHEDULE_COLUMNS + " FROM task_schedules WHERE id = ?",
+                SCHEDULE_ROW_MAPPER,
+                id
+        );
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * Lists schedules, newest first.
+     */
+    public List<TaskSchedule> list(int limit, int offset) {
+        return jdbc.query("""
+                SELECT %s FROM task_schedules
+                ORDER BY created_at DESC, id DESC
+                LIMIT ? OFFSET ?
+                """.formatted(SCHEDULE_COLUMNS),
+                SCHEDULE_ROW_MAPPER,
+                limit,
+                offset
+        );
+    }
+
+    /**
+     * Deletes a schedule. Tasks of fires that are already materialized stay.
+     *
+     * @return true when the schedule existed
+     */
+    public boolean delete(UUID id) {
+        return jdbc.update("DELETE FROM task_schedules WHERE id = ?", id) == 1;
+    }
+
+    /**
+     * Locks schedules whose next fire is not after until, earliest first.
+     * <p>
+     * The query reads idx_task_schedules_next_fire_at, so its cost depends on
+     * the number of due schedules, not on the total number of schedules.
+     * Locked rows are skipped; together with the leader lock of the caller this
+     * makes sure that one schedule is materialized by one transaction at a time.
+     * The locks are held until the caller's transaction ends.
+     */
+    public List<TaskSchedule> lockDue(OffsetDateTime until, int limit) {
+        return jdbc.query("""
+                SELECT %s FROM task_schedules
+                WHERE next_fire_at <= ?
+                ORDER BY next_fire_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+                """.formatted(SCHEDULE_COLUMNS),
+                SCHEDULE_ROW_MAPPER,
+                until,
+                limit
+        );
+    }
+
+    /**
+     * Sets next_fire_at of many schedules with one statement.
+     * <p>
+     * A null value marks a schedule that never fires again.
+     */
+    public void advance(Map<UUID, OffsetDateTime> nextFireAtById) {
+        if (nextFireAtById.isEmpty()) {
+            return;
+        }
+        UUID[] ids = new UUID[nextFireAtById.size()];
+        String[] nextFireAt = new String[nextFireAtById.size()];
+        int i = 0;
+        for (Map.Entry<UUID, OffsetDateTime> e : nextFireAtById.entrySet()) {
+            ids[i] = e.getKey();
+            nextFireAt[i] = e.getValue() == null ? null : e.getValue().toString();
+            i++;
+        }
+
+        jdbc.update("""
+                UPDATE task_schedules s
+                SET next_fire_at = r.next_fire_at::timestamptz
+                FROM unnest(?::uuid[], ?::text[]) AS r(id, next_fire_at)
+                WHERE s.id = r.id
+                """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids));
+                    ps.setArray(2, ps.getConnection().createArrayOf("text", nextFireAt));
+                }
+        );
+    }
+}
@@ -0,0 +1,168 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves finished tasks out of the hot tasks table and manages archive partitions.
+ * <p>
+ * tasks_archive and task_attempts_archive are partitioned by archived_at with
+ * one partition per UTC day (suffix _pYYYYMMDD). A task and its attempts are
+ * archived by one statement with the same archived_at, so they land in
+ * partitions of the same day and are dropped together.
+ * <p>
+ * The methods are meant to run inside LeaderLock.runIfLeader(), so only one
+ * node changes partitions at a time.
+ */
+@Repository
+public class TaskArchiveRepository {
+
+    static final String TASKS_ARCHIVE = "tasks_archive";
+    static final String ATTEMPTS_ARCHIVE = "task_attempts_archive";
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JdbcTemplate jdbc;
+
+    public TaskArchiveRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Creates daily partitions of both archive tables from day to day + days - 1.
+     * <p>
+     * Existing partitions are kept. Rows are only archived with archived_at =
+     * now(), so today's partition must exist before archiveFinishedTasks() runs.
+     */
+    public void ensurePartitions(LocalDate day, int days) {
+        for (int i = 0; i < days; i++) {
+            LocalDate from = day.plusDays(i);
+            createPartition(TASKS_ARCHIVE, from);
+            createPartition(ATTEMPTS_ARCHIVE, from);
+        }
+    }
+
+    /**
+     * Moves one batch of finished tasks and their attempts to the archive.
+     * <p>
+     * A task is moved when it has been DONE, FAILED or CANCELED for longer than
+     * graceMinutes, so recently finished tasks stay in the hot table. Everything
+     * happens in one statement: the task and attempt rows are deleted from the
+     * hot tables and the returned rows are inserted into the archive. Batches
+     * keep each delete small, the hot table never sees a mass DELETE.
+     *
+     * @return number of archived tasks
+     */
+    public int archiveFinishedTasks(int graceMinutes, int limit) {
+        return jdbc.update("""
+                WITH moved AS (
+                    DELETE FROM tasks t
+                    WHERE t.id IN (
+                        SELECT id
+                        FROM tasks
+                        WHERE status IN ('DONE', 'FAILED', 'CANCELED')
+                          AND updated_at < now() - make_interval(mins => ?)
+                        ORDER BY updated_at
+                        LIMIT ?
+                        FOR UPDATE SKIP LOCKED
+                    )
+                    RETURNING t.*
+                ),
+                moved_attempts AS (
+                    DELETE FROM task_attempts a
+                    USING moved m
+                    WHERE a.task_id = m.id
+                    RETURNING a.*
+                ),
+                archived_attempts AS (
+                    INSERT INTO task_attempts_archive(
+                        id, task_id, attempt, started_at, finished_at, status, error, archived_at
+                    )
+                    SELECT id, task_id, attempt, started_at, finished_at, status, error, now()
+                    FROM moved_attempts
+                )
+                INSERT INTO tasks_archive(
+                    id, type, payload, status, run_at,
+                    attempt, max_attempts, error,
+                    locked_by, locked_until,
+                    created_at, updated_at, priority, archived_at
+                )
+                SELECT id, type, payload, status, run_at,
+                       attempt, max_attempts, error,
+                       locked_by, locked_until,
+                       created_at, updated_at, priority, now()
+                FROM moved
+                """,
+                graceMinutes,
+                limit
+        );
+    }
+
+    /**
+     * Detaches and drops archive partitions whose whole day is before the given day.
+     *
+     * @return names of the dropped partitions
+     */
+    public List<String> dropPartitionsBefore(LocalDate day) {
+        List<String> dropped = new ArrayList<>();
+        for (String parent : List.of(TASKS_ARCHIVE, ATTEMPTS_ARCHIVE)) {
+            for (String partition : listPartitions(parent)) {
+                LocalDate partitionDay = partitionDay(parent, partition);
+                if (partitionDay != null && partitionDay.isBefore(day)) {
+                    jdbc.execute("ALTER TABLE " + parent + " DETACH PARTITION " + partition);
+                    jdbc.execute("DROP TABLE " + partition);
+                    dropped.add(partition);
+                }
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the partition names of an archive table.
+     */
+    List<String> listPartitions(String parent) {
+        return jdbc.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE p.relname = ?
+                ORDER BY c.relname
+                """,
+                String.class,
+                parent
+        );
+    }
+
+    private void createPartition(String parent, LocalDate day) {
+        jdbc.execute("""
+                CREATE TABLE IF NOT EXISTS %s PARTITION OF %s
+                FOR VALUES FROM ('%s 00:00:00+00') TO ('%s 00:00:00+00')
+                """.formatted(partitionName(parent, day), parent, day, day.plusDays(1)));
+    }
+
+    private static String partitionName(String parent, LocalDate day) {
+        return parent + "_p" + PARTITION_SUFFIX.format(day);
+    }
+
+    /**
+     * Parses the day from a partition name, null for tables not created by this class.
+     */
+    private static LocalDate partitionDay(String parent, String partition) {
+        String prefix = parent + "_p";
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partition.substring(prefix.length()), PARTITION_SUFFIX);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+}
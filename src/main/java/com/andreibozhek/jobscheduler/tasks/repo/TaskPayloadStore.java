@@ -0,0 +1,252 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps large payloads out of the hot tasks table.
+ * <p>
+ * A payload of up to tasks.payload.inlineMaxBytes is stored in tasks.payload
+ * as before. A larger one is compressed and stored in task_payloads under the
+ * task id, and tasks.payload gets a small reference instead:
+ * {"$payloadRef": "<task id>"}. Claim, reaper and list queries then read
+ * narrow rows, whatever the size of the payloads.
+ * <p>
+ * The full payload is loaded only where it is needed: by the worker right
+ * before the handler runs, and for API responses and exports. Callers pass
+ * tasks through resolve() or resolveAll(), which return inline tasks as they
+ * are.
+ */
+@Repository
+public class TaskPayloadStore {
+
+    /**
+     * Top level field of the reference, client payloads must not use it.
+     */
+    public static final String REFERENCE_FIELD = "$payloadRef";
+
+    static final String CODEC_DEFLATE = "deflate";
+
+    private static final String REF_PREFIX = "{\"" + REFERENCE_FIELD + "\": \"";
+
+    private final JdbcTemplate jdbc;
+    private final PayloadProperties props;
+
+    public TaskPayloadStore(JdbcTemplate jdbc, PayloadProperties props) {
+        this.jdbc = jdbc;
+        this.props = props;
+    }
+
+    /**
+     * Returns true when the payload JSON is larger than tasks.payload.maxBytes.
+     */
+    public boolean tooLarge(String payloadJson) {
+        return payloadJson.length() > props.maxBytes() || utf8Length(payloadJson) > props.maxBytes();
+    }
+
+    /**
+     * Returns true for the reference that replaces an offloaded payload.
+     * <p>
+     * The reference is written by this class and read back as jsonb text, whose
+     * format is fixed, so a prefix check is enough and no payload is parsed.
+     */
+    public static boolean isReference(String payloadJson) {
+        return payloadJson != null && payloadJson.startsWith(REF_PREFIX);
+    }
+
+    static String reference(UUID taskId) {
+        return REF_PREFIX + taskId + "\"}";
+    }
+
+    /**
+     * Stores the payload of a new task in task_payloads when it is too large to
+     * stay inline.
+     * <p>
+     * Must be called before the task is inserted, so a worker never sees a
+     * reference without its payload. A task that is not inserted after all, for
+     * example a repeated idempotency key, leaves an unreferenced row that
+     * deleteOrphans() removes later. A payload that is already stored under the
+     * task id is kept: ids of schedule fires are derived from the fire, so a
+     * repeated fire offloads the same payload again before its insert is skipped.
+     *
+     * @return the task to insert: the same task, or a copy with the reference as payload
+     */
+    public Task offload(Task t) {
+        String json = t.payloadJson();
+        if (json.length() <= props.inlineMaxBytes() / 3 || utf8Length(json) <= props.inlineMaxBytes()) {
+            return t;
+        }
+        byte[] raw = json.getBytes(StandardCharsets.UTF_8);
+        jdbc.update("""
+                INSERT INTO task_payloads(task_id, codec, size, data)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (task_id) DO NOTHING
+                """,
+                t.id(),
+                CODEC_DEFLATE,
+                raw.length,
+                compress(raw, props.compressionLevel())
+        );
+        return t.withPayloadJson(reference(t.id()));
+    }
+
+    /**
+     * Returns the task with its full payload.
+     *
+     * @throws IllegalStateException when the referenced payload does not exist
+     */
+    public Task resolve(Task t) {
+        if (!isReference(t.payloadJson())) {
+            return t;
+        }
+        List<String> payloads = jdbc.query(
+                "SELECT codec, size, data FROM task_payloads WHERE task_id = ?",
+                (rs, rowNum) -> decompress(rs.getString("codec"), rs.getInt("size"), rs.getBytes("data")),
+                t.id()
+        );
+        if (payloads.isEmpty()) {
+            throw new IllegalStateException("Payload of task " + t.id() + " is missing");
+        }
+        return t.withPayloadJson(payloads.get(0));
+    }
+
+    /**
+     * Returns the tasks with their full payloads, loaded by one query.
+     * <p>
+     * A task whose payload is missing keeps its reference, so one broken row
+     * does not fail a whole page.
+     */
+    public List<Task> resolveAll(List<Task> tasks) {
+        List<UUID> ids = new ArrayList<>();
+        for (Task t : tasks) {
+            if (isReference(t.payloadJson())) {
+                ids.add(t.id());
+            }
+        }
+        if (ids.isEmpty()) {
+            return tasks;
+        }
+
+        Map<UUID, String> payloads = new HashMap<>();
+        jdbc.query("SELECT task_id, codec, size, data FROM task_payloads WHERE task_id = ANY(?::uuid[])",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+                (RowCallbackHandler) rs -> payloads.put(
+                        rs.getObject("task_id", UUID.class),
+                        decompress(rs.getString("codec"), rs.getInt("size"), rs.getBytes("data")))
+        );
+
+        List<Task> resolved = new ArrayList<>(tasks.size());
+        for (Task t : tasks) {
+            String payload = payloads.get(t.id());
+            resolved.add(payload == null ? t : t.withPayloadJson(payload));
+        }
+        return resolved;
+    }
+
+    /**
+     * Deletes one batch of payloads created before the given time whose task
+     * is neither in the hot table nor in the archive.
+     * <p>
+     * Payloads are kept when their task is archived and go away only after the
+     * archive partition of the task was dropped, so the cutoff should be the
+     * archive retention.
+     *
+     * @return number of deleted payloads
+     */
+    public int deleteOrphans(OffsetDateTime createdBefore, int limit) {
+        return jdbc.update("""
+                DELETE FROM task_payloads
+                WHERE task_id IN (
+                    SELECT p.task_id
+                    FROM task_payloads p
+                    WHERE p.created_at < ?
+                      AND NOT EXISTS (SELECT 1 FROM tasks t WHERE t.id = p.task_id)
+                      AND NOT EXISTS (SELECT 1 FROM tasks_archive a WHERE a.id = p.task_id)
+                    ORDER BY p.created_at
+                    LIMIT ?
+                )
+                """,
+                createdBefore,
+                limit
+        );
+    }
+
+    static byte[] compress(byte[] raw, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(raw.length / 4, 64));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String decompress(String codec, int size, byte[] data) {
+        if (!CODEC_DEFLATE.equals(codec)) {
+            throw new IllegalStateException("Unknown payload codec: " + codec);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] raw = new byte[size];
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, size - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != size) {
+                throw new IllegalStateException("Corrupt payload, expected " + size + " bytes, got " + n);
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt payload", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Counts the UTF-8 bytes of a string without encoding it.
+     */
+    static int utf8Length(CharSequence s) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
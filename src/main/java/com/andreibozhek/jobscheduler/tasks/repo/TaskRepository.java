@@ -1,30 +1,129 @@
 package com.andreibozhek.jobscheduler.tasks.repo;
 
 import com.andreibozhek.jobscheduler.tasks.api.TaskAttemptResponse;
+import com.andreibozhek.jobscheduler.tasks.api.TaskConflictException;
+import com.andreibozhek.jobscheduler.tasks.domain.QueueStats;
 import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskAttempt;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskCompletion;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskCursor;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskExportFilter;
 import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import com.andreibozhek.jobscheduler.tasks.domain.TypeCapacity;
+import com.andreibozhek.jobscheduler.tasks.domain.UpcomingTask;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.ArrayList;
+import java.util.function.Consumer;
 
 @Repository
 public class TaskRepository {
     private final JdbcTemplate jdbc;
 
+    /**
+     * Rows per round trip of an export cursor.
+     */
+    static final int EXPORT_FETCH_SIZE = 1000;
+
+    /**
+     * Columns of the full task view, in the order taskRowMapper() reads them.
+     * <p>
+     * Queries list them instead of SELECT *, so pending_deps, idempotency_key
+     * and archived_at are not transferred and a new column does not change
+     * what the mapper sees.
+     */
+    static final String TASK_COLUMNS = """
+            id, type, payload, status, run_at, attempt, max_attempts, error, \
+            locked_by, locked_until, created_at, updated_at, priority""";
+
+    /**
+     * TASK_COLUMNS qualified with the alias t, for UPDATE ... FROM ... RETURNING.
+     */
+    private static final String TASK_COLUMNS_T = """
+            t.id, t.type, t.payload, t.status, t.run_at, t.attempt, t.max_attempts, t.error, \
+            t.locked_by, t.locked_until, t.created_at, t.updated_at, t.priority""";
+
+    /**
+     * Columns of the summary view: the full view without payload, in the
+     * order taskSummaryRowMapper() reads them.
+     */
+    static final String SUMMARY_COLUMNS = """
+            id, type, status, run_at, attempt, max_attempts, error, \
+            locked_by, locked_until, created_at, updated_at, priority""";
+
+    private static final RowMapper<Task> TASK_ROW_MAPPER = new RowMapper<>() {
+        @Override
+        public Task mapRow(@NonNull ResultSet rs, int rowNum) throws SQLException {
+            return new Task(
+                    rs.getObject(1, UUID.class),
+                    rs.getString(2),
+                    rs.getString(3),
+                    TaskStatus.valueOf(rs.getString(4)),
+                    rs.getObject(5, OffsetDateTime.class),
+                    rs.getInt(6),
+                    rs.getInt(7),
+                    rs.getString(8),
+                    rs.getString(9),
+                    rs.getObject(10, OffsetDateTime.class),
+                    rs.getObject(11, OffsetDateTime.class),
+                    rs.getObject(12, OffsetDateTime.class),
+                    rs.getInt(13)
+            );
+        }
+    };
+
+    private static final RowMapper<Task> TASK_SUMMARY_ROW_MAPPER = new RowMapper<>() {
+        @Override
+        public Task mapRow(@NonNull ResultSet rs, int rowNum) throws SQLException {
+            return new Task(
+                    rs.getObject(1, UUID.class),
+                    rs.getString(2),
+                    null,
+                    TaskStatus.valueOf(rs.getString(3)),
+                    rs.getObject(4, OffsetDateTime.class),
+                    rs.getInt(5),
+                    rs.getInt(6),
+                    rs.getString(7),
+                    rs.getString(8),
+                    rs.getObject(9, OffsetDateTime.class),
+                    rs.getObject(10, OffsetDateTime.class),
+                    rs.getObject(11, OffsetDateTime.class),
+                    rs.getInt(12)
+            );
+        }
+    };
+
     public TaskRepository(JdbcTemplate jdbc) {
         this.jdbc = jdbc;
     }
 
+    private static final String INSERT_SQL = """
+            INSERT INTO tasks(
+                id, type, payload, status, run_at,
+                attempt, max_attempts, error,
+                locked_by, locked_until, priority
+            ) VALUES (
+                ?, ?, ?::jsonb, ?, ?,
+                ?, ?, ?,
+                ?, ?, ?
+            )
+            """;
+
     /**
      * Stores a new task in the database.
      * <p>
@@ -33,17 +132,7 @@ public class TaskRepository {
      * so the method casts the JSON string with ::jsonb.
      */
     public void insert(Task t) {
-        jdbc.update("""
-                INSERT INTO tasks(
-                    id, type, payload, status, run_at,
-                    attempt, max_attempts, error,
-                    locked_by, locked_until
-                ) VALUES (
-                    ?, ?, ?::jsonb, ?, ?,
-                    ?, ?, ?,
-                    ?, ?
-                )
-                """,
+        jdbc.update(INSERT_SQL,
                 t.id(),
                 t.type(),
                 t.payloadJson(),
@@ -53,8 +142,211 @@ public class TaskRepository {
                 t.maxAttempts(),
                 t.error(),
                 t.lockedBy(),
-                t.lockedUntil()
+                t.lockedUntil(),
+                t.priority()
+        );
+    }
+
+    /**
+     * Stores a new task unless a task with the same idempotency key exists.
+     * <p>
+     * The insert uses ON CONFLICT DO NOTHING on the unique key index. When an
+     * uncommitted insert with the same key is in flight, PostgreSQL waits for
+     * it, so two concurrent requests with one key never both insert. If nothing
+     * was inserted, the existing task is read instead.
+     * <p>
+     * The fingerprint of the request is stored with the key. A task found by
+     * the key is only returned when it was created with the same fingerprint;
+     * rows stored before fingerprints existed have none and always match.
+     *
+     * @param idempotencyKey key of the request, null for an unkeyed insert
+     * @param fingerprint    fingerprint of the request the key belongs to, null for an unkeyed insert
+     * @return the new task, or the task that was created earlier with the key
+     * @throws TaskConflictException when the key was used for a request with another fingerprint
+     */
+    @Transactional
+    public Task insertIfAbsent(Task t, String idempotencyKey, String fingerprint) {
+        while (true) {
+            List<UUID> inserted = jdbc.query("""
+                    INSERT INTO tasks(
+                        id, type, payload, status, run_at,
+                        attempt, max_attempts, error,
+                        locked_by, locked_until, priority, idempotency_key, idempotency_fingerprint
+                    ) VALUES (
+                        ?, ?, ?::jsonb, ?, ?,
+                        ?, ?, ?,
+                        ?, ?, ?, ?, ?
+                    )
+                    ON CONFLICT (idempotency_key) WHERE idempotency_key IS NOT NULL DO NOTHING
+                    RETURNING id
+                    """,
+                    (rs, rowNum) -> rs.getObject("id", UUID.class),
+                    t.id(),
+                    t.type(),
+                    t.payloadJson(),
+                    t.status().name(),
+                    t.runAt(),
+                    t.attempt(),
+                    t.maxAttempts(),
+                    t.error(),
+                    t.lockedBy(),
+                    t.lockedUntil(),
+                    t.priority(),
+                    idempotencyKey,
+                    fingerprint
+            );
+            if (!inserted.isEmpty()) {
+                return t;
+            }
+
+            List<String> fingerprints = new ArrayList<>(1);
+            List<Task> existing = jdbc.query(
+                    "SELECT " + TASK_COLUMNS + ", idempotency_fingerprint FROM tasks WHERE idempotency_key = ?",
+                    (rs, rowNum) -> {
+                        fingerprints.add(rs.getString("idempotency_fingerprint"));
+                        return TASK_ROW_MAPPER.mapRow(rs, rowNum);
+                    },
+                    idempotencyKey
+            );
+            if (!existing.isEmpty()) {
+                String stored = fingerprints.get(0);
+                if (stored != null && fingerprint != null && !stored.equals(fingerprint)) {
+                    throw new TaskConflictException(
+                            "idempotency key " + idempotencyKey + " was already used for a different request");
+                }
+                return existing.get(0);
+            }
+            // The conflicting task was archived in between, the key is free again
+        }
+    }
+
+    /**
+     * Stores many new tasks with one JDBC batch in one transaction.
+     * <p>
+     * The PostgreSQL driver is configured with reWriteBatchedInserts, so the
+     * batch is sent as multi-row INSERT statements instead of one statement per
+     * task. The whole batch is committed once, which also means the insert
+     * trigger sends one notification per statement instead of one per task.
+     */
+    @Transactional
+    public void insertAll(List<Task> tasks) {
+        batchInsert(INSERT_SQL, tasks);
+    }
+
+    /**
+     * Stores many new tasks like insertAll(), but skips tasks whose id exists.
+     * <p>
+     * Used for tasks with deterministic ids, such as schedule fires, so
+     * inserting the same task twice is not an error and does not run it twice.
+     */
+    @Transactional
+    public void insertAllIfAbsent(List<Task> tasks) {
+        batchInsert(INSERT_SQL + "ON CONFLICT (id) DO NOTHING\n", tasks);
+    }
+
+    private void batchInsert(String sql, List<Task> tasks) {
+        jdbc.batchUpdate(sql, tasks, tasks.size(), (ps, t) -> {
+            ps.setObject(1, t.id());
+            ps.setString(2, t.type());
+            ps.setString(3, t.payloadJson());
+            ps.setString(4, t.status().name());
+            ps.setObject(5, t.runAt());
+            ps.setInt(6, t.attempt());
+            ps.setInt(7, t.maxAttempts());
+            ps.setString(8, t.error());
+            ps.setString(9, t.lockedBy());
+            ps.setObject(10, t.lockedUntil());
+            ps.setInt(11, t.priority());
+        });
+    }
+
+    /**
+     * Stores a new task that runs after the given tasks succeeded.
+     * <p>
+     * Parents that are already DONE are satisfied. For the others an edge is
+     * stored and the task is inserted as BLOCKED with pending_deps set to the
+     * number of edges; completeAll() releases it when the last parent is DONE.
+     * Without unfinished parents the task is stored as given.
+     * <p>
+     * The parent rows are read FOR SHARE. A parent that finishes at the same
+     * time waits in completeAll() until this transaction commits, so its
+     * decrement sees the new edge; a parent that finished before is seen as
+     * DONE here. Parents that are no longer in the hot table are finished and
+     * are read from the archive.
+     *
+     * With an idempotency key, an existing task with that key is returned
+     * as in insertIfAbsent() and no edges are stored.
+     *
+     * @return the task as stored
+     * @throws IllegalArgumentException when a parent does not exist or did not succeed
+     * @throws TaskConflictException when the key was used for a request with another fingerprint
+     */
+    @Transactional
+    public Task insertWithDependencies(
+            Task t, Collection<UUID> dependsOn, String idempotencyKey, String fingerprint) {
+        UUID[] parentIds = dependsOn.stream().distinct().toArray(UUID[]::new);
+        Map<UUID, TaskStatus> parents = new HashMap<>();
+        jdbc.query("""
+                SELECT id, status
+                FROM tasks
+                WHERE id = ANY(?::uuid[])
+                ORDER BY id
+                FOR SHARE
+                """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", parentIds)),
+                rs -> {
+                    parents.put(rs.getObject("id", UUID.class), TaskStatus.valueOf(rs.getString("status")));
+                }
+        );
+        if (parents.size() < parentIds.length) {
+            jdbc.query("SELECT id, status FROM tasks_archive WHERE id = ANY(?::uuid[])",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", parentIds)),
+                    rs -> {
+                        parents.put(rs.getObject("id", UUID.class), TaskStatus.valueOf(rs.getString("status")));
+                    }
+            );
+        }
+
+        List<UUID> unfinished = new ArrayList<>();
+        for (UUID parentId : parentIds) {
+            TaskStatus status = parents.get(parentId);
+            if (status == null) {
+                throw new IllegalArgumentException("dependency not found: " + parentId);
+            }
+            if (status == TaskStatus.FAILED || status == TaskStatus.CANCELED) {
+                throw new IllegalArgumentException("dependency " + parentId + " is " + status);
+            }
+            if (status != TaskStatus.DONE) {
+                unfinished.add(parentId);
+            }
+        }
+        if (unfinished.isEmpty()) {
+            return insertIfAbsent(t, idempotencyKey, fingerprint);
+        }
+
+        Task blocked = t.withStatus(TaskStatus.BLOCKED);
+        Task stored = insertIfAbsent(blocked, idempotencyKey, fingerprint);
+        if (!stored.id().equals(blocked.id())) {
+            return stored;
+        }
+        UUID[] edges = unfinished.toArray(UUID[]::new);
+        jdbc.update("""
+                WITH edges AS (
+                    INSERT INTO task_dependencies(parent_id, child_id)
+                    SELECT unnest(?::uuid[]), ?
+                    RETURNING 1
+                )
+                UPDATE tasks
+                SET pending_deps = (SELECT count(*) FROM edges)
+                WHERE id = ?
+                """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("uuid", edges));
+                    ps.setObject(2, blocked.id());
+                    ps.setObject(3, blocked.id());
+                }
         );
+        return blocked;
     }
 
     /**
@@ -62,41 +354,72 @@ public class TaskRepository {
      * <p>
      * The method returns Optional.empty() when no row exists for the given id.
      * This lets the service or controller decide how to handle a missing task.
+     * Archived tasks are found too, through the tasks_all view.
      */
     public Optional<Task> findByID(UUID id) {
         List<Task> rows = jdbc.query(
-                "SELECT * FROM tasks WHERE id = ?",
+                "SELECT " + TASK_COLUMNS + " FROM tasks_all WHERE id = ?",
                 taskRowMapper(),
                 id
         );
         return rows.stream().findFirst();
     }
 
+    /**
+     * Finds only the status of a task, archived tasks included.
+     * <p>
+     * For callers that check existence or status, such as cancel, so payload
+     * and error are not read.
+     */
+    public Optional<TaskStatus> findStatus(UUID id) {
+        List<TaskStatus> rows = jdbc.query(
+                "SELECT status FROM tasks_all WHERE id = ?",
+                (rs, rowNum) -> TaskStatus.valueOf(rs.getString(1)),
+                id
+        );
+        return rows.stream().findFirst();
+    }
+
     /**
      * Lists tasks with optional status filtering.
      * <p>
      * When status is null, tasks from all statuses are returned. Results are
      * ordered by creation time, newest first, and limited by limit and offset.
+     * <p>
+     * Archived tasks are included through the tasks_all view.
+     * <p>
+     * The database still reads and discards all skipped rows, so deep pages get
+     * slower. listAfter() is the cursor based alternative.
      */
     public List<Task> list(TaskStatus status, int limit, int offset) {
+        return list(status, limit, offset, true);
+    }
+
+    /**
+     * Lists tasks like list(status, limit, offset). Without payload the
+     * summary view is read and the tasks have a null payloadJson.
+     */
+    public List<Task> list(TaskStatus status, int limit, int offset, boolean withPayload) {
+        String columns = withPayload ? TASK_COLUMNS : SUMMARY_COLUMNS;
+        RowMapper<Task> mapper = withPayload ? TASK_ROW_MAPPER : TASK_SUMMARY_ROW_MAPPER;
         if (status == null) {
             return jdbc.query("""
-                    SELECT * FROM tasks
-                    ORDER BY created_at DESC
+                    SELECT %s FROM tasks_all
+                    ORDER BY created_at DESC, id DESC
                     LIMIT ? OFFSET ?
-                    """,
-                    taskRowMapper(),
+                    """.formatted(columns),
+                    mapper,
                     limit,
                     offset
             );
         }
         return jdbc.query("""
-                SELECT * FROM tasks
+                SELECT %s FROM tasks_all
                 WHERE status = ?
-                ORDER BY created_at DESC
+                ORDER BY created_at DESC, id DESC
                 LIMIT ? OFFSET ?
-                """,
-                taskRowMapper(),
+                """.formatted(columns),
+                mapper,
                 status.name(),
                 limit,
                 offset
@@ -104,182 +427,671 @@ public class TaskRepository {
     }
 
     /**
-     * Cancels a task only if it is still pending.
+     * Lists tasks that come after the cursor in (created_at DESC, id DESC) order.
+     * <p>
+     * The row comparison (created_at, id) < (?, ?) is an index range condition on
+     * idx_tasks_created_at_id or idx_tasks_status_created_at_id (and the matching
+     * indexes of tasks_archive), so the database
+     * starts reading at the cursor and stops after limit rows. The cost of a page
+     * does not depend on how deep it is.
+     * <p>
+     * A null cursor returns the first page.
+     */
+    public List<Task> listAfter(TaskStatus status, TaskCursor cursor, int limit) {
+        return listAfter(status, cursor, limit, true);
+    }
+
+    /**
+     * Lists tasks like listAfter(status, cursor, limit), optionally without payload.
+     */
+    public List<Task> listAfter(TaskStatus status, TaskCursor cursor, int limit, boolean withPayload) {
+        if (cursor == null) {
+            return list(status, limit, 0, withPayload);
+        }
+        String columns = withPayload ? TASK_COLUMNS : SUMMARY_COLUMNS;
+        RowMapper<Task> mapper = withPayload ? TASK_ROW_MAPPER : TASK_SUMMARY_ROW_MAPPER;
+        if (status == null) {
+            return jdbc.query("""
+                    SELECT %s FROM tasks_all
+                    WHERE (created_at, id) < (?, ?)
+                    ORDER BY created_at DESC, id DESC
+                    LIMIT ?
+                    """.formatted(columns),
+                    mapper,
+                    cursor.createdAt(),
+                    cursor.id(),
+                    limit
+            );
+        }
+        return jdbc.query("""
+                SELECT %s FROM tasks_all
+                WHERE status = ?
+                  AND (created_at, id) < (?, ?)
+                ORDER BY created_at DESC, id DESC
+                LIMIT ?
+                """.formatted(columns),
+                mapper,
+                status.name(),
+                cursor.createdAt(),
+                cursor.id(),
+                limit
+        );
+    }
+
+    /**
+     * Cancels a task only if it is still pending or blocked.
      * <p>
      * The status check is part of the SQL update.
      * This protects the method from race conditions
      * where another worker may change the task status at the same time.
+     * Blocked tasks that depend on the canceled task can never run, they are
+     * canceled in the same transaction.
      * The method returns true only when exactly one row was updated.
      */
+    @Transactional
     public boolean cancelIfPending(UUID id) {
         int updated = jdbc.update("""
                 UPDATE tasks
                 SET status = 'CANCELED'
-                WHERE id = ? AND status = 'PENDING'
+                WHERE id = ? AND status IN ('PENDING', 'BLOCKED')
                 """, id);
+        if (updated == 1) {
+            cancelBlockedDescendants(new UUID[]{id});
+        }
         return updated == 1;
     }
 
     /**
-     * Creates a RowMapper that converts a database row into a Task record.
+     * Returns the RowMapper that converts a row of TASK_COLUMNS into a Task record.
      * <p>
-     * Keeping the mapping in one method makes all task queries use the same
+     * Keeping the mapping in one place makes all task queries use the same
      * conversion logic for timestamps, UUID values, status values, and lock fields.
+     * Columns are read by index, which skips the name lookup per column and
+     * row, and the id is read as a UUID by the driver without a String in
+     * between. So every query using it must select TASK_COLUMNS in this order.
+     * The method is package-private so repository benchmarks can reuse it.
      */
-    private RowMapper<Task> taskRowMapper() {
-        return new RowMapper<>() {
-            @Override
-            public Task mapRow(@NonNull ResultSet rs, int rowNum) throws SQLException {
-                return new Task(
-                        UUID.fromString(rs.getString("id")),
-                        rs.getString("type"),
-                        rs.getString("payload"),
-                        TaskStatus.valueOf(rs.getString("status")),
-                        rs.getObject("run_at", OffsetDateTime.class),
-                        rs.getInt("attempt"),
-                        rs.getInt("max_attempts"),
-                        rs.getString("error"),
-                        rs.getString("locked_by"),
-                        rs.getObject("locked_until", OffsetDateTime.class),
-                        rs.getObject("created_at", OffsetDateTime.class),
-                        rs.getObject("updated_at", OffsetDateTime.class)
-                );
-            }
-        };
+    RowMapper<Task> taskRowMapper() {
+        return TASK_ROW_MAPPER;
+    }
+
+    /**
+     * Claims due pending tasks of the given types without per-type limits.
+     */
+    public List<Task> claimDueTasks(String workerId, List<String> types, int batchSize, int lockSeconds) {
+        List<TypeCapacity> capacities = types.stream()
+                .map(type -> new TypeCapacity(type, batchSize, null, null, null))
+                .toList();
+        return claimDueTasks(workerId, capacities, batchSize, lockSeconds);
     }
 
     /**
      * Claims due pending tasks for one worker.
      * <p>
      * A task is due when its status is PENDING and run_at is not in the future.
-     * The SELECT query uses FOR UPDATE SKIP LOCKED so multiple workers can claim
-     * tasks at the same time without taking the same row.
+     * Only tasks of the given types are claimed, these are the types the worker
+     * has handlers for and free capacity for.
+     * <p>
+     * Per-type limits: at most TypeCapacity.free tasks of a type are claimed.
+     * When clusterMaxInFlight is set, the claim counts RUNNING tasks of the type
+     * (idx_tasks_running_type) and takes at most the difference. The RUNNING rows
+     * are the shared counter, so it cannot drift from the real state. Two claims
+     * running at the same moment do not see each other, so the limit can be
+     * exceeded by at most one claim per concurrent worker.
+     * <p>
+     * When clusterPermitsPerSecond is set, the type draws from a token bucket in
+     * task_rate_limits that all workers share. The claim locks the bucket rows
+     * of its types (in type order, so claims do not deadlock), refills them from
+     * the time since the last claim up to a burst of one second, takes at most
+     * the whole tokens and writes back what is left. A claim that waits for the
+     * lock sees the bucket as the other claim left it, so the rate holds for
+     * the whole cluster. A type without a bucket row yet starts with a full
+     * bucket; the first claim creates the row.
+     * <p>
+     * Tasks are picked with weighted fair queuing over lanes. A lane is one
+     * (type, priority) pair. Each lane is read with a LATERAL subquery in run_at
+     * order, which is an index range scan on idx_tasks_pending_lane. The n-th
+     * task of a lane gets the virtual time start + n / (priority + 1), and the
+     * claim takes the tasks with the smallest virtual times over all lanes.
+     * <p>
+     * start is the virtual time the lane reached in earlier claims, kept in
+     * task_lanes, so the weighting carries over from one claim to the next and
+     * also holds for batches of one task. start is at least the largest stored
+     * virtual time of the claimed types minus one: a new lane, or one that was
+     * idle while others advanced, gets at most one round of priority 0 tasks
+     * ahead and cannot flood the claims when it gets tasks again. Equal virtual
+     * times go to the lane that was served least recently. So:
+     * - a flood of one type does not delay other types, lanes take turns;
+     * - a priority 9 lane gets ten times the share of a priority 0 lane, and a
+     *   waiting priority 0 lane is served at least once per ten claims of the
+     *   priority 9 lane.
+     * <p>
+     * Only lanes that got tasks are written back, and only when their row can
+     * be locked without waiting (FOR UPDATE SKIP LOCKED). Workers that claim
+     * from the same lane at the same time therefore never queue behind each
+     * other on task_lanes; a claim that finds the row locked leaves the update
+     * to the claim holding it, which only makes the lane a little cheaper for
+     * that round. A lane without a row yet is inserted once, with ON CONFLICT
+     * DO NOTHING. Only the largest virtual time is kept, so the result does
+     * not depend on which claim commits first.
+     * <p>
+     * The lane subqueries use FOR UPDATE SKIP LOCKED so multiple workers can claim
+     * tasks at the same time without taking the same row. Each lane reads and locks
+     * at most the free capacity of its type; rows that are locked but not picked
+     * are released when the statement commits.
+     * <p>
+     * Selecting, updating and returning the claimed rows happens in one statement,
+     * so a claim costs a single round trip and the SQL text does not depend on the
+     * batch size or the number of types. This keeps the statement in the
+     * PostgreSQL prepared statement cache.
      * <p>
      * Claimed tasks are moved to RUNNING, assigned to the worker id, given a lease
-     * time, and their attempt counter is increased. The method returns the updated
-     * task rows so the worker can execute them.
+     * time, and their attempt counter is increased. The lease is TypeCapacity.leaseMs
+     * of the task type, bound as one array like the capacities, or lockSeconds
+     * for types without their own lease; it matches what the heartbeat renews
+     * later. The method returns the updated task rows so the worker can execute them.
      */
-    @Transactional
-    public List<Task> claimDueTasks(String workerId, int batchSize, int lockSeconds) {
+    public List<Task> claimDueTasks(String workerId, Collection<TypeCapacity> capacities, int batchSize, int lockSeconds) {
+        if (capacities.isEmpty()) {
+            return List.of();
+        }
 
-        List<UUID> ids = jdbc.query("""
-                SELECT id
+        String[] types = new String[capacities.size()];
+        Integer[] free = new Integer[capacities.size()];
+        Integer[] clusterMax = new Integer[capacities.size()];
+        Double[] clusterRate = new Double[capacities.size()];
+        Long[] leaseMs = new Long[capacities.size()];
+        int i = 0;
+        for (TypeCapacity c : capacities) {
+            types[i] = c.type();
+            free[i] = c.free();
+            clusterMax[i] = c.clusterMaxInFlight();
+            clusterRate[i] = c.clusterPermitsPerSecond();
+            leaseMs[i] = c.leaseMs();
+            i++;
+        }
+
+        return jdbc.query("""
+                WITH input AS (
+                    SELECT *
+                    FROM unnest(?::text[], ?::int[], ?::int[], ?::float8[], ?::int8[])
+                         AS ty(type, free, cluster_max, cluster_rate, lease_ms)
+                ),
+                buckets AS (
+                    SELECT rl.type, rl.tokens, rl.refilled_at
+                    FROM task_rate_limits rl
+                    WHERE rl.type IN (SELECT type FROM input WHERE cluster_rate IS NOT NULL)
+                    ORDER BY rl.type
+                    FOR UPDATE
+                ),
+                tokens AS (
+                    SELECT i.type,
+                           least(
+                               greatest(ceil(i.cluster_rate), 1),
+                               coalesce(
+                                   b.tokens + i.cluster_rate
+                                       * greatest(extract(epoch FROM now() - b.refilled_at), 0),
+                                   greatest(ceil(i.cluster_rate), 1)
+                               )
+                           ) AS tokens,
+                           greatest(b.refilled_at, now()) AS refilled_at
+                    FROM input i
+                    LEFT JOIN buckets b ON b.type = i.type
+                    WHERE i.cluster_rate IS NOT NULL
+                ),
+                capacity AS (
+                    SELECT i.type,
+                           least(
+                               CASE
+                                   WHEN i.cluster_max IS NULL THEN i.free
+                                   ELSE least(i.free, i.cluster_max - (
+                                       SELECT count(*)
+                                       FROM tasks r
+                                       WHERE r.status = 'RUNNING'
+                                       AND r.type = i.type
+                                   ))::int
+                               END,
+                               coalesce(floor(t.tokens)::int, i.free)
+                           ) AS free
+                    FROM input i
+                    LEFT JOIN tokens t ON t.type = i.type
+                ),
+                lanes AS (
+                    SELECT c.type, c.free, p.priority, tl.vtime AS stored_vtime, tl.served_at
+                    FROM capacity c
+                    CROSS JOIN generate_series(0, 9) AS p(priority)
+                    LEFT JOIN task_lanes tl ON tl.type = c.type AND tl.priority = p.priority
+                    WHERE c.free > 0
+                ),
+                candidates AS (
+                    SELECT c.id,
+                           l.type,
+                           l.free,
+                           l.priority,
+                           l.stored_vtime,
+                           l.served_at,
+                           row_number() OVER (PARTITION BY l.type, l.priority ORDER BY c.run_at) AS lane_pos
+                    FROM lanes l
+                    CROSS JOIN LATERAL (
+                        SELECT id, run_at
+                        FROM tasks
+                        WHERE status = 'PENDING'
+                        AND type = l.type
+                        AND priority = l.priority
+                        AND run_at <= now()
+                        ORDER BY run_at
+                        LIMIT least(l.free, ?)
+                        FOR UPDATE SKIP LOCKED
+                    ) c
+                ),
+                clock AS (
+                    SELECT coalesce(max(stored_vtime) - 1, 0) AS vtime
+                    FROM lanes
+                ),
+                started AS (
+                    SELECT c.*,
+                           greatest(coalesce(c.stored_vtime, k.vtime), k.vtime) AS start_vtime
+                    FROM candidates c
+                    CROSS JOIN clock k
+                ),
+                ranked AS (
+                    SELECT id,
+                           type,
+                           free,
+                           priority,
+                           served_at,
+                           stored_vtime,
+                           start_vtime + lane_pos::float8 / (priority + 1) AS vtime,
+                           row_number() OVER (
+                               PARTITION BY type
+                               ORDER BY start_vtime + lane_pos::float8 / (priority + 1),
+                                        priority DESC, served_at NULLS FIRST
+                           ) AS type_pos
+                    FROM started
+                ),
+                due AS (
+                    SELECT id, type
+                    FROM ranked
+                    WHERE type_pos <= free
+                    ORDER BY vtime, priority DESC, served_at NULLS FIRST
+                    LIMIT ?
+                ),
+                served_lanes AS (
+                    SELECT r.type, r.priority, max(r.vtime) AS vtime, bool_or(r.stored_vtime IS NULL) AS new_lane
+                    FROM ranked r
+                    JOIN due d ON d.id = r.id
+                    GROUP BY r.type, r.priority
+                ),
+                locked_lanes AS (
+                    SELECT tl.type, tl.priority
+                    FROM task_lanes tl
+                    WHERE (tl.type, tl.priority) IN (SELECT type, priority FROM served_lanes)
+                    ORDER BY tl.type, tl.priority
+                    FOR UPDATE SKIP LOCKED
+                ),
+                advanced_lanes AS (
+                    UPDATE task_lanes tl
+                    SET vtime = greatest(tl.vtime, s.vtime),
+                        served_at = now()
+                    FROM locked_lanes l
+                    JOIN served_lanes s ON s.type = l.type AND s.priority = l.priority
+                    WHERE tl.type = l.type
+                    AND tl.priority = l.priority
+                ),
+                new_lanes AS (
+                    INSERT INTO task_lanes(type, priority, vtime, served_at)
+                    SELECT type, priority, vtime, now()
+                    FROM served_lanes
+                    WHERE new_lane
+                    ORDER BY type, priority
+                    ON CONFLICT (type, priority) DO NOTHING
+                ),
+                spent_tokens AS (
+                    INSERT INTO task_rate_limits(type, tokens, refilled_at)
+                    SELECT t.type,
+                           t.tokens - (SELECT count(*) FROM due d WHERE d.type = t.type),
+                           t.refilled_at
+                    FROM tokens t
+                    ORDER BY t.type
+                    ON CONFLICT (type) DO UPDATE
+                    SET tokens = EXCLUDED.tokens,
+                        refilled_at = EXCLUDED.refilled_at
+                )
+                UPDATE tasks t
+                SET status = 'RUNNING',
+                    locked_by = ?,
+                    locked_until = now() + coalesce(i.lease_ms * interval '1 millisecond', ? * interval '1 second'),
+                    attempt = t.attempt + 1
+                FROM due
+                JOIN input i ON i.type = due.type
+                WHERE t.id = due.id
+                RETURNING %s
+                """.formatted(TASK_COLUMNS_T),
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("text", types));
+                    ps.setArray(2, ps.getConnection().createArrayOf("int4", free));
+                    ps.setArray(3, ps.getConnection().createArrayOf("int4", clusterMax));
+                    ps.setArray(4, ps.getConnection().createArrayOf("float8", clusterRate));
+                    ps.setArray(5, ps.getConnection().createArrayOf("int8", leaseMs));
+                    ps.setInt(6, batchSize);
+                    ps.setInt(7, batchSize);
+                    ps.setString(8, workerId);
+                    ps.setInt(9, lockSeconds);
+                },
+                taskRowMapper()
+        );
+    }
+
+    /**
+     * Claims specific tasks by id for one worker.
+     * <p>
+     * The in-memory timer calls this when the run time of prefetched tasks is
+     * reached. Only tasks that are still PENDING and due are claimed, with the
+     * same SKIP LOCKED rule as claimDueTasks. toleranceMs allows a claim that
+     * fires slightly before the database clock reaches run_at.
+     * Only tasks of the given types are claimed, each with the lease of its type
+     * from leaseMsByType. The worker passes the types without per-type limits,
+     * tasks of limited types are left for claimDueTasks.
+     * The ids, types and leases are bound as array parameters, so the SQL text
+     * stays the same for any number of tasks.
+     */
+    public List<Task> claimTasksByIds(
+            String workerId,
+            List<UUID> taskIds,
+            Map<String, Long> leaseMsByType,
+            long toleranceMs) {
+        String[] types = leaseMsByType.keySet().toArray(new String[0]);
+        Long[] leaseMs = new Long[types.length];
+        for (int i = 0; i < types.length; i++) {
+            leaseMs[i] = leaseMsByType.get(types[i]);
+        }
+        return jdbc.query("""
+                WITH leases AS (
+                    SELECT *
+                    FROM unnest(?::text[], ?::int8[]) AS ty(type, lease_ms)
+                ),
+                due AS (
+                    SELECT t.id, l.lease_ms
+                    FROM tasks t
+                    JOIN leases l ON l.type = t.type
+                    WHERE t.id = ANY(?)
+                    AND t.status = 'PENDING'
+                    AND t.run_at <= now() + (? * interval '1 millisecond')
+                    FOR UPDATE OF t SKIP LOCKED
+                )
+                UPDATE tasks t
+                SET status = 'RUNNING',
+                    locked_by = ?,
+                    locked_until = now() + due.lease_ms * interval '1 millisecond',
+                    attempt = t.attempt + 1
+                FROM due
+                WHERE t.id = due.id
+                RETURNING %s
+                """.formatted(TASK_COLUMNS_T),
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("text", types));
+                    ps.setArray(2, ps.getConnection().createArrayOf("int8", leaseMs));
+                    ps.setArray(3, ps.getConnection().createArrayOf("uuid", taskIds.toArray()));
+                    ps.setLong(4, toleranceMs);
+                    ps.setString(5, workerId);
+                },
+                taskRowMapper()
+        );
+    }
+
+    /**
+     * Lists PENDING tasks that become due within the next window.
+     * <p>
+     * Only id and run_at are read, so the query stays narrow and can be served
+     * from the partial index idx_tasks_pending_run_at. Tasks that are already
+     * due are not included, the regular claim finds them.
+     */
+    public List<UpcomingTask> findUpcomingTasks(long windowMs, int limit) {
+        return jdbc.query("""
+                SELECT id, run_at
                 FROM tasks
                 WHERE status = 'PENDING'
-                AND run_at <= now()
+                AND run_at > now()
+                AND run_at <= now() + (? * interval '1 millisecond')
                 ORDER BY run_at
-                FOR UPDATE SKIP LOCKED
                 LIMIT ?
                 """,
-                (rs, rowNum) -> UUID.fromString(rs.getString("id")),
-                batchSize
+                (rs, rowNum) -> new UpcomingTask(
+                        rs.getObject(1, UUID.class),
+                        rs.getObject(2, OffsetDateTime.class)
+                ),
+                windowMs,
+                limit
         );
+    }
 
-        if(ids.isEmpty()) {
-            return List.of();
+    /**
+     * Writes the results of many finished task executions in one transaction.
+     * <p>
+     * Task rows are updated with one statement that joins the results as arrays
+     * through unnest, so the SQL text is the same for any number of results.
+     * Successful tasks become DONE, failed tasks either go back to PENDING with
+     * their retry delay or become FAILED. In all cases the lock fields are cleared.
+     * <p>
+     * Each result is fenced by its lease: the row must still be RUNNING, locked
+     * by the same worker, and on the same attempt. A worker whose lease expired
+     * and whose task was requeued or claimed again (which increments attempt)
+     * therefore cannot overwrite the newer state. Attempt rows are inserted with
+     * one JDBC batch, only for results that passed the fence.
+     * <p>
+     * Dependent tasks move in the same transaction: children of DONE tasks are
+     * released (see releaseChildren()), BLOCKED descendants of FAILED tasks are
+     * canceled. A workflow therefore advances as its tasks finish, nothing
+     * polls for ready tasks.
+     *
+     * @return number of results that were applied
+     */
+    @Transactional
+    public int completeAll(List<TaskCompletion> completions) {
+        int size = completions.size();
+        UUID[] ids = new UUID[size];
+        String[] workerIds = new String[size];
+        Integer[] attempts = new Integer[size];
+        String[] statuses = new String[size];
+        String[] errors = new String[size];
+        Long[] retryDelays = new Long[size];
+        for (int i = 0; i < size; i++) {
+            TaskCompletion c = completions.get(i);
+            ids[i] = c.taskId();
+            workerIds[i] = c.workerId();
+            attempts[i] = c.attempt();
+            statuses[i] = c.status().name();
+            errors[i] = c.error();
+            retryDelays[i] = c.retryDelayMs();
         }
 
-        String inSql =String.join(",", ids.stream().map(x->"?").toList());
-
-        ArrayList<Object> params = new ArrayList<>();
-        params.add(workerId);
-        params.add(lockSeconds);
-        params.addAll(ids);
-
-        String updateSql = """
-                UPDATE tasks
-                SET status = 'RUNNING',
-                    locked_by = ?,
-                    locked_until = now() + (? * interval '1 second'),
-                    attempt = attempt + 1
-                WHERE id IN (%s)
-                """.formatted(inSql);
-        jdbc.update(updateSql, params.toArray());
+        // Task id -> attempt of every applied result
+        Map<UUID, Integer> applied = new HashMap<>();
+        jdbc.query("""
+                UPDATE tasks t
+                SET status = r.status,
+                    run_at = CASE
+                        WHEN r.status = 'PENDING' THEN now() + (r.retry_delay_ms * interval '1 millisecond')
+                        ELSE t.run_at
+                    END,
+                    locked_by = NULL,
+                    locked_until = NULL,
+                    error = r.error
+                FROM unnest(?::uuid[], ?::text[], ?::int[], ?::text[], ?::text[], ?::bigint[])
+                    AS r(id, worker_id, attempt, status, error, retry_delay_ms)
+                WHERE t.id = r.id
+                  AND t.status = 'RUNNING'
+                  AND t.locked_by = r.worker_id
+                  AND t.attempt = r.attempt
+                RETURNING t.id, t.attempt
+                """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids));
+                    ps.setArray(2, ps.getConnection().createArrayOf("text", workerIds));
+                    ps.setArray(3, ps.getConnection().createArrayOf("int4", attempts));
+                    ps.setArray(4, ps.getConnection().createArrayOf("text", statuses));
+                    ps.setArray(5, ps.getConnection().createArrayOf("text", errors));
+                    ps.setArray(6, ps.getConnection().createArrayOf("int8", retryDelays));
+                },
+                rs -> {
+                    applied.put(rs.getObject("id", UUID.class), rs.getInt("attempt"));
+                }
+        );
 
-        String selectSql = """
-                SELECT * FROM tasks
-                WHERE id IN (%s)
-                """.formatted(inSql);
+        List<TaskCompletion> accepted = completions.stream()
+                .filter(c -> Integer.valueOf(c.attempt()).equals(applied.get(c.taskId())))
+                .toList();
 
-        return jdbc.query(selectSql, taskRowMapper(), ids.toArray());
+        if (!accepted.isEmpty()) {
+            jdbc.batchUpdate("""
+                    INSERT INTO task_attempts(task_id, attempt, started_at, finished_at, status, error)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                    """,
+                    accepted,
+                    accepted.size(),
+                    (ps, c) -> {
+                        ps.setObject(1, c.taskId());
+                        ps.setInt(2, c.attempt());
+                        ps.setObject(3, c.startedAt());
+                        ps.setObject(4, c.finishedAt());
+                        ps.setString(5, c.status() == TaskStatus.DONE ? "SUCCESS" : "FAILED");
+                        ps.setString(6, c.error());
+                    }
+            );
+        }
 
+        UUID[] doneIds = accepted.stream()
+                .filter(c -> c.status() == TaskStatus.DONE)
+                .map(TaskCompletion::taskId)
+                .toArray(UUID[]::new);
+        if (doneIds.length > 0) {
+            releaseChildren(doneIds);
+        }
+        UUID[] failedIds = accepted.stream()
+                .filter(c -> c.status() == TaskStatus.FAILED)
+                .map(TaskCompletion::taskId)
+                .toArray(UUID[]::new);
+        if (failedIds.length > 0) {
+            cancelBlockedDescendants(failedIds);
+        }
+        return accepted.size();
     }
 
     /**
-     * Records the start of one execution attempt.
+     * Decrements pending_deps of the children of DONE tasks and moves children
+     * that reach 0 to PENDING.
      * <p>
-     * The attempt number is passed from the task row after claiming. This makes
-     * task_attempts show which task attempt was started by the worker.
+     * One statement handles all parents, a child with several finished parents
+     * in the batch is decremented once by their count. Released children are
+     * announced on the task_created channel like inserted tasks, so idle workers
+     * wake up when the transaction commits.
      */
-    public void insertAttemptStart(UUID taskId, int attempt) {
-        jdbc.update("""
-                INSERT INTO task_attempts(task_id, attempt, status)
-                VALUES (?, ?, 'STARTED')
-                """, taskId, attempt);
+    private void releaseChildren(UUID[] parentIds) {
+        jdbc.query("""
+                WITH released AS (
+                    UPDATE tasks c
+                    SET pending_deps = c.pending_deps - d.n,
+                        status = CASE WHEN c.pending_deps = d.n THEN 'PENDING' ELSE c.status END
+                    FROM (
+                        SELECT child_id, count(*) AS n
+                        FROM task_dependencies
+                        WHERE parent_id = ANY(?::uuid[])
+                        GROUP BY child_id
+                    ) d
+                    WHERE c.id = d.child_id
+                      AND c.status = 'BLOCKED'
+                    RETURNING c.status, c.run_at
+                )
+                SELECT pg_notify('task_created', (extract(epoch FROM min(run_at)) * 1000)::BIGINT::TEXT)
+                FROM released
+                WHERE status = 'PENDING'
+                HAVING count(*) > 0
+                """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", parentIds)),
+                rs -> {
+                }
+        );
     }
 
     /**
-     * Marks one execution attempt as finished.
-     * <p>
-     * The status is usually SUCCESS or FAILED. When the attempt failed, error keeps
-     * a short message that can be returned by the run history API.
+     * Cancels all BLOCKED tasks that depend, directly or through other tasks,
+     * on the given tasks, because these will never succeed.
      */
-    public void finishAttempt(UUID taskId, int attempt, String status, String error) {
-        jdbc.update("""
-            UPDATE task_attempts
-            SET finished_at = now(),
-                status = ?,
-                error = ?
-            WHERE task_id = ? AND attempt = ?
-            """, status, error, taskId, attempt);
+    private int cancelBlockedDescendants(UUID[] parentIds) {
+        return jdbc.update("""
+                WITH RECURSIVE descendants(id) AS (
+                    SELECT child_id
+                    FROM task_dependencies
+                    WHERE parent_id = ANY(?::uuid[])
+                    UNION
+                    SELECT d.child_id
+                    FROM task_dependencies d
+                    JOIN descendants p ON d.parent_id = p.id
+                )
+                UPDATE tasks t
+                SET status = 'CANCELED',
+                    error = 'Canceled: a dependency did not succeed'
+                FROM descendants p
+                WHERE t.id = p.id
+                  AND t.status = 'BLOCKED'
+                """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", parentIds))
+        );
     }
 
     /**
-     * Marks a task as completed successfully.
+     * Extends the leases of tasks that this worker is still executing.
      * <p>
-     * The task leaves RUNNING state, its lock fields are cleared,
-     * and the last error is removed because the final result is successful.
+     * One statement renews all given tasks, each with its own lease length.
+     * Only rows that are still RUNNING and locked by this worker are extended,
+     * so a lease that was already lost stays lost.
+     *
+     * @param leaseMsById lease length in milliseconds for each task id
+     * @return ids of the renewed tasks
      */
-    public void markDone(UUID taskId) {
-        jdbc.update("""
-            UPDATE tasks
-            SET status = 'DONE',
-                locked_by = NULL,
-                locked_until = NULL,
-                error = NULL
-            WHERE id = ?
-            """, taskId);
+    public List<UUID> renewLeases(String workerId, Map<UUID, Long> leaseMsById) {
+        UUID[] ids = new UUID[leaseMsById.size()];
+        Long[] leases = new Long[leaseMsById.size()];
+        int i = 0;
+        for (Map.Entry<UUID, Long> e : leaseMsById.entrySet()) {
+            ids[i] = e.getKey();
+            leases[i] = e.getValue();
+            i++;
+        }
+
+        return jdbc.query("""
+                UPDATE tasks t
+                SET locked_until = now() + (r.lease_ms * interval '1 millisecond')
+                FROM unnest(?::uuid[], ?::bigint[]) AS r(id, lease_ms)
+                WHERE t.id = r.id
+                  AND t.status = 'RUNNING'
+                  AND t.locked_by = ?
+                RETURNING t.id
+                """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids));
+                    ps.setArray(2, ps.getConnection().createArrayOf("int8", leases));
+                    ps.setString(3, workerId);
+                },
+                (rs, rowNum) -> rs.getObject("id", UUID.class)
+        );
     }
 
     /**
-     * Handles a failed task execution.
+     * Returns the size of the PENDING queue and the lag of its oldest due task.
      * <p>
-     * When attempts remain, the task is moved back to PENDING and scheduled again
-     * with a small linear backoff. When no attempts remain, the task is marked as
-     * FAILED. In both cases the lock fields are cleared.
+     * Both values come from idx_tasks_pending_run_at, which only holds PENDING
+     * rows. The lag is computed with the database clock, like the claim.
      */
-    public void markFailedOrRetry(UUID taskId, int attempt, int maxAttempts, String error) {
-        if (attempt < maxAttempts) {
-            int backoffSeconds = attempt * 5;
-            jdbc.update("""
-                    UPDATE tasks
-                    SET status = 'PENDING',
-                        run_at = now() + (? * interval '1 second'),
-                        locked_by = NULL,
-                        locked_until = NULL,
-                        error = ?
-                    WHERE id = ?
-                    """, backoffSeconds, error, taskId);
-        } else {
-            jdbc.update("""
-                    UPDATE tasks
-                    SET status = 'FAILED',
-                        locked_by = NULL,
-                        locked_until = NULL,
-                        error = ?
-                    WHERE id = ?
-                    """, error, taskId);
-        }
+    public QueueStats queueStats() {
+        return jdbc.queryForObject("""
+                SELECT count(*) AS pending,
+                       coalesce(greatest(extract(epoch FROM now() - min(run_at)), 0), 0) AS lag_seconds
+                FROM tasks
+                WHERE status = 'PENDING'
+                """,
+                (rs, rowNum) -> new QueueStats(rs.getLong("pending"), rs.getDouble("lag_seconds"))
+        );
     }
 
     /**
@@ -302,7 +1114,34 @@ public class TaskRepository {
     }
 
     /**
-     * Lists all execution attempts for one task.
+     * Returns tasks claimed by this worker back to the pending queue.
+     * <p>
+     * The worker calls this on shutdown for tasks that did not finish in time.
+     * Only rows that are still RUNNING and locked by the same worker are changed,
+     * so a task that was already requeued and claimed by another worker is left alone.
+     * The ids are bound as one uuid[] parameter, so the SQL text stays the same
+     * for any number of tasks.
+     */
+    public int releaseClaimedTasks(String workerId, List<UUID> taskIds) {
+        return jdbc.update("""
+                UPDATE tasks
+                SET status = 'PENDING',
+                    locked_by = NULL,
+                    locked_until = NULL,
+                    error = 'Worker shut down'
+                WHERE id = ANY(?)
+                AND status = 'RUNNING'
+                AND locked_by = ?
+                """,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("uuid", taskIds.toArray()));
+                    ps.setString(2, workerId);
+                }
+        );
+    }
+
+    /**
+     * Lists all execution attempts for one task, including archived ones.
      * <p>
      * Attempts are ordered by attempt number and then by id.
      * This gives a stable history for the API even
@@ -311,7 +1150,7 @@ public class TaskRepository {
     public List<TaskAttemptResponse> listAttempts(UUID taskId) {
         return jdbc.query("""
                 SELECT id, attempt, status, started_at, finished_at, error
-                FROM task_attempts
+                FROM task_attempts_all
                 WHERE task_id = ?
                 ORDER BY attempt ASC, id ASC
                 """,
@@ -327,4 +1166,95 @@ public class TaskRepository {
         );
     }
 
+    /**
+     * Streams all tasks matching the filter to sink, oldest first.
+     * <p>
+     * The query runs in a read-only transaction with a fetch size, so the
+     * PostgreSQL driver reads the result through a server-side cursor
+     * EXPORT_FETCH_SIZE rows at a time instead of loading it whole. Each row is
+     * mapped and passed to sink before the next one is read; memory use does not
+     * depend on the number of exported rows.
+     * <p>
+     * Archived tasks are included through the tasks_all view. The order
+     * (created_at, id) is served by the created_at indexes of both tables.
+     */
+    @Transactional(readOnly = true)
+    public void exportTasks(TaskExportFilter filter, Consumer<Task> sink) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder("WHERE true");
+        appendFilter(filter, "status", "type", "created_at", where, args);
+
+        RowMapper<Task> mapper = taskRowMapper();
+        stream("""
+                SELECT %s FROM tasks_all
+                %s
+                ORDER BY created_at, id
+                """.formatted(TASK_COLUMNS, where), args, rs -> sink.accept(mapper.mapRow(rs, 0)));
+    }
+
+    /**
+     * Streams all attempts matching the filter to sink, in no particular order.
+     * <p>
+     * Works like exportTasks(). Archived attempts are included through the
+     * task_attempts_all view; the type comes from the attempt's task.
+     */
+    @Transactional(readOnly = true)
+    public void exportAttempts(TaskExportFilter filter, Consumer<TaskAttempt> sink) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder("WHERE true");
+        appendFilter(filter, "a.status", "t.type", "a.started_at", where, args);
+
+        stream("""
+                SELECT a.id, a.task_id, t.type, a.attempt, a.status, a.started_at, a.finished_at, a.error
+                FROM task_attempts_all a
+                JOIN tasks_all t ON t.id = a.task_id
+                %s
+                """.formatted(where), args, rs -> sink.accept(new TaskAttempt(
+                        rs.getLong("id"),
+                        rs.getObject("task_id", UUID.class),
+                        rs.getString("type"),
+                        rs.getInt("attempt"),
+                        rs.getString("status"),
+                        rs.getObject("started_at", OffsetDateTime.class),
+                        rs.getObject("finished_at", OffsetDateTime.class),
+                        rs.getString("error")
+                )));
+    }
+
+    private static void appendFilter(
+            TaskExportFilter filter,
+            String statusColumn,
+            String typeColumn,
+            String timeColumn,
+            StringBuilder where,
+            List<Object> args) {
+        if (filter.status() != null) {
+            where.append(" AND ").append(statusColumn).append(" = ?");
+            args.add(filter.status());
+        }
+        if (filter.type() != null) {
+            where.append(" AND ").append(typeColumn).append(" = ?");
+            args.add(filter.type());
+        }
+        if (filter.from() != null) {
+            where.append(" AND ").append(timeColumn).append(" >= ?");
+            args.add(filter.from());
+        }
+        if (filter.to() != null) {
+            where.append(" AND ").append(timeColumn).append(" < ?");
+            args.add(filter.to());
+        }
+    }
+
+    private void stream(String sql, List<Object> args, RowCallbackHandler handler) {
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, handler);
+    }
+
 }
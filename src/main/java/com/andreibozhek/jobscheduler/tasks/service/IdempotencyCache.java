@@ -0,0 +1,45 @@
+package com.andreibozhek.jobscheduler.tasks.service;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of tasks created with an idempotency key on this node.
+ * <p>
+ * A client that retries POST /tasks after a timeout usually hits the same
+ * node within seconds. The retry is answered from this cache with the task of
+ * the first request, without a database round trip. A miss is harmless: the
+ * insert then finds the existing task through the unique index.
+ * <p>
+ * Each task is kept with the fingerprint of its request, so a reused key with
+ * another request is detected here as well as in the database.
+ * <p>
+ * The map is an LRU of at most maxSize entries. Access is synchronized, the
+ * critical sections are a hash lookup or insert.
+ */
+class IdempotencyCache {
+
+    record Entry(Task task, String fingerprint) {
+    }
+
+    private final Map<String, Entry> tasks;
+
+    IdempotencyCache(int maxSize) {
+        this.tasks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized Entry get(String key) {
+        return tasks.get(key);
+    }
+
+    synchronized void put(String key, Task task, String fingerprint) {
+        tasks.put(key, new Entry(task, fingerprint));
+    }
+}
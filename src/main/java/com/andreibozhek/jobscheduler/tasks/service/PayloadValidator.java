@@ -0,0 +1,60 @@
+package com.andreibozhek.jobscheduler.tasks.service;
+
+import com.andreibozhek.jobscheduler.tasks.api.BadRequestApiException;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskPayloadBinder;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks the payload of a task or schedule request and serializes it.
+ * <p>
+ * Tasks and schedules share these checks because every schedule fire becomes
+ * a task with the schedule payload: a payload that would be rejected by
+ * POST /tasks must not enter the queue through a schedule either.
+ */
+final class PayloadValidator {
+
+    private final ObjectMapper objectMapper;
+    private final TaskPayloadBinder payloadBinder;
+    private final TaskPayloadStore payloadStore;
+
+    PayloadValidator(ObjectMapper objectMapper, TaskPayloadBinder payloadBinder, TaskPayloadStore payloadStore) {
+        this.objectMapper = objectMapper;
+        this.payloadBinder = payloadBinder;
+        this.payloadStore = payloadStore;
+    }
+
+    /**
+     * Returns the payload as JSON text.
+     * <p>
+     * The payload must not use the reserved field of offloaded payloads, must
+     * match the payload type of a TypedTaskHandler and must not be larger than
+     * tasks.payload.maxBytes.
+     *
+     * @throws BadRequestApiException when one of the checks fails
+     */
+    String toJson(String normalizedType, JsonNode payload) {
+        if (payload.has(TaskPayloadStore.REFERENCE_FIELD)) {
+            throw new BadRequestApiException("payload must not contain the field " + TaskPayloadStore.REFERENCE_FIELD);
+        }
+
+        try {
+            payloadBinder.validate(normalizedType, payload);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestApiException(ex.getMessage());
+        }
+
+        String payloadJson;
+        try {
+            payloadJson = objectMapper.writeValueAsString(payload);
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("Invalid payload JSON");
+        }
+
+        if (payloadStore.tooLarge(payloadJson)) {
+            throw new BadRequestApiException("payload too long");
+        }
+        return payloadJson;
+    }
+}
@@ -0,0 +1,135 @@
+package com.andreibozhek.jobscheduler.tasks.service;
+
+import com.andreibozhek.jobscheduler.tasks.api.BadRequestApiException;
+import com.andreibozhek.jobscheduler.tasks.api.CreateScheduleRequest;
+import com.andreibozhek.jobscheduler.tasks.api.ScheduleNotFoundException;
+import com.andreibozhek.jobscheduler.tasks.api.UnsupportedTaskTypeException;
+import com.andreibozhek.jobscheduler.tasks.domain.MisfirePolicy;
+import com.andreibozhek.jobscheduler.tasks.domain.ScheduleTrigger;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskSchedule;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskHandler;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskPayloadBinder;
+import com.andreibozhek.jobscheduler.tasks.repo.ScheduleRepository;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+public class ScheduleService {
+
+    private final ScheduleRepository repo;
+    private final Set<String> supportedTypes;
+    private final PayloadValidator payloadValidator;
+
+    public ScheduleService(
+            ScheduleRepository repo,
+            ObjectMapper objectMapper,
+            List<TaskHandler> handlers,
+            TaskPayloadBinder payloadBinder,
+            TaskPayloadStore payloadStore) {
+        this.repo = repo;
+        this.payloadValidator = new PayloadValidator(objectMapper, payloadBinder, payloadStore);
+        this.supportedTypes = handlers.stream()
+                .map(TaskHandler::type)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Creates a recurring task schedule.
+     * <p>
+     * Exactly one of cron and fixedRateMs must be set. A cron schedule fires at
+     * the first cron time at or after startAt, a fixed rate schedule fires at
+     * startAt and then every fixedRateMs. startAt defaults to now, timeZone to
+     * UTC and misfirePolicy to FIRE_ONCE. The tasks themselves are created
+     * later by ScheduleMaterializer.
+     * <p>
+     * The payload gets the same checks as the payload of POST /tasks,
+     * including the reserved field and tasks.payload.maxBytes.
+     */
+    public TaskSchedule create(CreateScheduleRequest req) {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        String type = req.type().toLowerCase();
+        if (!supportedTypes.contains(type)) {
+            throw new UnsupportedTaskTypeException(req.type(), supportedTypes);
+        }
+
+        if ((req.cron() == null) == (req.fixedRateMs() == null)) {
+            throw new BadRequestApiException("exactly one of cron and fixedRateMs must be set");
+        }
+
+        String timeZone = req.timeZone() == null ? "UTC" : req.timeZone();
+        ZoneId zone;
+        try {
+            zone = ZoneId.of(timeZone);
+        } catch (DateTimeException ex) {
+            throw new BadRequestApiException("invalid timeZone: " + timeZone);
+        }
+
+        OffsetDateTime startAt = req.startAt() == null ? now : req.startAt();
+        if (startAt.isBefore(now.minusSeconds(10))) {
+            throw new BadRequestApiException("startAt must be in future");
+        }
+
+        OffsetDateTime firstFireAt;
+        if (req.cron() != null) {
+            CronExpression cron;
+            try {
+                cron = CronExpression.parse(req.cron());
+            } catch (IllegalArgumentException ex) {
+                throw new BadRequestApiException("invalid cron: " + ex.getMessage());
+            }
+            firstFireAt = new ScheduleTrigger.Cron(cron, zone).next(startAt.minusNanos(1));
+            if (firstFireAt == null) {
+                throw new BadRequestApiException("cron never fires: " + req.cron());
+            }
+        } else {
+            firstFireAt = startAt;
+        }
+
+        String payloadJson = payloadValidator.toJson(type, req.payload());
+
+        TaskSchedule s = new TaskSchedule(
+                UUID.randomUUID(),
+                type,
+                payloadJson,
+                req.cron(),
+                req.fixedRateMs(),
+                timeZone,
+                req.maxAttempts() == null ? 3 : req.maxAttempts(),
+                req.priority() == null ? 0 : req.priority(),
+                req.misfirePolicy() == null ? MisfirePolicy.FIRE_ONCE : req.misfirePolicy(),
+                firstFireAt,
+                now
+        );
+        repo.insert(s);
+        return s;
+    }
+
+    public Optional<TaskSchedule> get(UUID id) {
+        return repo.findById(id);
+    }
+
+    public List<TaskSchedule> list(int limit, int offset) {
+        return repo.list(limit, offset);
+    }
+
+    /**
+     * Deletes a schedule, or throws ScheduleNotFoundException when it does not exist.
+     */
+    public void delete(UUID id) {
+        if (!repo.delete(id)) {
+            throw new ScheduleNotFoundException(id);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.andreibozhek.jobscheduler.tasks.service;
+
+import com.andreibozhek.jobscheduler.tasks.api.ExportFormat;
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskAttempt;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+
+/**
+ * Writes exported tasks or attempts row by row to an output stream.
+ * <p>
+ * Nothing is collected: every row is written to a small buffer which is
+ * passed on to the stream when it is full. Payloads are copied as stored,
+ * NDJSON embeds them as raw JSON and CSV as a quoted string, so they are never
+ * parsed.
+ * <p>
+ * Write errors, for example a client that closed the connection, are thrown
+ * as UncheckedIOException so they stop the database cursor that feeds the
+ * writer.
+ */
+final class TaskExportWriter implements Closeable {
+
+    private static final String[] TASK_COLUMNS = {
+            "id", "type", "status", "runAt", "attempt", "maxAttempts",
+            "priority", "error", "createdAt", "updatedAt", "payload"
+    };
+    private static final String[] ATTEMPT_COLUMNS = {
+            "id", "taskId", "type", "attempt", "status", "startedAt", "finishedAt", "error"
+    };
+
+    private final ExportFormat format;
+    private final JsonGenerator json;
+    private final Writer csv;
+
+    private TaskExportWriter(ExportFormat format, OutputStream out, ObjectMapper objectMapper, String[] columns)
+            throws IOException {
+        this.format = format;
+        if (format == ExportFormat.NDJSON) {
+            this.json = objectMapper.getFactory().createGenerator(out);
+            this.json.setRootValueSeparator(null);
+            this.csv = null;
+        } else {
+            this.json = null;
+            this.csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+            this.csv.write(String.join(",", columns));
+            this.csv.write('\n');
+        }
+    }
+
+    static TaskExportWriter forTasks(ExportFormat format, OutputStream out, ObjectMapper objectMapper)
+            throws IOException {
+        return new TaskExportWriter(format, out, objectMapper, TASK_COLUMNS);
+    }
+
+    static TaskExportWriter forAttempts(ExportFormat format, OutputStream out, ObjectMapper objectMapper)
+            throws IOException {
+        return new TaskExportWriter(format, out, objectMapper, ATTEMPT_COLUMNS);
+    }
+
+    void write(Task t) {
+        try {
+            if (format == ExportFormat.NDJSON) {
+                json.writeStartObject();
+                json.writeStringField("id", t.id().toString());
+                json.writeStringField("type", t.type());
+                json.writeStringField("status", t.status().name());
+                json.writeStringField("runAt", text(t.runAt()));
+                json.writeNumberField("attempt", t.attempt());
+                json.writeNumberField("maxAttempts", t.maxAttempts());
+                json.writeNumberField("priority", t.priority());
+                json.writeStringField("error", t.error());
+                json.writeStringField("createdAt", text(t.createdAt()));
+                json.writeStringField("updatedAt", text(t.updatedAt()));
+                json.writeFieldName("payload");
+                json.writeRawValue(t.payloadJson());
+                json.writeEndObject();
+                json.writeRaw('\n');
+            } else {
+                cell(t.id().toString(), false);
+                cell(t.type(), false);
+                cell(t.status().name(), false);
+                cell(text(t.runAt()), false);
+                cell(Integer.toString(t.attempt()), false);
+                cell(Integer.toString(t.maxAttempts()), false);
+                cell(Integer.toString(t.priority()), false);
+                cell(t.error(), false);
+                cell(text(t.createdAt()), false);
+                cell(text(t.updatedAt()), false);
+                cell(t.payloadJson(), true);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    void write(TaskAttempt a) {
+        try {
+            if (format == ExportFormat.NDJSON) {
+                json.writeStartObject();
+                json.writeNumberField("id", a.id());
+                json.writeStringField("taskId", a.taskId().toString());
+                json.writeStringField("type", a.type());
+                json.writeNumberField("attempt", a.attempt());
+                json.writeStringField("status", a.status());
+                json.writeStringField("startedAt", text(a.startedAt()));
+                json.writeStringField("finishedAt", text(a.finishedAt()));
+                json.writeStringField("error", a.error());
+                json.writeEndObject();
+                json.writeRaw('\n');
+            } else {
+                cell(Long.toString(a.id()), false);
+                cell(a.taskId().toString(), false);
+                cell(a.type(), false);
+                cell(Integer.toString(a.attempt()), false);
+                cell(a.status(), false);
+                cell(text(a.startedAt()), false);
+                cell(text(a.finishedAt()), false);
+                cell(a.error(), true);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Flushes the buffered rows. The output stream itself is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (json != null) {
+            json.flush();
+        } else {
+            csv.flush();
+        }
+    }
+
+    /**
+     * Writes one CSV cell. Cells with a separator, quote or line break are
+     * quoted, quotes inside are doubled (RFC 4180). null is an empty cell.
+     */
+    private void cell(String value, boolean last) throws IOException {
+        if (value != null) {
+            if (needsQuotes(value)) {
+                csv.write('"');
+                csv.write(value.replace("\"", "\"\""));
+                csv.write('"');
+            } else {
+                csv.write(value);
+            }
+        }
+        csv.write(last ? '\n' : ',');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String text(OffsetDateTime time) {
+        return time == null ? null : time.toString();
+    }
+}
@@ -2,74 +2,377 @@ package com.andreibozhek.jobscheduler.tasks.service;
 
 import com.andreibozhek.jobscheduler.tasks.api.*;
 import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskCursor;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskExportFilter;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskPage;
 import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
 import com.andreibozhek.jobscheduler.tasks.handler.TaskHandler;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskPayloadBinder;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
 import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 @Service
 public class TaskService {
+    private static final int BATCH_CHUNK_SIZE = 1000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final int DEFAULT_PRIORITY = 0;
+    private static final Set<String> ATTEMPT_STATUSES = Set.of("SUCCESS", "FAILED");
+
     private final TaskRepository repo;
     private final ObjectMapper objectMapper;
+    private final ObjectReader batchItemReader;
+    private final ObjectWriter canonicalWriter;
+    private final Validator validator;
+    private final PayloadValidator payloadValidator;
+    private final TaskPayloadStore payloadStore;
     private final Set<String> supportedTypes;
+    private final int maxBatchItems;
+    private final IdempotencyCache idempotencyCache;
 
     public TaskService(
             TaskRepository repo,
             ObjectMapper objectMapper,
-            List<TaskHandler> handlers) {
+            Validator validator,
+            List<TaskHandler> handlers,
+            TaskPayloadBinder payloadBinder,
+            TaskPayloadStore payloadStore,
+            @Value("${tasks.batch.maxItems:10000}") int maxBatchItems,
+            @Value("${tasks.idempotency.cacheSize:10000}") int idempotencyCacheSize) {
         this.repo = repo;
         this.objectMapper = objectMapper;
+        this.batchItemReader = objectMapper.readerFor(JsonNode.class);
+        this.canonicalWriter = objectMapper.copy()
+                .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .writer();
+        this.validator = validator;
+        this.payloadValidator = new PayloadValidator(objectMapper, payloadBinder, payloadStore);
+        this.payloadStore = payloadStore;
         this.supportedTypes = handlers.stream()
                 .map(TaskHandler::type)
                 .collect(Collectors.toSet());
+        this.maxBatchItems = maxBatchItems;
+        this.idempotencyCache = new IdempotencyCache(idempotencyCacheSize);
     }
 
     /**
      * Creates a new task and stores it as PENDING.
      * <p>
      * The method normalizes the task type, validates that the type is supported,
+     * checks the payload against the payload type of a TypedTaskHandler,
      * serializes the payload to JSON, and applies the default maxAttempts value
      * when the client does not provide it.
+     * <p>
+     * A task with dependsOn is stored as BLOCKED until all those tasks are DONE.
+     * <p>
+     * With an idempotencyKey a retried request returns the task of the first
+     * request instead of creating another one: from the local cache when this
+     * node created it recently, otherwise through the unique key index. The key
+     * is bound to a fingerprint of the request; reusing it for a request with
+     * another type, payload, runAt, maxAttempts, priority or dependsOn fails
+     * with TaskConflictException.
+     * <p>
+     * A large payload is stored in task_payloads first, the task row only
+     * references it, see TaskPayloadStore. The returned task always has the
+     * full payload.
      */
     public Task create(CreateTaskRequest req) {
-        int maxAttempts;
-        if (req.maxAttempts() == null) {
-            maxAttempts = 3;
-        } else {
-            maxAttempts = req.maxAttempts();
+        String fingerprint = fingerprint(req);
+        Task cached = cachedTask(req, fingerprint);
+        if (cached != null) {
+            return payloadStore.resolve(cached);
         }
+        Task t = buildTask(req, normalizeType(req.type()), OffsetDateTime.now());
+        Task stored = payloadStore.offload(t);
+        if (needsSingleInsert(req)) {
+            Task inserted = insertSingle(req, stored, fingerprint);
+            return inserted == stored ? t : payloadStore.resolve(inserted);
+        }
+        repo.insert(stored);
+        return t;
+    }
 
-        String normalizedType = req.type().toLowerCase();
-        if (!supportedTypes.contains(normalizedType)) {
-            throw new UnsupportedTaskTypeException(req.type(), supportedTypes);
+    /**
+     * Creates many tasks from a JSON array or an NDJSON stream.
+     * <p>
+     * Items are read one by one, so an NDJSON body is never held in memory as a
+     * whole. Each item gets the same checks as create(), but the supported type
+     * check runs once per distinct type. Valid items are stored in chunks with
+     * one JDBC batch per chunk.
+     * <p>
+     * Items with dependsOn or idempotencyKey are stored one by one, each in its
+     * own transaction, because their parents or their key have to be checked.
+     * <p>
+     * An item is reported as created only after it is stored. An invalid item
+     * does not stop the batch, it is reported with its index and error. When a
+     * chunk or a single insert fails in the database, its items are reported as
+     * rejected and the batch goes on, so the response always tells which items
+     * are stored. Malformed JSON ends the batch at that item, because the rest
+     * of the stream cannot be read reliably. Items before it are already stored.
+     * Results are ordered by index.
+     */
+    public BatchCreateResponse createBatch(InputStream body) {
+        List<BatchItemResult> results = new ArrayList<>();
+        List<Task> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Integer> chunkIndexes = new ArrayList<>(BATCH_CHUNK_SIZE);
+        Map<String, String> normalizedTypes = new HashMap<>();
+        OffsetDateTime now = OffsetDateTime.now();
+        int accepted = 0;
+        int index = 0;
+
+        try (MappingIterator<JsonNode> items = batchItemReader.readValues(body)) {
+            while (items.hasNextValue()) {
+                JsonNode item = items.nextValue();
+                if (index >= maxBatchItems) {
+                    results.add(BatchItemResult.rejected(index, "batch is limited to " + maxBatchItems + " items"));
+                    break;
+                }
+
+                try {
+                    CreateTaskRequest req = toRequest(item);
+                    String fingerprint = fingerprint(req);
+                    Task t = cachedTask(req, fingerprint);
+                    if (t == null) {
+                        String type = normalizedTypes.computeIfAbsent(req.type(), this::normalizeType);
+                        Task built = payloadStore.offload(buildTask(req, type, now));
+
+                        if (needsSingleInsert(req)) {
+                            t = insertSingle(req, built, fingerprint);
+                        } else {
+                            // Reported by insertChunk() once the chunk is stored
+                            chunk.add(built);
+                            chunkIndexes.add(index);
+                        }
+                    }
+                    if (t != null) {
+                        results.add(BatchItemResult.created(index, t.id()));
+                        accepted++;
+                    }
+                } catch (BadRequestApiException | UnsupportedTaskTypeException | TaskConflictException ex) {
+                    results.add(BatchItemResult.rejected(index, ex.getMessage()));
+                } catch (DataAccessException ex) {
+                    results.add(BatchItemResult.rejected(index, storeError(ex)));
+                }
+
+                if (chunk.size() == BATCH_CHUNK_SIZE) {
+                    accepted += insertChunk(chunk, chunkIndexes, results);
+                }
+                index++;
+            }
+        } catch (IOException ex) {
+            results.add(BatchItemResult.rejected(index, "Invalid JSON, batch stopped at this item"));
+        }
+
+        accepted += insertChunk(chunk, chunkIndexes, results);
+
+        results.sort(Comparator.comparingInt(BatchItemResult::index));
+        return new BatchCreateResponse(accepted, results.size() - accepted, results);
+    }
+
+    /**
+     * Stores one chunk of batch items in one transaction and adds their
+     * results: created when the chunk is committed, rejected when it failed.
+     * Clears the chunk.
+     *
+     * @return number of created items
+     */
+    private int insertChunk(List<Task> chunk, List<Integer> indexes, List<BatchItemResult> results) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        int created = 0;
+        try {
+            repo.insertAll(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(BatchItemResult.created(indexes.get(i), chunk.get(i).id()));
+            }
+            created = chunk.size();
+        } catch (DataAccessException ex) {
+            String error = storeError(ex);
+            for (Integer index : indexes) {
+                results.add(BatchItemResult.rejected(index, error));
+            }
         }
+        chunk.clear();
+        indexes.clear();
+        return created;
+    }
+
+    private static String storeError(DataAccessException ex) {
+        return "task could not be stored: " + ex.getMostSpecificCause().getMessage();
+    }
 
-        String payloadJson;
+    /**
+     * Converts one batch item and applies the same bean validation rules as
+     * the @Valid request body of POST /tasks.
+     */
+    private CreateTaskRequest toRequest(JsonNode item) {
+        CreateTaskRequest req;
         try {
-            payloadJson = objectMapper.writeValueAsString(req.payload());
-        } catch (Exception ex) {
-            throw new IllegalArgumentException("Invalid payload JSON");
+            req = objectMapper.treeToValue(item, CreateTaskRequest.class);
+        } catch (JsonProcessingException ex) {
+            throw new BadRequestApiException("Invalid task: " + ex.getOriginalMessage());
         }
 
-        if (payloadJson.length() > 5000) {
-            throw new BadRequestApiException("payload too long");
+        Set<ConstraintViolation<CreateTaskRequest>> violations = validator.validate(req);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            throw new BadRequestApiException(message);
         }
+        return req;
+    }
+
+    private static boolean hasDependencies(CreateTaskRequest req) {
+        return req.dependsOn() != null && !req.dependsOn().isEmpty();
+    }
+
+    private static boolean needsSingleInsert(CreateTaskRequest req) {
+        return req.idempotencyKey() != null || hasDependencies(req);
+    }
+
+    /**
+     * Returns the task this node created earlier for the idempotency key of
+     * the request, or null.
+     *
+     * @throws TaskConflictException when the key was used for a request with another fingerprint
+     */
+    private Task cachedTask(CreateTaskRequest req, String fingerprint) {
+        if (req.idempotencyKey() == null) {
+            return null;
+        }
+        IdempotencyCache.Entry entry = idempotencyCache.get(req.idempotencyKey());
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.fingerprint().equals(fingerprint)) {
+            throw new TaskConflictException(
+                    "idempotency key " + req.idempotencyKey() + " was already used for a different request");
+        }
+        return entry.task();
+    }
+
+    /**
+     * Returns the fingerprint of a request with an idempotency key, null for
+     * a request without one.
+     * <p>
+     * It is the SHA-256 of the fields that define the task, after defaults are
+     * applied, so an omitted maxAttempts matches an explicit 3. The payload is
+     * hashed with object fields sorted by name, so a retry that serializes the
+     * same payload in another field order still matches.
+     */
+    private String fingerprint(CreateTaskRequest req) {
+        if (req.idempotencyKey() == null) {
+            return null;
+        }
+        String payload;
+        try {
+            payload = canonicalWriter.writeValueAsString(objectMapper.treeToValue(req.payload(), Object.class));
+        } catch (JsonProcessingException ex) {
+            throw new BadRequestApiException("Invalid payload JSON");
+        }
+        List<UUID> dependsOn = req.dependsOn() == null
+                ? List.of()
+                : req.dependsOn().stream().distinct().sorted().toList();
+        String fields = String.join("\n",
+                req.type().toLowerCase(),
+                String.valueOf(req.maxAttempts() == null ? DEFAULT_MAX_ATTEMPTS : req.maxAttempts()),
+                String.valueOf(req.priority() == null ? DEFAULT_PRIORITY : req.priority()),
+                req.runAt().toInstant().toString(),
+                dependsOn.toString(),
+                payload);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(fields.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Stores a task with dependencies or an idempotency key in its own
+     * transaction and returns it as stored, which is the earlier task when
+     * the key was used before.
+     */
+    private Task insertSingle(CreateTaskRequest req, Task t, String fingerprint) {
+        String key = req.idempotencyKey();
+        Task stored;
+        try {
+            stored = hasDependencies(req)
+                    ? repo.insertWithDependencies(t, req.dependsOn(), key, fingerprint)
+                    : repo.insertIfAbsent(t, key, fingerprint);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestApiException(ex.getMessage());
+        }
+        if (key != null) {
+            idempotencyCache.put(key, stored, fingerprint);
+        }
+        return stored;
+    }
+
+    /**
+     * Normalizes the task type and checks that a handler exists for it.
+     */
+    private String normalizeType(String type) {
+        String normalizedType = type.toLowerCase();
+        if (!supportedTypes.contains(normalizedType)) {
+            throw new UnsupportedTaskTypeException(type, supportedTypes);
+        }
+        return normalizedType;
+    }
+
+    /**
+     * Builds a PENDING task from a request whose type is already normalized.
+     */
+    private Task buildTask(CreateTaskRequest req, String normalizedType, OffsetDateTime now) {
+        int maxAttempts;
+        if (req.maxAttempts() == null) {
+            maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        } else {
+            maxAttempts = req.maxAttempts();
+        }
+
+        int priority = req.priority() == null ? DEFAULT_PRIORITY : req.priority();
+
+        String payloadJson = payloadValidator.toJson(normalizedType, req.payload());
 
-        OffsetDateTime now = OffsetDateTime.now();
         if (req.runAt().isBefore(now.minusSeconds(10))) {
             throw new BadRequestApiException("runAt must be in future");
         }
 
-        Task t = new Task(
+        return new Task(
                 UUID.randomUUID(),
                 normalizedType,
                 payloadJson,
@@ -80,11 +383,10 @@ public class TaskService {
                 null,
                 null,
                 null,
-                OffsetDateTime.now(),
-                OffsetDateTime.now()
+                now,
+                now,
+                priority
         );
-        repo.insert(t);
-        return t;
     }
 
     /**
@@ -94,17 +396,50 @@ public class TaskService {
      * The controller decides how to convert that case into an HTTP 404 response.
      */
     public Optional<Task> get (UUID id) {
-        return repo.findByID(id);
+        return repo.findByID(id).map(payloadStore::resolve);
     }
 
     /**
      * Lists tasks with optional status filtering.
      * <p>
      * When status is null, the repository returns tasks from all statuses.
-     * Pagination is controlled by limit and offset.
+     * Pagination is controlled by limit and offset, or by an encoded cursor
+     * returned with the previous page. Offset must be 0 when a cursor is given.
+     * <p>
+     * One extra row is loaded to find out whether a next page exists.
+     * Every page that is followed by another page has a next cursor, so a
+     * client can switch from offset paging to cursor paging at any page.
      */
-    public List<Task> list(TaskStatus status, int limit, int offset) {
-        return repo.list(status, limit, offset);
+    public TaskPage list(TaskStatus status, int limit, int offset, String cursor) {
+        return list(status, limit, offset, cursor, true);
+    }
+
+    /**
+     * Lists tasks like list(status, limit, offset, cursor).
+     * <p>
+     * Without payload the payload column is not read at all and the tasks have
+     * a null payloadJson.
+     * <p>
+     * Offloaded payloads are never loaded for a page: such a task keeps its
+     * reference {"$payloadRef": "<task id>"}, and get(id) returns the full
+     * payload. A page of large payloads would otherwise be inflated on the heap
+     * all at once.
+     */
+    public TaskPage list(TaskStatus status, int limit, int offset, String cursor, boolean withPayload) {
+        if (cursor == null || cursor.isEmpty()) {
+            return TaskPage.of(repo.list(status, limit + 1, offset, withPayload), limit);
+        }
+        if (offset != 0) {
+            throw new BadRequestApiException("offset and cursor cannot be used together");
+        }
+
+        TaskCursor after;
+        try {
+            after = TaskCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestApiException("invalid cursor");
+        }
+        return TaskPage.of(repo.listAfter(status, after, limit + 1, withPayload), limit);
     }
 
     /**
@@ -114,21 +449,72 @@ public class TaskService {
      * TaskNotFoundException so the API can return a 404 response.
      */
     public List<TaskAttemptResponse> listRuns(UUID taskId) {
-        repo.findByID(taskId).orElseThrow(() -> new TaskNotFoundException(taskId));
+        repo.findStatus(taskId).orElseThrow(() -> new TaskNotFoundException(taskId));
         return repo.listAttempts(taskId);
     }
 
+    /**
+     * Builds and checks the filter of a task export.
+     * <p>
+     * The type is lower-cased like on create but not checked against the
+     * handlers, tasks of removed types can still be exported.
+     */
+    public TaskExportFilter taskExportFilter(TaskStatus status, String type, OffsetDateTime from, OffsetDateTime to) {
+        return exportFilter(status == null ? null : status.name(), type, from, to);
+    }
+
+    /**
+     * Builds and checks the filter of an attempt export. status is SUCCESS or FAILED.
+     */
+    public TaskExportFilter attemptExportFilter(String status, String type, OffsetDateTime from, OffsetDateTime to) {
+        if (status != null && !ATTEMPT_STATUSES.contains(status)) {
+            throw new BadRequestApiException("status must be SUCCESS or FAILED");
+        }
+        return exportFilter(status, type, from, to);
+    }
+
+    private TaskExportFilter exportFilter(String status, String type, OffsetDateTime from, OffsetDateTime to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new BadRequestApiException("from must be before to");
+        }
+        String normalizedType = type == null || type.isBlank() ? null : type.toLowerCase();
+        return new TaskExportFilter(status, normalizedType, from, to);
+    }
+
+    /**
+     * Writes all tasks matching the filter to out, with constant memory.
+     * <p>
+     * Rows are read through a database cursor and written one by one, see
+     * TaskRepository.exportTasks(). Nothing is buffered beyond one fetch.
+     * Offloaded payloads are loaded one by one when their row is written.
+     */
+    public void exportTasks(TaskExportFilter filter, ExportFormat format, OutputStream out) throws IOException {
+        try (TaskExportWriter writer = TaskExportWriter.forTasks(format, out, objectMapper)) {
+            repo.exportTasks(filter, t -> writer.write(payloadStore.resolve(t)));
+        }
+    }
+
+    /**
+     * Writes all attempts matching the filter to out, with constant memory.
+     */
+    public void exportAttempts(TaskExportFilter filter, ExportFormat format, OutputStream out) throws IOException {
+        try (TaskExportWriter writer = TaskExportWriter.forAttempts(format, out, objectMapper)) {
+            repo.exportAttempts(filter, writer::write);
+        }
+    }
+
     /**
      * Cancels a task when it is still waiting for execution.
      * <p>
-     * Only PENDING tasks can be canceled. If the task is already RUNNING,
+     * Only PENDING and BLOCKED tasks can be canceled. If the task is already RUNNING,
      * DONE, FAILED, or CANCELED, the method throws TaskConflictException.
+     * Tasks that depend on the canceled task are canceled too.
      */
     public void cancel(UUID id) {
-        Task t = repo.findByID(id).orElseThrow(() -> new TaskNotFoundException(id));
+        TaskStatus status = repo.findStatus(id).orElseThrow(() -> new TaskNotFoundException(id));
 
-        if (t.status() != TaskStatus.PENDING) {
-            throw new TaskConflictException("Task is not cancelable in status: "+ t.status());
+        if (status != TaskStatus.PENDING && status != TaskStatus.BLOCKED) {
+            throw new TaskConflictException("Task is not cancelable in status: "+ status);
         }
 
         boolean ok = repo.cancelIfPending(id);
@@ -0,0 +1,112 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses how many tasks the worker claims with one query.
+ * <p>
+ * The size follows an AIMD rule on the fill ratio of the last claim:
+ * - a full claim means a backlog exists, so the size grows;
+ * - a claim that returned less than half of the request halves the size;
+ * - anything in between keeps the size.
+ * <p>
+ * The growth step comes from observed latencies. When handlers finish faster
+ * than one claim round trip, one task per claim cannot keep the slots busy,
+ * so the size grows by claim latency / handler latency (at most doubling).
+ * For slow handlers the size grows by one.
+ * <p>
+ * The result is always limited by the free execution slots, so the worker
+ * never claims a task it cannot start right away.
+ * <p>
+ * onClaim() is called from the claim path under the worker claim lock,
+ * onTaskFinished() from task threads. Latency averages are lock-free.
+ */
+public class AdaptiveBatchSizer {
+
+    private final int minSize;
+    private final int maxSize;
+
+    private volatile int size;
+    private volatile boolean backlog;
+
+    private final AtomicLong claimLatencyNanos = new AtomicLong();
+    private final AtomicLong handlerLatencyNanos = new AtomicLong();
+
+    public AdaptiveBatchSizer(int initialSize, int minSize, int maxSize) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.size = clamp(initialSize);
+    }
+
+    /**
+     * Returns the batch size for the next claim with the given free slots.
+     */
+    public int nextBatchSize(int freeSlots) {
+        return Math.min(size, freeSlots);
+    }
+
+    /**
+     * Updates the size after a claim.
+     *
+     * @param requested    number of tasks asked for
+     * @param claimed      number of tasks returned
+     * @param elapsedNanos duration of the claim query
+     */
+    public void onClaim(int requested, int claimed, long elapsedNanos) {
+        updateAverage(claimLatencyNanos, elapsedNanos);
+
+        if (requested == 0) {
+            return;
+        }
+
+        backlog = claimed >= requested;
+        if (backlog) {
+            size = clamp(size + increaseStep());
+        } else if (claimed * 2 < requested) {
+            size = clamp(size / 2);
+        }
+    }
+
+    /**
+     * Records the duration of one handler call.
+     */
+    public void onTaskFinished(long elapsedNanos) {
+        updateAverage(handlerLatencyNanos, elapsedNanos);
+    }
+
+    /**
+     * Returns true when the last claim was full, so more due tasks are waiting
+     * and the worker should claim again as soon as slots are free.
+     */
+    public boolean backlog() {
+        return backlog;
+    }
+
+    /**
+     * Current batch size, exposed as a metric.
+     */
+    public int currentSize() {
+        return size;
+    }
+
+    private int increaseStep() {
+        long claim = claimLatencyNanos.get();
+        long handler = handlerLatencyNanos.get();
+        if (claim == 0 || handler == 0) {
+            return 1;
+        }
+        long step = claim / handler;
+        return (int) Math.max(1, Math.min(step, size));
+    }
+
+    private int clamp(int value) {
+        return Math.max(minSize, Math.min(maxSize, value));
+    }
+
+    /**
+     * Exponentially weighted moving average with a weight of 1/8 for new samples.
+     */
+    private static void updateAverage(AtomicLong average, long sample) {
+        average.updateAndGet(prev -> prev == 0 ? sample : prev + (sample - prev) / 8);
+    }
+}
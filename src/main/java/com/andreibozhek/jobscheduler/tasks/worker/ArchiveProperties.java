@@ -0,0 +1,28 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Archive settings bound from the tasks.archive.* properties.
+ * <p>
+ * enabled and intervalMs are also read by the condition and the schedule of
+ * TaskArchiver, they are listed here so all archive settings are documented
+ * in one place.
+ *
+ * @param enabled           moves finished tasks to the archive when true
+ * @param intervalMs        delay between two archiver runs
+ * @param graceMinutes      how long a finished task stays in the hot tasks table
+ * @param batchSize         tasks moved by one statement
+ * @param maxBatchesPerRun  upper limit of batches per run, the rest waits for the next run
+ * @param retentionDays     archive partitions older than this are dropped
+ */
+@ConfigurationProperties(prefix = "tasks.archive")
+public record ArchiveProperties(
+        @DefaultValue("true")       boolean         enabled,
+        @DefaultValue("60000")      long            intervalMs,
+        @DefaultValue("60")         int             graceMinutes,
+        @DefaultValue("1000")       int             batchSize,
+        @DefaultValue("100")        int             maxBatchesPerRun,
+        @DefaultValue("30")         int             retentionDays
+) {}
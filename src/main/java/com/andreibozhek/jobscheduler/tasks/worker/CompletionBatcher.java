@@ -0,0 +1,192 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.domain.TaskCompletion;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects task results and writes them to the database in batches.
+ * <p>
+ * Task threads only put their result into a queue. One flusher thread writes
+ * everything that arrived within worker.completion.flushIntervalMs, or up to
+ * worker.completion.maxBatchSize results, with TaskRepository.completeAll in
+ * one transaction. This turns three autocommit statements per task into a few
+ * statements and one commit per batch.
+ * <p>
+ * Durability: a result is durable only after its batch is committed. If the
+ * node dies before that, the task is still RUNNING in the database and is
+ * requeued when its lease expires, so it runs again (at-least-once, the same
+ * guarantee as a crash during execution). The attempt row of a running task is
+ * written together with its result, so GET /tasks/{id}/runs shows an attempt
+ * once it has finished.
+ * <p>
+ * Results of tasks whose lease was lost in the meantime are discarded by the
+ * fencing check in TaskRepository.completeAll().
+ * <p>
+ * The queue is bounded. When the database falls behind, task threads wait in
+ * submit(), which slows down execution instead of growing memory.
+ * <p>
+ * The batcher stops after TaskWorker (lower lifecycle phase), so results of
+ * tasks drained on shutdown are still flushed.
+ */
+@Component
+@ConditionalOnProperty(
+        name = "worker.enabled",
+        havingValue = "true",
+        matchIfMissing = true
+)
+public class CompletionBatcher implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(CompletionBatcher.class);
+
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final TaskRepository repo;
+    private final WorkerProperties.Completion props;
+    private final BlockingQueue<TaskCompletion> queue;
+    private final Counter discarded;
+
+    private volatile boolean running;
+    private volatile Thread flusherThread;
+
+    public CompletionBatcher(TaskRepository repo, WorkerProperties props, MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.props = props.completion();
+        this.queue = new LinkedBlockingQueue<>(this.props.maxBatchSize() * 10);
+        this.discarded = Counter.builder("worker.completions.discarded")
+                .description("Task results rejected by the lease fencing check")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues one result, waiting while the queue is full.
+     */
+    public void submit(TaskCompletion completion) {
+        try {
+            queue.put(completion);
+        } catch (InterruptedException ex) {
+            // The worker interrupts tasks on shutdown, the result must still be kept
+            queue.offer(completion);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusherThread = Thread.ofPlatform()
+                .name("task-completion-flusher")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = flusherThread;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            flusherThread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 1;
+    }
+
+    private void run() {
+        List<TaskCompletion> batch = new ArrayList<>(props.maxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException ex) {
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Waits for the first result, then keeps collecting until the batch is full
+     * or the flush interval since the first result has passed.
+     */
+    private void collect(List<TaskCompletion> batch) throws InterruptedException {
+        TaskCompletion first = queue.poll(props.flushIntervalMs(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(props.flushIntervalMs());
+        while (batch.size() < props.maxBatchSize()) {
+            queue.drainTo(batch, props.maxBatchSize() - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || batch.size() >= props.maxBatchSize()) {
+                return;
+            }
+
+            TaskCompletion next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Writes one batch, retrying a few times on database errors.
+     * <p>
+     * If all attempts fail, the batch is dropped and the tasks are recovered
+     * by lease expiry.
+     */
+    private void flush(List<TaskCompletion> batch) {
+        for (int attempt = 1; attempt <= MAX_FLUSH_ATTEMPTS; attempt++) {
+            try {
+                int applied = repo.completeAll(batch);
+                if (applied < batch.size()) {
+                    discarded.increment(batch.size() - applied);
+                    log.warn("Discarded {} task results of lost leases", batch.size() - applied);
+                }
+                return;
+            } catch (Exception ex) {
+                log.warn("Writing {} task results failed (attempt {}): {}",
+                        batch.size(), attempt, ex.getMessage());
+                sleepQuietly(attempt * 200L);
+            }
+        }
+        log.error("Dropped {} task results, the tasks will be requeued after lease expiry", batch.size());
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.repo.LeaderLock;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Returns RUNNING tasks with an expired lease to the queue.
+ * <p>
+ * The reaper runs every worker.reaper.intervalMs, and only on the node that
+ * gets the LeaderLock, so the cluster runs the update once per interval. The
+ * query reads idx_tasks_running_locked_until, which only contains RUNNING tasks.
+ * <p>
+ * A lease expires at most intervalMs later than locked_until. That delay only
+ * affects tasks of dead workers, so a few seconds are fine.
+ */
+@Component
+@ConditionalOnProperty(
+        name = "worker.enabled",
+        havingValue = "true",
+        matchIfMissing = true
+)
+public class LeaseReaper {
+    private static final Logger log = LoggerFactory.getLogger(LeaseReaper.class);
+
+    private final TaskRepository repo;
+    private final LeaderLock leaderLock;
+    private final TaskWorker worker;
+    private final Counter requeuedLeases;
+
+    public LeaseReaper(TaskRepository repo, LeaderLock leaderLock, TaskWorker worker, MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.leaderLock = leaderLock;
+        this.worker = worker;
+        this.requeuedLeases = Counter.builder("worker.leases.requeued")
+                .description("RUNNING tasks with an expired lease returned to PENDING")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${worker.reaper.intervalMs:5000}",
+            fixedDelayString = "${worker.reaper.intervalMs:5000}"
+    )
+    public void run() {
+        try {
+            int requeued = leaderLock.runIfLeader(LeaderLock.LEASE_REAPER, repo::requeueExpiredRunningTasks)
+                    .orElse(0);
+
+            if (requeued > 0) {
+                requeuedLeases.increment(requeued);
+                log.warn("Requeued {} expired running tasks", requeued);
+                // The update does not fire the insert trigger, so wake the local worker directly
+                worker.wakeUp();
+            }
+        } catch (Exception ex) {
+            log.error("Lease reaper run failed", ex);
+        }
+    }
+}
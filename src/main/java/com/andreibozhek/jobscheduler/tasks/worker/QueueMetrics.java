@@ -0,0 +1,55 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.domain.QueueStats;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exports the depth and lag of the task queue as gauges.
+ * <p>
+ * The values come from one query every worker.metrics.queueIntervalMs, not
+ * from a query per scrape, so scrape frequency does not add database load.
+ * Gauges:
+ * - tasks.pending: number of PENDING tasks;
+ * - tasks.oldest.due.lag (seconds): how long the oldest due task has been
+ *   waiting past its run_at. A growing lag means the workers fall behind.
+ */
+@Component
+@ConditionalOnProperty(
+        name = "worker.enabled",
+        havingValue = "true",
+        matchIfMissing = true
+)
+public class QueueMetrics {
+    private static final Logger log = LoggerFactory.getLogger(QueueMetrics.class);
+
+    private final TaskRepository repo;
+    private volatile QueueStats stats = new QueueStats(0, 0);
+
+    public QueueMetrics(TaskRepository repo, MeterRegistry meterRegistry) {
+        this.repo = repo;
+
+        Gauge.builder("tasks.pending", this, m -> m.stats.pending())
+                .description("Number of PENDING tasks")
+                .register(meterRegistry);
+        Gauge.builder("tasks.oldest.due.lag", this, m -> m.stats.oldestDueLagSeconds())
+                .description("Time the oldest due PENDING task has been waiting past its run time")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${worker.metrics.queueIntervalMs:15000}")
+    public void refresh() {
+        try {
+            stats = repo.queueStats();
+        } catch (Exception ex) {
+            log.warn("Reading queue metrics failed: {}", ex.getMessage());
+        }
+    }
+}
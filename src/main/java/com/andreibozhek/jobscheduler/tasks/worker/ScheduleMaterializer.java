@@ -0,0 +1,152 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.domain.MisfirePolicy;
+import com.andreibozhek.jobscheduler.tasks.domain.ScheduleTrigger;
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskSchedule;
+import com.andreibozhek.jobscheduler.tasks.repo.LeaderLock;
+import com.andreibozhek.jobscheduler.tasks.repo.ScheduleRepository;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Turns schedule fires into tasks.
+ * <p>
+ * There is no timer per schedule. Every tasks.schedules.intervalMs one node
+ * (chosen by LeaderLock) locks a batch of schedules whose next_fire_at is
+ * within horizonMs, inserts one PENDING task per fire up to the horizon and
+ * moves next_fire_at past it, all in one transaction. A schedule is touched
+ * about once per horizon or per period, whichever is longer, so the cost
+ * follows the number of fires, not the number of schedules. From there on the
+ * fires are ordinary tasks: the insert trigger notifies the workers and the
+ * timing wheel runs them on time.
+ * <p>
+ * A fire never creates two tasks: the task id is derived from the schedule id
+ * and the fire time and inserted with ON CONFLICT DO NOTHING, so even a run
+ * that repeats a committed fire (e.g. after a leader change) inserts nothing.
+ * <p>
+ * Fires go through TaskPayloadStore like tasks created by the API, so a large
+ * schedule payload is stored in task_payloads and the task rows stay narrow.
+ */
+@Component
+@ConditionalOnExpression("${worker.enabled:true} and ${tasks.schedules.enabled:true}")
+public class ScheduleMaterializer {
+    private static final Logger log = LoggerFactory.getLogger(ScheduleMaterializer.class);
+
+    private final ScheduleRepository schedules;
+    private final TaskRepository tasks;
+    private final TaskPayloadStore payloadStore;
+    private final LeaderLock leaderLock;
+    private final ScheduleProperties props;
+
+    public ScheduleMaterializer(
+            ScheduleRepository schedules,
+            TaskRepository tasks,
+            TaskPayloadStore payloadStore,
+            LeaderLock leaderLock,
+            ScheduleProperties props) {
+        this.schedules = schedules;
+        this.tasks = tasks;
+        this.payloadStore = payloadStore;
+        this.leaderLock = leaderLock;
+        this.props = props;
+    }
+
+    @Scheduled(fixedDelayString = "${tasks.schedules.intervalMs:1000}")
+    public void run() {
+        try {
+            OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+            int created = 0;
+            for (int i = 0; i < props.maxBatchesPerRun(); i++) {
+                Batch batch = leaderLock.runIfLeader(LeaderLock.SCHEDULE_MATERIALIZER,
+                        () -> materializeBatch(now)
+                ).orElse(Batch.EMPTY);
+                created += batch.tasks();
+                if (batch.schedules() < props.batchSize()) {
+                    break;
+                }
+            }
+            if (created > 0) {
+                log.debug("Materialized {} scheduled tasks", created);
+            }
+        } catch (Exception ex) {
+            log.error("Schedule materializer run failed", ex);
+        }
+    }
+
+    /**
+     * Materializes one batch of due schedules.
+     * <p>
+     * Must run in a transaction so the schedule row locks cover the task
+     * insert and the next_fire_at update.
+     */
+    Batch materializeBatch(OffsetDateTime now) {
+        OffsetDateTime until = now.plus(Duration.ofMillis(props.horizonMs()));
+        List<TaskSchedule> due = schedules.lockDue(until, props.batchSize());
+        if (due.isEmpty()) {
+            return Batch.EMPTY;
+        }
+
+        List<Task> fires = new ArrayList<>();
+        Map<UUID, OffsetDateTime> nextFireAt = new HashMap<>();
+        for (TaskSchedule s : due) {
+            nextFireAt.put(s.id(), fire(s, now, until, fires));
+        }
+
+        if (!fires.isEmpty()) {
+            fires.replaceAll(payloadStore::offload);
+            tasks.insertAllIfAbsent(fires);
+        }
+        schedules.advance(nextFireAt);
+        return new Batch(due.size(), fires.size());
+    }
+
+    /**
+     * Adds the tasks of the fires of one schedule up to until.
+     * <p>
+     * Fires older than misfireThresholdMs follow the misfire policy:
+     * FIRE_ALL creates all of them (at most maxFiresPerSchedule per batch, the
+     * rest follows in the next batch), FIRE_ONCE creates one task that runs
+     * now, SKIP creates none.
+     *
+     * @return the next fire without a task, null when the schedule is finished
+     */
+    private OffsetDateTime fire(TaskSchedule s, OffsetDateTime now, OffsetDateTime until, List<Task> out) {
+        ScheduleTrigger trigger = s.trigger();
+        OffsetDateTime fireAt = s.nextFireAt();
+
+        OffsetDateTime missedBefore = now.minus(Duration.ofMillis(props.misfireThresholdMs()));
+        if (fireAt.isBefore(missedBefore) && s.misfirePolicy() != MisfirePolicy.FIRE_ALL) {
+            if (s.misfirePolicy() == MisfirePolicy.FIRE_ONCE) {
+                out.add(s.occurrence(fireAt, now, now));
+            }
+            fireAt = trigger.next(missedBefore.minusNanos(1));
+        }
+
+        int count = 0;
+        while (fireAt != null && !fireAt.isAfter(until) && count < props.maxFiresPerSchedule()) {
+            out.add(s.occurrence(fireAt, fireAt, now));
+            count++;
+            fireAt = trigger.next(fireAt);
+        }
+        return fireAt;
+    }
+
+    record Batch(int schedules, int tasks) {
+        static final Batch EMPTY = new Batch(0, 0);
+    }
+}
@@ -0,0 +1,29 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Schedule materializer settings bound from the tasks.schedules.* properties.
+ * <p>
+ * enabled and intervalMs are also read by the condition and the schedule of
+ * ScheduleMaterializer.
+ *
+ * @param enabled               materializes schedules when true
+ * @param intervalMs            delay between two materializer runs
+ * @param horizonMs             fires up to this far ahead are inserted as tasks
+ * @param batchSize             schedules handled by one transaction
+ * @param maxBatchesPerRun      upper limit of batches per run, the rest waits for the next run
+ * @param maxFiresPerSchedule   upper limit of tasks per schedule and batch
+ * @param misfireThresholdMs    fires older than this are missed and follow the misfire policy
+ */
+@ConfigurationProperties(prefix = "tasks.schedules")
+public record ScheduleProperties(
+        @DefaultValue("true")       boolean         enabled,
+        @DefaultValue("1000")       long            intervalMs,
+        @DefaultValue("60000")      long            horizonMs,
+        @DefaultValue("500")        int             batchSize,
+        @DefaultValue("100")        int             maxBatchesPerRun,
+        @DefaultValue("100")        int             maxFiresPerSchedule,
+        @DefaultValue("60000")      long            misfireThresholdMs
+) {}
@@ -0,0 +1,116 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.repo.LeaderLock;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskArchiveRepository;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Keeps the hot tasks table small.
+ * <p>
+ * Every tasks.archive.intervalMs one node (chosen by LeaderLock) does the following:
+ * - creates today's and tomorrow's archive partitions;
+ * - moves tasks that finished more than graceMinutes ago, with their attempts,
+ *   to the archive in batches of batchSize;
+ * - detaches and drops archive partitions older than retentionDays;
+ * - deletes offloaded payloads older than retentionDays whose task is gone.
+ * <p>
+ * The claim and reaper queries then only see PENDING, RUNNING and recently
+ * finished rows, and old data is removed by dropping partitions instead of
+ * DELETE plus vacuum. Archived tasks stay readable through GET /tasks.
+ */
+@Component
+@ConditionalOnExpression("${worker.enabled:true} and ${tasks.archive.enabled:true}")
+public class TaskArchiver {
+    private static final Logger log = LoggerFactory.getLogger(TaskArchiver.class);
+
+    private final TaskArchiveRepository archive;
+    private final LeaderLock leaderLock;
+    private final TaskPayloadStore payloadStore;
+    private final ArchiveProperties props;
+
+    public TaskArchiver(
+            TaskArchiveRepository archive,
+            TaskPayloadStore payloadStore,
+            LeaderLock leaderLock,
+            ArchiveProperties props) {
+        this.archive = archive;
+        this.payloadStore = payloadStore;
+        this.leaderLock = leaderLock;
+        this.props = props;
+    }
+
+    @Scheduled(fixedDelayString = "${tasks.archive.intervalMs:60000}")
+    public void run() {
+        try {
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+            boolean leader = leaderLock.runIfLeader(LeaderLock.TASK_ARCHIVER, () -> {
+                archive.ensurePartitions(today, 2);
+                return true;
+            }).isPresent();
+            if (!leader) {
+                return;
+            }
+
+            int archived = archiveFinishedTasks();
+            List<String> dropped = leaderLock.runIfLeader(LeaderLock.TASK_ARCHIVER,
+                    () -> archive.dropPartitionsBefore(today.minusDays(props.retentionDays()))
+            ).orElse(List.of());
+            int payloads = deleteOrphanPayloads(today.minusDays(props.retentionDays()));
+
+            if (archived > 0 || !dropped.isEmpty() || payloads > 0) {
+                log.info("Archived {} finished tasks, dropped partitions {}, deleted {} payloads",
+                        archived, dropped, payloads);
+            }
+        } catch (Exception ex) {
+            log.error("Task archiver run failed", ex);
+        }
+    }
+
+    /**
+     * Moves batches until a batch is not full, so a backlog is worked off in
+     * one run, with each batch in its own short transaction.
+     */
+    private int archiveFinishedTasks() {
+        int total = 0;
+        for (int i = 0; i < props.maxBatchesPerRun(); i++) {
+            int moved = leaderLock.runIfLeader(LeaderLock.TASK_ARCHIVER,
+                    () -> archive.archiveFinishedTasks(props.graceMinutes(), props.batchSize())
+            ).orElse(0);
+            total += moved;
+            if (moved < props.batchSize()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Deletes payloads of tasks that were dropped with their archive partition,
+     * in batches like archiveFinishedTasks().
+     */
+    private int deleteOrphanPayloads(LocalDate before) {
+        OffsetDateTime cutoff = before.atStartOfDay().atOffset(ZoneOffset.UTC);
+        int total = 0;
+        for (int i = 0; i < props.maxBatchesPerRun(); i++) {
+            int deleted = leaderLock.runIfLeader(LeaderLock.TASK_ARCHIVER,
+                    () -> payloadStore.deleteOrphans(cutoff, props.batchSize())
+            ).orElse(0);
+            total += deleted;
+            if (deleted < props.batchSize()) {
+                break;
+            }
+        }
+        return total;
+    }
+}
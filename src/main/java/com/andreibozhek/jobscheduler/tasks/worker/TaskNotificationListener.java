@@ -0,0 +1,179 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Wakes up the worker when new tasks are inserted.
+ * <p>
+ * The tasks table has a trigger that sends a notification on the task_created
+ * channel after each INSERT. This listener keeps one dedicated connection
+ * outside the pool, runs LISTEN on it, and calls TaskWorker.wakeUp() when a
+ * notification says that a new task is already due. When the task is due
+ * within the prefetch window of UpcomingTaskTimer, the timer refreshes instead.
+ * <p>
+ * The connection uses the same connection details as the pool, so it follows
+ * spring.datasource.*, service connections (Testcontainers, Docker Compose)
+ * and the driver properties of spring.datasource.hikari.data-source-properties.
+ * <p>
+ * If the connection breaks, the listener reconnects after a short delay. The
+ * worker still polls with worker.fixedDelayMs, so a lost notification only
+ * delays a task, it never loses it.
+ */
+@Component
+@ConditionalOnExpression("${worker.enabled:true} and ${worker.listen:true}")
+public class TaskNotificationListener implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(TaskNotificationListener.class);
+
+    static final String CHANNEL = "task_created";
+    private static final int RECEIVE_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 2000;
+    private static final long DUE_TOLERANCE_MS = 1000;
+
+    private final TaskWorker worker;
+    private final UpcomingTaskTimer timer;
+    private final JdbcConnectionDetails connectionDetails;
+    private final DataSource dataSource;
+
+    private volatile boolean running;
+    private volatile Thread listenerThread;
+
+    public TaskNotificationListener(
+            TaskWorker worker,
+            ObjectProvider<UpcomingTaskTimer> timer,
+            JdbcConnectionDetails connectionDetails,
+            DataSource dataSource) {
+        this.worker = worker;
+        this.timer = timer.getIfAvailable();
+        this.connectionDetails = connectionDetails;
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listenerThread = Thread.ofPlatform()
+                .name("task-notification-listener")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = listenerThread;
+        if (thread != null) {
+            try {
+                thread.join(RECEIVE_TIMEOUT_MS * 2L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            listenerThread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection conn = connect()) {
+
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + CHANNEL);
+                }
+
+                // Tasks inserted while the listener was not connected are picked up now
+                worker.wakeUp();
+                receive(conn.unwrap(PGConnection.class));
+
+            } catch (SQLException ex) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Task notification listener lost its connection: {}", ex.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    /**
+     * Opens the dedicated LISTEN connection outside the pool.
+     * <p>
+     * A pooled connection cannot be used: it would be held for the whole
+     * lifetime of the listener and LISTEN state must not leak to other users.
+     */
+    private Connection connect() throws SQLException {
+        Properties props = new Properties();
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            props.putAll(dataSource.unwrap(HikariDataSource.class).getDataSourceProperties());
+        }
+        if (connectionDetails.getUsername() != null) {
+            props.setProperty("user", connectionDetails.getUsername());
+        }
+        if (connectionDetails.getPassword() != null) {
+            props.setProperty("password", connectionDetails.getPassword());
+        }
+        return DriverManager.getConnection(connectionDetails.getJdbcUrl(), props);
+    }
+
+    private void receive(PGConnection conn) throws SQLException {
+        while (running) {
+            PGNotification[] notifications = conn.getNotifications(RECEIVE_TIMEOUT_MS);
+            if (notifications == null) {
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+            for (PGNotification n : notifications) {
+                long runAt = parseRunAt(n.getParameter());
+                if (runAt <= now + DUE_TOLERANCE_MS) {
+                    worker.wakeUp();
+                } else if (timer != null && timer.covers(runAt, now)) {
+                    timer.refreshSoon();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the earliest run_at sent by the trigger.
+     * <p>
+     * Due checks use a small tolerance for clock differences between the
+     * database and this node. A payload that cannot be parsed counts as due,
+     * so the worker rather checks once too often than misses a task.
+     */
+    private static long parseRunAt(String payload) {
+        try {
+            return Long.parseLong(payload);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
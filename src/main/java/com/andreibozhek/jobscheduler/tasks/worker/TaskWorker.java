@@ -1,25 +1,57 @@
 package com.andreibozhek.jobscheduler.tasks.worker;
 
 import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskCompletion;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import com.andreibozhek.jobscheduler.tasks.domain.TypeCapacity;
+import com.andreibozhek.jobscheduler.tasks.handler.RetryPolicy;
 import com.andreibozhek.jobscheduler.tasks.handler.TaskHandler;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskPayloadBinder;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
 import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Background worker that executes scheduled tasks.
  * <p>
- * The worker wakes up on a fixed delay, returns expired RUNNING tasks back to
- * the queue, claims due PENDING tasks, and executes each claimed task through
- * a matching TaskHandler.
+ * The worker runs a claim loop on its own thread. Each cycle claims due PENDING
+ * tasks and executes each claimed task through a matching TaskHandler.
+ * <p>
+ * Between cycles the loop sleeps for worker.fixedDelayMs, but wakeUp() ends the
+ * sleep early. TaskNotificationListener calls it when a new task is inserted,
+ * and the worker calls it itself when a slot frees up while a backlog exists.
+ * The fixed delay is only a safety net for missed notifications.
+ * <p>
+ * Claimed tasks run in parallel on an executor. A semaphore limits the number
+ * of tasks in flight to worker.concurrency, and the worker never claims more
+ * tasks than it has free slots for. The size of each claim is chosen by
+ * AdaptiveBatchSizer and exported as the worker.claim.batch.size gauge.
+ * Claim latency, batch fill and handler durations are recorded by WorkerMetrics.
+ * <p>
+ * While tasks run, renewLeases() extends their leases every
+ * worker.heartbeat.intervalMs, so long handlers are not requeued.
  * <p>
  * The worker is disabled in integration tests with worker.enabled=false so
  * tests can control task state directly.
@@ -30,12 +62,36 @@ import java.util.stream.Collectors;
         havingValue = "true",
         matchIfMissing = true
 )
-public class TaskWorker {
+public class TaskWorker implements SmartLifecycle {
     private static final Logger log = LoggerFactory.getLogger(TaskWorker.class);
+    // How long stop() waits for interrupted task threads to end
+    private static final long INTERRUPT_GRACE_MS = 1_000;
 
     private final TaskRepository repo;
+    private final CompletionBatcher completions;
+    private final WorkerProperties props;
     private final String workerId = "worker-" + UUID.randomUUID();
     private final Map<String, TaskHandler> handlers;
+    private final TaskPayloadBinder payloadBinder;
+    private final TaskPayloadStore payloadStore;
+    private final TypeLimiter limiter;
+    private final Map<String, Long> unlimitedLeases;
+    private final RetryPolicy defaultRetryPolicy;
+
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final AdaptiveBatchSizer batchSizer;
+    private final WorkerMetrics metrics;
+    private final Counter lostLeases;
+    // Task id -> lease length in ms of every task running on this worker
+    private final Map<UUID, Long> inFlight = new ConcurrentHashMap<>();
+    // Ids of submitted tasks whose handler has not started yet
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    private final Semaphore wakeups = new Semaphore(0);
+    private final Object claimLock = new Object();
+    private volatile boolean backlog;
+    private volatile boolean stopping;
+    private volatile Thread loopThread;
 
     /**
      * Builds the worker and creates a lookup map from task type to handler.
@@ -43,46 +99,311 @@ public class TaskWorker {
      * Spring injects all TaskHandler beans. The map lets the worker find the right
      * handler for each task type without hard-coded if statements.
      */
-    public TaskWorker(TaskRepository repo, List<TaskHandler> handlers) {
+    public TaskWorker(
+            TaskRepository repo,
+            CompletionBatcher completions,
+            List<TaskHandler> handlers,
+            TaskPayloadBinder payloadBinder,
+            TaskPayloadStore payloadStore,
+            WorkerProperties props,
+            MeterRegistry meterRegistry) {
         this.repo = repo;
+        this.completions = completions;
+        this.payloadBinder = payloadBinder;
+        this.payloadStore = payloadStore;
+        this.props = props;
         this.handlers = handlers.stream()
                 .collect(Collectors.toMap(
                         TaskHandler::type,
                         handler -> handler
                 ));
+        this.limiter = new TypeLimiter(handlers);
+        this.unlimitedLeases = limiter.unlimitedTypes().stream()
+                .collect(Collectors.toMap(type -> type, this::leaseMs));
+        this.defaultRetryPolicy = props.retry().toPolicy();
+        for (TaskHandler handler : handlers) {
+            Duration lease = handler.lease();
+            if (lease != null && lease.toMillis() <= props.heartbeat().intervalMs()) {
+                log.warn("Lease {} of task type {} is not longer than the heartbeat interval {} ms",
+                        lease, handler.type(), props.heartbeat().intervalMs());
+            }
+        }
+        this.slots = new Semaphore(props.concurrency());
+        this.executor = createExecutor(props);
+        this.batchSizer = new AdaptiveBatchSizer(
+                props.batchSize(),
+                props.minBatchSize(),
+                props.maxBatchSize()
+        );
+
+        Gauge.builder("worker.claim.batch.size", batchSizer, AdaptiveBatchSizer::currentSize)
+                .description("Number of tasks the worker asks for in the next claim")
+                .register(meterRegistry);
+        Gauge.builder("worker.tasks.running", inFlight, Map::size)
+                .description("Number of tasks running on this worker")
+                .register(meterRegistry);
+        this.lostLeases = Counter.builder("worker.leases.lost")
+                .description("Running tasks whose lease could not be renewed")
+                .register(meterRegistry);
+        this.metrics = new WorkerMetrics(meterRegistry, this.handlers.keySet());
+    }
+
+    private static ExecutorService createExecutor(WorkerProperties props) {
+        return switch (props.executor()) {
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("task-", 0).factory());
+            case PLATFORM -> Executors.newFixedThreadPool(
+                    props.concurrency(),
+                    Thread.ofPlatform().name("task-", 0).factory());
+        };
+    }
+
+    /**
+     * Starts the claim loop thread.
+     */
+    @Override
+    public void start() {
+        stopping = false;
+        loopThread = Thread.ofPlatform()
+                .name(workerId + "-loop")
+                .daemon(true)
+                .start(this::loop);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return loopThread != null;
+    }
+
+    /**
+     * Ends the current wait of the claim loop so the next cycle starts now.
+     * <p>
+     * Several calls before the loop wakes up result in only one extra cycle.
+     */
+    public void wakeUp() {
+        if (wakeups.availablePermits() == 0) {
+            wakeups.release();
+        }
+    }
+
+    private void loop() {
+        while (!stopping) {
+            try {
+                tick();
+            } catch (Exception ex) {
+                log.error("[{}] Worker cycle failed", workerId, ex);
+            }
+
+            // Rate limited types with waiting tasks get a cycle as soon as a token is back
+            long waitMs = Math.min(props.fixedDelayMs(), limiter.millisUntilNextToken());
+            try {
+                wakeups.tryAcquire(waitMs, TimeUnit.MILLISECONDS);
+                wakeups.drainPermits();
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
     }
 
     /**
      * Runs one worker cycle.
      * <p>
-     * First, expired RUNNING tasks are requeued. Then this worker claims a small
-     * batch of due PENDING tasks and executes them one by one.
+     * The worker claims due PENDING tasks for its free execution slots and hands
+     * them to the executor. Expired leases are requeued by LeaseReaper, not here.
+     * Claiming continues without delay while full batches come back and slots
+     * are still free, so a backlog is not limited to one batch per cycle. When
+     * the cycle stops because all slots are busy during a backlog, the next
+     * finished task wakes the loop again.
+     * <p>
+     * Only types with free capacity in TypeLimiter are claimed, and each at most
+     * up to its capacity, so the worker does not claim tasks it is not allowed
+     * to start yet.
+     * <p>
+     * Claims run under claimLock, so the free slot count cannot be used twice by
+     * this loop and by claimFired() at the same time.
      */
-    @Scheduled(fixedDelayString = "${worker.fixedDelayMs:1000}")
     public void tick() {
-        int requeued = repo.requeueExpiredRunningTasks();
+        if (stopping) {
+            return;
+        }
+
+        while (!stopping) {
+            synchronized (claimLock) {
+                int requested = batchSizer.nextBatchSize(slots.availablePermits());
+                if (requested == 0) {
+                    backlog = batchSizer.backlog();
+                    return;
+                }
+
+                List<TypeCapacity> capacities = limiter.capacities(requested);
+                if (capacities.isEmpty()) {
+                    backlog = false;
+                    return;
+                }
+
+                long started = System.nanoTime();
+                List<Task> claimed = repo.claimDueTasks(workerId, capacities, requested, props.lockSeconds());
+                long claimNanos = System.nanoTime() - started;
+                batchSizer.onClaim(requested, claimed.size(), claimNanos);
+                metrics.onPollClaim(claimNanos, requested, claimed.size());
+
+                for (Task t : claimed) {
+                    submit(t);
+                }
+
+                backlog = batchSizer.backlog();
+                if (!backlog) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims tasks whose run time was reached in UpcomingTaskTimer.
+     * <p>
+     * The claim targets the given ids only, so it does not scan for other due
+     * tasks. When there are fewer free slots than fired tasks, the rest stays
+     * PENDING and the claim loop picks it up as soon as a slot frees up.
+     * <p>
+     * Only types without per-type limits are claimed by id. Fired tasks of
+     * limited types are left to the claim loop, which is woken up for them.
+     */
+    public void claimFired(List<UUID> taskIds) {
+        if (stopping || taskIds.isEmpty()) {
+            return;
+        }
+        if (limiter.hasLimits()) {
+            wakeUp();
+        }
+        if (limiter.unlimitedTypes().isEmpty()) {
+            return;
+        }
+
+        synchronized (claimLock) {
+            int free = slots.availablePermits();
+            if (free < taskIds.size()) {
+                backlog = true;
+            }
+            if (free == 0) {
+                return;
+            }
 
-        if (requeued > 0) {
-            log.warn("[{}] Requeued {} expired running tasks", workerId, requeued);
+            long started = System.nanoTime();
+            List<Task> claimed = repo.claimTasksByIds(
+                    workerId,
+                    taskIds.subList(0, Math.min(free, taskIds.size())),
+                    unlimitedLeases,
+                    props.wheel().tickMs()
+            );
+            metrics.onFiredClaim(System.nanoTime() - started);
+            for (Task t : claimed) {
+                submit(t);
+            }
         }
+    }
 
-        List<Task> claimed = repo.claimDueTasks(workerId, 10, 30);
-        for (Task t : claimed) {
-            executeOne(t);
+    /**
+     * Renews the leases of all tasks running on this worker.
+     * <p>
+     * Without renewal a handler that runs longer than its lease would be
+     * requeued by LeaseReaper and executed a second time. One UPDATE renews all
+     * running tasks of this worker, each with the lease of its task type. A task
+     * that is not renewed has already lost its lease; its result will be
+     * rejected by the fencing check in TaskRepository.completeAll().
+     */
+    @Scheduled(
+            initialDelayString = "${worker.heartbeat.intervalMs:10000}",
+            fixedDelayString = "${worker.heartbeat.intervalMs:10000}"
+    )
+    public void renewLeases() {
+        if (stopping || inFlight.isEmpty()) {
+            return;
         }
+
+        try {
+            Map<UUID, Long> leases = Map.copyOf(inFlight);
+            List<UUID> renewed = repo.renewLeases(workerId, leases);
+            if (renewed.size() < leases.size()) {
+                lostLeases.increment(leases.size() - renewed.size());
+                log.warn("[{}] {} running tasks lost their lease",
+                        workerId, leases.size() - renewed.size());
+            }
+        } catch (Exception ex) {
+            log.error("[{}] Lease renewal failed", workerId, ex);
+        }
+    }
+
+    private RetryPolicy retryPolicy(Task t) {
+        TaskHandler handler = handlers.get(t.type());
+        RetryPolicy policy = handler == null ? null : handler.retryPolicy(t);
+        return policy != null ? policy : defaultRetryPolicy;
+    }
+
+    private long leaseMs(String type) {
+        TaskHandler handler = handlers.get(type);
+        Duration lease = handler == null ? null : handler.lease();
+        return lease != null ? lease.toMillis() : props.lockSeconds() * 1000L;
     }
 
     /**
-     * Executes one claimed task and records the result.
+     * Hands one claimed task to the executor.
      * <p>
-     * The method starts an attempt record before running the handler. If the
-     * handler finishes without an exception, the attempt is marked as successful
-     * and the task becomes DONE. If the handler throws an exception, the task is
-     * either retried later or marked as FAILED.
+     * The slot is taken before submitting and released when the task finishes.
+     * If the executor is already shut down, the task is released back to PENDING
+     * right away instead of waiting for its lease to expire.
+     * <p>
+     * The task stays in queued until its handler starts. A task that stop()
+     * removed from queued was released already and is not executed.
+     */
+    private void submit(Task t) {
+        slots.acquireUninterruptibly();
+        limiter.onClaimed(t.type());
+        inFlight.put(t.id(), leaseMs(t.type()));
+        queued.add(t.id());
+        try {
+            executor.execute(() -> {
+                try {
+                    if (queued.remove(t.id())) {
+                        executeOne(t);
+                    }
+                } finally {
+                    inFlight.remove(t.id());
+                    slots.release();
+                    boolean typeFreed = limiter.onFinished(t.type());
+                    if (backlog || typeFreed) {
+                        wakeUp();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            queued.remove(t.id());
+            inFlight.remove(t.id());
+            limiter.onFinished(t.type());
+            slots.release();
+            repo.releaseClaimedTasks(workerId, List.of(t.id()));
+        }
+    }
+
+    /**
+     * Executes one claimed task and queues the result.
+     * <p>
+     * An offloaded payload is loaded from task_payloads here, on the executor
+     * thread, so the claim query stays narrow. Typed handlers get their payload
+     * bound by TaskPayloadBinder first. A missing payload fails the attempt.
+     * If the handler finishes without an exception, the task becomes DONE.
+     * If the handler throws an exception, the RetryPolicy of the handler (or the
+     * worker.retry default) decides: the task is retried after the policy delay
+     * when attempts remain and the error is retryable, otherwise it is FAILED.
+     * The delay is computed here and applied by the same UPDATE that writes the
+     * result. The result and the attempt record are written by CompletionBatcher
+     * together with other results.
      */
     private void executeOne(Task t) {
         int attempt = t.attempt();
-        repo.insertAttemptStart(t.id(), attempt);
+        OffsetDateTime startedAt = OffsetDateTime.now();
+        long started = System.nanoTime();
+        TaskCompletion result;
 
         try {
             TaskHandler handler = handlers.get(t.type());
@@ -90,17 +411,81 @@ public class TaskWorker {
                 throw new IllegalArgumentException("Unknown task type: " + t.type());
             }
 
-            handler.handle(t);
+            payloadBinder.execute(handler, payloadStore.resolve(t));
+            batchSizer.onTaskFinished(System.nanoTime() - started);
 
-            repo.finishAttempt(t.id(), attempt, "SUCCESS", null);
-            repo.markDone(t.id());
+            result = new TaskCompletion(t.id(), workerId, attempt, TaskStatus.DONE, null, 0, startedAt, OffsetDateTime.now());
 
         } catch (Exception ex) {
             String msg = ex.getClass().getSimpleName() + ": " + ex.getMessage();
             log.warn("[{}] Task {} failed {}", workerId, t.id(), msg);
-            repo.markFailedOrRetry(t.id(), attempt, t.maxAttempts(), msg);
+
+            RetryPolicy policy = retryPolicy(t);
+            if (attempt < t.maxAttempts() && policy.shouldRetry(ex)) {
+                long backoffMs = policy.delayMs(t.id(), attempt);
+                result = new TaskCompletion(t.id(), workerId, attempt, TaskStatus.PENDING, msg, backoffMs, startedAt, OffsetDateTime.now());
+            } else {
+                result = new TaskCompletion(t.id(), workerId, attempt, TaskStatus.FAILED, msg, 0, startedAt, OffsetDateTime.now());
+            }
+        }
+
+        metrics.onTaskFinished(t.type(), result.status(), System.nanoTime() - started);
+        completions.submit(result);
+    }
+
+    /**
+     * Stops claiming and drains running tasks on shutdown.
+     * <p>
+     * Running tasks get worker.shutdownTimeoutMs to finish. Tasks that are still
+     * running after that are interrupted, and their threads get INTERRUPT_GRACE_MS
+     * to end. A handler that stops this way queues its result as usual.
+     * <p>
+     * Tasks whose handler never started are released back to PENDING, so another
+     * worker can pick them up without waiting for the lease to expire. Tasks whose
+     * handler is still running are not released: their result could still be
+     * written, so they are left to lease expiry and LeaseReaper.
+     */
+    @Override
+    public void stop() {
+        stopping = true;
+        Thread loop = loopThread;
+        if (loop != null) {
+            loop.interrupt();
+            try {
+                loop.join(props.shutdownTimeoutMs());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            loopThread = null;
         }
 
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(props.shutdownTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+                executor.awaitTermination(INTERRUPT_GRACE_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        List<UUID> notStarted = List.copyOf(queued).stream()
+                .filter(queued::remove)
+                .toList();
+        if (!notStarted.isEmpty()) {
+            int released = repo.releaseClaimedTasks(workerId, notStarted);
+            log.warn("[{}] Released {} tasks that did not start before shutdown", workerId, released);
+        }
+
+        long stillRunning = inFlight.keySet().stream()
+                .filter(id -> !notStarted.contains(id))
+                .count();
+        if (stillRunning > 0) {
+            log.warn("[{}] {} tasks are still running after shutdown, they are left to lease expiry",
+                    workerId, stillRunning);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hierarchical timing wheel that keeps task ids until their run time.
+ * <p>
+ * Level 0 has one slot per tick. Each higher level has slots that are
+ * slotsPerLevel times wider than the level below. A task is placed on the lowest
+ * level that can hold it, and moves down one level at a time when the wheel
+ * reaches the start of its slot. Adding and firing a task is O(1), and the work
+ * per tick does not depend on how many tasks are waiting.
+ * <p>
+ * A task id is stored once. Adding the same id with a different run time
+ * replaces the old entry, the old one is skipped when its slot fires.
+ * <p>
+ * The class is not thread-safe. UpcomingTaskTimer uses it from one thread only.
+ */
+public class TimingWheel {
+
+    private record Entry(UUID id, long dueAtMs) {}
+
+    private final long tickMs;
+    private final int slotsPerLevel;
+    private final long[] spans;
+    private final List<List<ArrayDeque<Entry>>> levels = new ArrayList<>();
+    private final Map<UUID, Long> scheduled = new HashMap<>();
+    private final List<Entry> overdue = new ArrayList<>();
+
+    private long currentTick;
+
+    public TimingWheel(long tickMs, int slotsPerLevel, int levelCount, long startMs) {
+        this.tickMs = tickMs;
+        this.slotsPerLevel = slotsPerLevel;
+        this.spans = new long[levelCount];
+        this.currentTick = startMs / tickMs;
+
+        long span = 1;
+        for (int level = 0; level < levelCount; level++) {
+            spans[level] = span;
+            span *= slotsPerLevel;
+
+            List<ArrayDeque<Entry>> slots = new ArrayList<>(slotsPerLevel);
+            for (int i = 0; i < slotsPerLevel; i++) {
+                slots.add(new ArrayDeque<>());
+            }
+            levels.add(slots);
+        }
+    }
+
+    /**
+     * Returns how far ahead the wheel can always hold tasks.
+     */
+    public long horizonMs() {
+        return spans[spans.length - 1] * (slotsPerLevel - 1) * tickMs;
+    }
+
+    /**
+     * Adds a task id with its run time in epoch milliseconds.
+     * <p>
+     * Returns false when the id is already scheduled for the same time, or when
+     * the run time is beyond the horizon of the wheel.
+     */
+    public boolean add(UUID id, long dueAtMs) {
+        Long previous = scheduled.get(id);
+        if (previous != null && previous == dueAtMs) {
+            return false;
+        }
+        long top = spans[spans.length - 1];
+        if ((dueAtMs / tickMs) / top - currentTick / top >= slotsPerLevel) {
+            return false;
+        }
+
+        scheduled.put(id, dueAtMs);
+        place(new Entry(id, dueAtMs));
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to the given time and returns the ids that are due.
+     * <p>
+     * Every tick between the previous call and now is processed, so no slot is
+     * skipped when the calling thread was late.
+     */
+    public List<UUID> advance(long nowMs) {
+        List<UUID> fired = new ArrayList<>();
+        fireOverdue(fired);
+
+        long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            for (int level = spans.length - 1; level >= 1; level--) {
+                if (currentTick % spans[level] == 0) {
+                    ArrayDeque<Entry> slot = slotAt(level, currentTick);
+                    List<Entry> cascaded = new ArrayList<>(slot);
+                    slot.clear();
+                    for (Entry e : cascaded) {
+                        place(e);
+                    }
+                }
+            }
+
+            ArrayDeque<Entry> slot = slotAt(0, currentTick);
+            for (Entry e : slot) {
+                fire(e, fired);
+            }
+            slot.clear();
+            fireOverdue(fired);
+        }
+        return fired;
+    }
+
+    public int size() {
+        return scheduled.size();
+    }
+
+    public boolean isEmpty() {
+        return scheduled.isEmpty();
+    }
+
+    private void place(Entry e) {
+        long tick = e.dueAtMs() / tickMs;
+        if (tick <= currentTick) {
+            overdue.add(e);
+            return;
+        }
+
+        for (int level = 0; level < spans.length; level++) {
+            long bucketDiff = tick / spans[level] - currentTick / spans[level];
+            if (bucketDiff < slotsPerLevel) {
+                slotAt(level, tick).add(e);
+                return;
+            }
+        }
+
+        // Not reachable through add(), which rejects entries beyond the horizon
+        scheduled.remove(e.id(), e.dueAtMs());
+    }
+
+    private ArrayDeque<Entry> slotAt(int level, long tick) {
+        int index = (int) ((tick / spans[level]) % slotsPerLevel);
+        return levels.get(level).get(index);
+    }
+
+    private void fireOverdue(List<UUID> fired) {
+        if (overdue.isEmpty()) {
+            return;
+        }
+        for (Entry e : overdue) {
+            fire(e, fired);
+        }
+        overdue.clear();
+    }
+
+    private void fire(Entry e, List<UUID> fired) {
+        // An entry replaced by a later add() is stale and is dropped here
+        if (scheduled.remove(e.id(), e.dueAtMs())) {
+            fired.add(e.id());
+        }
+    }
+}
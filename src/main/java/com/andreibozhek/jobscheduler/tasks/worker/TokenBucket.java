@@ -0,0 +1,75 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket for rate limits.
+ * <p>
+ * The whole state is one AtomicLong: the time at which the bucket is full
+ * again (fullAt). Taking n tokens moves fullAt forward by n token intervals,
+ * refilling is implicit in the passing time. This is the generic cell rate
+ * algorithm, so there is no refill thread and no lock, only a CAS loop.
+ * <p>
+ * The bucket holds at most capacity tokens, which is the allowed burst.
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final LongSupplier clock;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        this(permitsPerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double permitsPerSecond, int capacity, LongSupplier clock) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and capacity must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.capacityNanos = intervalNanos * capacity;
+        this.clock = clock;
+        this.fullAt = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Returns the number of whole tokens that can be taken now.
+     */
+    public int available() {
+        long now = clock.getAsLong();
+        long used = Math.max(fullAt.get() - now, 0);
+        return (int) ((capacityNanos - used) / intervalNanos);
+    }
+
+    /**
+     * Takes n tokens if they are all available.
+     *
+     * @return false when fewer than n tokens are available, nothing is taken then
+     */
+    public boolean tryTake(int n) {
+        while (true) {
+            long now = clock.getAsLong();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + n * intervalNanos;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns how long it takes until at least one token is available, 0 when
+     * one is available now.
+     */
+    public long nanosUntilAvailable() {
+        long now = clock.getAsLong();
+        long wait = Math.max(fullAt.get(), now) + intervalNanos - capacityNanos - now;
+        return Math.max(wait, 0);
+    }
+}
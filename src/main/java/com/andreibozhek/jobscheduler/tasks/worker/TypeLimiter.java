@@ -0,0 +1,151 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.domain.TypeCapacity;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks per-type limits of one worker.
+ * <p>
+ * Limits come from TaskHandler.maxInFlight(), TaskHandler.permitsPerSecond() and
+ * TaskHandler.clusterPermitsPerSecond(). Before a claim the worker asks for the
+ * capacity of every type; types without free capacity are left out, so the
+ * claim query never selects tasks the worker cannot start. The cluster-wide
+ * in-flight and rate limits are checked by the claim query itself against
+ * shared rows, this class only passes them on. The local token bucket is the
+ * first filter, a node never asks the shared bucket for more than its own rate.
+ * <p>
+ * Counters are atomics and rate limits are lock-free TokenBuckets. capacities()
+ * and onClaimed() are called under the worker claim lock, onFinished() from task
+ * threads.
+ */
+public class TypeLimiter {
+
+    private final Map<String, TypeState> states;
+    private final List<String> unlimitedTypes;
+
+    public TypeLimiter(List<TaskHandler> handlers) {
+        this.states = handlers.stream()
+                .collect(Collectors.toMap(TaskHandler::type, TypeState::new));
+        this.unlimitedTypes = states.values().stream()
+                .filter(s -> s.maxInFlight == 0 && s.rate == null && s.clusterRate == null)
+                .map(s -> s.type)
+                .toList();
+    }
+
+    /**
+     * Returns the claimable capacity of every type with free capacity, each at
+     * most limit.
+     */
+    public List<TypeCapacity> capacities(int limit) {
+        List<TypeCapacity> result = new ArrayList<>(states.size());
+        for (TypeState s : states.values()) {
+            int free = Math.min(limit, s.free());
+            if (free > 0) {
+                result.add(new TypeCapacity(
+                        s.type, free, s.maxInFlight > 0 ? s.maxInFlight : null, s.clusterRate, s.leaseMs));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the types that have no limits at all.
+     * <p>
+     * Tasks of these types can be claimed without looking at capacity, for
+     * example by id when the timing wheel fires.
+     */
+    public List<String> unlimitedTypes() {
+        return unlimitedTypes;
+    }
+
+    /**
+     * Returns true when at least one type has a limit.
+     */
+    public boolean hasLimits() {
+        return states.size() > unlimitedTypes.size();
+    }
+
+    /**
+     * Counts a claimed task against the limits of its type.
+     */
+    public void onClaimed(String type) {
+        TypeState s = states.get(type);
+        if (s == null) {
+            return;
+        }
+        s.running.incrementAndGet();
+        if (s.rate != null) {
+            // Cannot fail: capacities() checked the tokens and only the claim path takes them
+            s.rate.tryTake(1);
+        }
+    }
+
+    /**
+     * Releases the in-flight slot of a finished task.
+     *
+     * @return true when the type was at its in-flight limit, so a claim may now
+     *         find work that was skipped before
+     */
+    public boolean onFinished(String type) {
+        TypeState s = states.get(type);
+        if (s == null) {
+            return false;
+        }
+        int before = s.running.getAndDecrement();
+        return s.maxInFlight > 0 && before >= s.maxInFlight;
+    }
+
+    /**
+     * Returns how long until a rate limited type without tokens gets one again,
+     * or Long.MAX_VALUE when no type waits for tokens.
+     */
+    public long millisUntilNextToken() {
+        long min = Long.MAX_VALUE;
+        for (TypeState s : states.values()) {
+            if (s.rate != null && s.rate.available() == 0) {
+                long ms = TimeUnit.NANOSECONDS.toMillis(s.rate.nanosUntilAvailable()) + 1;
+                min = Math.min(min, ms);
+            }
+        }
+        return min;
+    }
+
+    private static final class TypeState {
+        final String type;
+        final int maxInFlight;
+        final TokenBucket rate;
+        final Double clusterRate;
+        final Long leaseMs;
+        final AtomicInteger running = new AtomicInteger();
+
+        TypeState(TaskHandler handler) {
+            this.type = handler.type();
+            this.maxInFlight = Math.max(handler.maxInFlight(), 0);
+            double permits = handler.permitsPerSecond();
+            this.rate = permits > 0
+                    ? new TokenBucket(permits, (int) Math.max(1, Math.ceil(permits)))
+                    : null;
+            double clusterPermits = handler.clusterPermitsPerSecond();
+            this.clusterRate = clusterPermits > 0 ? clusterPermits : null;
+            this.leaseMs = handler.lease() == null ? null : handler.lease().toMillis();
+        }
+
+        int free() {
+            int free = Integer.MAX_VALUE;
+            if (maxInFlight > 0) {
+                free = maxInFlight - running.get();
+            }
+            if (rate != null) {
+                free = Math.min(free, rate.available());
+            }
+            return free;
+        }
+    }
+}
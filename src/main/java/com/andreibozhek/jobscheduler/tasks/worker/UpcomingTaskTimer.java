@@ -0,0 +1,153 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.domain.UpcomingTask;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires near-future tasks from memory instead of finding them by polling.
+ * <p>
+ * Every worker.wheel.refreshMs the timer loads the ids and run times of PENDING
+ * tasks that become due within worker.wheel.windowMs and adds them to a
+ * TimingWheel. When a slot of the wheel fires, the timer asks TaskWorker to
+ * claim exactly those ids. Database reads therefore follow the number of due
+ * tasks, not the polling frequency, and tasks start within one wheel tick of
+ * their run time.
+ * <p>
+ * Tasks inserted between two refreshes are announced by TaskNotificationListener,
+ * which calls refreshSoon(). Entries in the wheel are only hints: a task that was
+ * canceled or claimed by another worker is simply not claimed when it fires.
+ */
+@Component
+@ConditionalOnExpression("${worker.enabled:true} and ${worker.wheel.enabled:true}")
+public class UpcomingTaskTimer implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(UpcomingTaskTimer.class);
+
+    private static final int SLOTS_PER_LEVEL = 64;
+    private static final int LEVELS = 2;
+
+    private final TaskRepository repo;
+    private final TaskWorker worker;
+    private final WorkerProperties.Wheel props;
+
+    private final Semaphore signals = new Semaphore(0);
+    private volatile boolean refreshRequested;
+    private volatile boolean running;
+    private volatile Thread timerThread;
+
+    public UpcomingTaskTimer(TaskRepository repo, TaskWorker worker, WorkerProperties props) {
+        this.repo = repo;
+        this.worker = worker;
+        this.props = props.wheel();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        timerThread = Thread.ofPlatform()
+                .name("upcoming-task-timer")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = timerThread;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(props.refreshMs());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            timerThread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Asks the timer to run the prefetch query on its next tick.
+     * <p>
+     * Used when a task was inserted with a run time that the last prefetch
+     * could not see yet.
+     */
+    public void refreshSoon() {
+        refreshRequested = true;
+        signals.release();
+    }
+
+    /**
+     * Returns true when a task with this run time is handled by the timer.
+     */
+    public boolean covers(long runAtMs, long nowMs) {
+        return runAtMs > nowMs && runAtMs <= nowMs + props.windowMs();
+    }
+
+    private void run() {
+        TimingWheel wheel = new TimingWheel(props.tickMs(), SLOTS_PER_LEVEL, LEVELS, System.currentTimeMillis());
+        if (wheel.horizonMs() < props.windowMs()) {
+            log.warn("Timing wheel horizon {} ms is shorter than the prefetch window {} ms",
+                    wheel.horizonMs(), props.windowMs());
+        }
+
+        long nextRefreshAt = 0;
+        while (running) {
+            long now = System.currentTimeMillis();
+            try {
+                if (refreshRequested || now >= nextRefreshAt) {
+                    refreshRequested = false;
+                    nextRefreshAt = now + props.refreshMs();
+                    prefetch(wheel);
+                }
+
+                List<UUID> fired = wheel.advance(System.currentTimeMillis());
+                if (!fired.isEmpty()) {
+                    worker.claimFired(fired);
+                }
+            } catch (Exception ex) {
+                log.error("Upcoming task timer cycle failed", ex);
+            }
+
+            // Sleep one tick while tasks are waiting, otherwise until the next refresh
+            long waitMs = wheel.isEmpty()
+                    ? Math.max(nextRefreshAt - System.currentTimeMillis(), props.tickMs())
+                    : props.tickMs();
+            try {
+                signals.tryAcquire(waitMs, TimeUnit.MILLISECONDS);
+                signals.drainPermits();
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Loads upcoming tasks into the wheel, earliest first.
+     * <p>
+     * Tasks that are already in the wheel are returned again by the query and
+     * skipped by TimingWheel.add(), so the limit is the full maxTasks value.
+     */
+    private void prefetch(TimingWheel wheel) {
+        List<UpcomingTask> upcoming = repo.findUpcomingTasks(props.windowMs(), props.maxTasks());
+        for (UpcomingTask t : upcoming) {
+            if (wheel.size() >= props.maxTasks()) {
+                return;
+            }
+            wheel.add(t.id(), t.runAt().toInstant().toEpochMilli());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the claim and execute path of TaskWorker.
+ * <p>
+ * All meters are registered up front, one set per task type, so recording on
+ * the hot path is a map lookup and a primitive update: no tag arrays, meter
+ * lookups or boxing per claim or per task.
+ * <p>
+ * Meters:
+ * - worker.claim.latency (timer, tag trigger=poll|fired): duration of one claim query;
+ * - worker.claim.fill (summary): claimed / requested tasks of one poll claim, 1.0 is a full batch;
+ * - worker.task.duration (timer, tags type and outcome=success|retry|failure):
+ *   handler run time, its count is the number of finished tasks per outcome.
+ */
+class WorkerMetrics {
+
+    private final Timer pollClaims;
+    private final Timer firedClaims;
+    private final DistributionSummary claimFill;
+    private final Map<String, TypeMeters> byType;
+    private final TypeMeters unknownType;
+
+    WorkerMetrics(MeterRegistry registry, Collection<String> types) {
+        this.pollClaims = claimTimer(registry, "poll");
+        this.firedClaims = claimTimer(registry, "fired");
+        this.claimFill = DistributionSummary.builder("worker.claim.fill")
+                .description("Claimed tasks divided by requested tasks of one claim")
+                .register(registry);
+
+        Map<String, TypeMeters> meters = new HashMap<>();
+        for (String type : types) {
+            meters.put(type, new TypeMeters(registry, type));
+        }
+        this.byType = Map.copyOf(meters);
+        this.unknownType = new TypeMeters(registry, "unknown");
+    }
+
+    private static Timer claimTimer(MeterRegistry registry, String trigger) {
+        return Timer.builder("worker.claim.latency")
+                .description("Duration of one claim query")
+                .tag("trigger", trigger)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Records a claim of the claim loop.
+     */
+    void onPollClaim(long nanos, int requested, int claimed) {
+        pollClaims.record(nanos, TimeUnit.NANOSECONDS);
+        claimFill.record((double) claimed / requested);
+    }
+
+    /**
+     * Records a claim of tasks fired by the timing wheel.
+     */
+    void onFiredClaim(long nanos) {
+        firedClaims.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a finished handler run.
+     *
+     * @param outcome DONE, PENDING for a retry or FAILED
+     */
+    void onTaskFinished(String type, TaskStatus outcome, long nanos) {
+        TypeMeters meters = byType.getOrDefault(type, unknownType);
+        Timer timer = switch (outcome) {
+            case DONE -> meters.success;
+            case PENDING -> meters.retry;
+            default -> meters.failure;
+        };
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static final class TypeMeters {
+        final Timer success;
+        final Timer retry;
+        final Timer failure;
+
+        TypeMeters(MeterRegistry registry, String type) {
+            this.success = durationTimer(registry, type, "success");
+            this.retry = durationTimer(registry, type, "retry");
+            this.failure = durationTimer(registry, type, "failure");
+        }
+
+        private static Timer durationTimer(MeterRegistry registry, String type, String outcome) {
+            return Timer.builder("worker.task.duration")
+                    .description("Handler run time of one task")
+                    .tag("type", type)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.handler.RetryPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Worker settings bound from the worker.* properties.
+ * <p>
+ * enabled and listen are also read by conditions on the worker beans,
+ * they are listed here so all worker settings are documented in one place.
+ *
+ * @param enabled           starts the background worker when true
+ * @param listen            wakes the worker on task_created notifications when true
+ * @param fixedDelayMs      longest wait between two worker cycles when no
+ *                          notification or timer wakes the worker
+ * @param batchSize         number of tasks claimed by the first query, later
+ *                          claims are sized by AdaptiveBatchSizer
+ * @param minBatchSize      smallest adaptive batch size
+ * @param maxBatchSize      largest adaptive batch size
+ * @param lockSeconds       lease time given to claimed tasks
+ * @param executor          VIRTUAL runs each task on its own virtual thread,
+ *                          PLATFORM uses a fixed pool of platform threads
+ * @param concurrency       maximum number of tasks this worker runs at the same time
+ * @param shutdownTimeoutMs how long shutdown waits for running tasks to finish
+ * @param wheel             settings of the in-memory timer for near-future tasks
+ * @param completion        settings of the batched result writer
+ * @param reaper            settings of the lease reaper
+ * @param heartbeat         settings of lease renewal for running tasks
+ * @param retry             default retry backoff for handlers without their own RetryPolicy
+ * @param metrics           settings of the queue gauges
+ */
+@ConfigurationProperties(prefix = "worker")
+public record WorkerProperties(
+        @DefaultValue("true")       boolean         enabled,
+        @DefaultValue("true")       boolean         listen,
+        @DefaultValue("5000")       long            fixedDelayMs,
+        @DefaultValue("10")         int             batchSize,
+        @DefaultValue("1")          int             minBatchSize,
+        @DefaultValue("100")        int             maxBatchSize,
+        @DefaultValue("30")         int             lockSeconds,
+        @DefaultValue("VIRTUAL")    ExecutorType    executor,
+        @DefaultValue("16")         int             concurrency,
+        @DefaultValue("30000")      long            shutdownTimeoutMs,
+        @DefaultValue               Wheel           wheel,
+        @DefaultValue               Completion      completion,
+        @DefaultValue               Reaper          reaper,
+        @DefaultValue               Heartbeat       heartbeat,
+        @DefaultValue               Retry           retry,
+        @DefaultValue               Metrics         metrics
+) {
+    /**
+     * Settings of UpcomingTaskTimer.
+     *
+     * @param enabled           prefetches near-future tasks into a timing wheel when true
+     * @param tickMs            length of one wheel tick, this is the scheduling precision
+     * @param windowMs          how far ahead PENDING tasks are prefetched
+     * @param refreshMs         how often the prefetch query runs
+     * @param maxTasks          maximum number of tasks kept in memory
+     */
+    public record Wheel(
+            @DefaultValue("true")       boolean         enabled,
+            @DefaultValue("50")         long            tickMs,
+            @DefaultValue("30000")      long            windowMs,
+            @DefaultValue("5000")       long            refreshMs,
+            @DefaultValue("10000")      int             maxTasks
+    ) {}
+
+    /**
+     * Settings of CompletionBatcher.
+     *
+     * @param flushIntervalMs   longest time a task result waits before it is written
+     * @param maxBatchSize      maximum number of task results written in one transaction
+     */
+    public record Completion(
+            @DefaultValue("100")        long            flushIntervalMs,
+            @DefaultValue("500")        int             maxBatchSize
+    ) {}
+
+    /**
+     * Settings of LeaseReaper.
+     * <p>
+     * intervalMs is read by the schedule of LeaseReaper, it is listed here so
+     * it is documented with the other worker settings.
+     *
+     * @param intervalMs        delay between two reaper runs in the cluster
+     */
+    public record Reaper(
+            @DefaultValue("5000")       long            intervalMs
+    ) {}
+
+    /**
+     * Settings of lease renewal.
+     * <p>
+     * intervalMs is read by the schedule of TaskWorker.renewLeases(), it is
+     * listed here so it is documented with the other worker settings. It must
+     * be shorter than the shortest lease, otherwise leases expire between two
+     * renewals.
+     *
+     * @param intervalMs        delay between two renewals of all running tasks
+     */
+    public record Heartbeat(
+            @DefaultValue("10000")      long            intervalMs
+    ) {}
+
+    /**
+     * Default retry backoff, see RetryPolicy.
+     *
+     * @param baseDelayMs       delay of the first retry before jitter
+     * @param maxDelayMs        upper limit of a retry delay
+     * @param jitter            NONE, FULL or DECORRELATED
+     */
+    public record Retry(
+            @DefaultValue("5000")       long                baseDelayMs,
+            @DefaultValue("600000")     long                maxDelayMs,
+            @DefaultValue("FULL")       RetryPolicy.Jitter  jitter
+    ) {
+        public RetryPolicy toPolicy() {
+            return new RetryPolicy(baseDelayMs, maxDelayMs, jitter, List.of());
+        }
+    }
+
+    /**
+     * Settings of QueueMetrics.
+     * <p>
+     * queueIntervalMs is read by the schedule of QueueMetrics, it is listed
+     * here so it is documented with the other worker settings.
+     *
+     * @param queueIntervalMs   delay between two reads of queue depth and lag
+     */
+    public record Metrics(
+            @DefaultValue("15000")      long            queueIntervalMs
+    ) {}
+
+    public enum ExecutorType {
+        VIRTUAL,
+        PLATFORM
+    }
+}
@@ -0,0 +1,37 @@
+-- Task dependencies ("run B after A succeeds").
+--
+-- A task with unfinished parents is inserted as BLOCKED with pending_deps = number of
+-- edges. When a parent becomes DONE, completeAll decrements pending_deps of its children
+-- in the same transaction and releases children that reach 0 to PENDING. When a parent
+-- fails or is canceled, its BLOCKED descendants are canceled.
+-- Edges are removed with their tasks, e.g. when the archiver moves a finished parent.
+
+ALTER TABLE tasks
+    ADD COLUMN pending_deps INT NOT NULL DEFAULT 0;
+
+CREATE TABLE task_dependencies (
+    parent_id           UUID NOT NULL REFERENCES tasks(id) ON DELETE CASCADE,
+    child_id            UUID NOT NULL REFERENCES tasks(id) ON DELETE CASCADE,
+
+    PRIMARY KEY (parent_id, child_id)
+);
+
+CREATE INDEX idx_task_dependencies_child_id ON task_dependencies(child_id);
+
+-- BLOCKED tasks cannot run yet, so only PENDING inserts wake the workers.
+-- Released children are announced by completeAll on the same channel.
+CREATE OR REPLACE FUNCTION notify_task_created()
+RETURNS TRIGGER AS $$
+DECLARE
+    earliest TIMESTAMPTZ;
+BEGIN
+    SELECT min(run_at) INTO earliest FROM inserted_tasks WHERE status = 'PENDING';
+    IF earliest IS NOT NULL THEN
+        PERFORM pg_notify(
+            'task_created',
+            (extract(epoch FROM earliest) * 1000)::BIGINT::TEXT
+        );
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
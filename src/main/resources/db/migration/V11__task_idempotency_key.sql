@@ -0,0 +1,6 @@
+-- Optional client supplied key that makes POST /tasks safe to retry.
+-- A nullable column without default does not rewrite the table.
+-- The unique index is created by V12, CONCURRENTLY must run in its own migration.
+
+ALTER TABLE tasks
+    ADD COLUMN idempotency_key TEXT;
@@ -0,0 +1,7 @@
+-- One task per idempotency key, the target of INSERT ... ON CONFLICT DO NOTHING.
+-- Only keyed tasks are indexed. A key is free again once its task is archived.
+-- Flyway runs this statement outside a transaction.
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uq_tasks_idempotency_key
+    ON tasks(idempotency_key)
+    WHERE idempotency_key IS NOT NULL;
@@ -0,0 +1,19 @@
+-- Large task payloads, stored compressed outside the hot tasks table.
+-- tasks.payload of such a task only holds a reference {"$payloadRef": "<task id>"},
+-- so claim and list queries read narrow rows. The row is written before its task
+-- and is kept when the task is archived. The archiver deletes rows whose task is
+-- gone once they are older than the archive retention.
+-- data is already compressed by the application, EXTERNAL keeps it out of line
+-- without a second compression by TOAST.
+
+CREATE TABLE task_payloads (
+    task_id     UUID PRIMARY KEY,
+    codec       TEXT NOT NULL,
+    size        INT NOT NULL,
+    data        BYTEA NOT NULL,
+    created_at  TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+ALTER TABLE task_payloads ALTER COLUMN data SET STORAGE EXTERNAL;
+
+CREATE INDEX idx_task_payloads_created_at ON task_payloads(created_at);
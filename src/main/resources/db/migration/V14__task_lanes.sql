@@ -0,0 +1,13 @@
+-- Fair queuing state of the claim, one row per lane (type, priority).
+-- vtime is the virtual finish time of the last task claimed from the lane,
+-- served_at the time of that claim. Both are carried from one claim to the
+-- next, so weighting and rotation work for any batch size, also 1.
+-- Rows are written by claimDueTasks only, there is at most one per lane.
+
+CREATE TABLE task_lanes (
+    type        TEXT NOT NULL,
+    priority    SMALLINT NOT NULL,
+    vtime       DOUBLE PRECISION NOT NULL,
+    served_at   TIMESTAMPTZ,
+    PRIMARY KEY (type, priority)
+);
@@ -0,0 +1,11 @@
+-- Shared token buckets of cluster-wide rate limits, one row per task type.
+-- tokens is the bucket content at refilled_at. The claim statement locks the
+-- row, refills it from the elapsed time, takes one token per claimed task and
+-- writes it back, so all workers draw from the same bucket.
+-- The rate itself comes from the handler with every claim and is not stored.
+
+CREATE TABLE task_rate_limits (
+    type         TEXT PRIMARY KEY,
+    tokens       DOUBLE PRECISION NOT NULL,
+    refilled_at  TIMESTAMPTZ NOT NULL
+);
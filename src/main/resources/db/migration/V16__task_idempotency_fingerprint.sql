@@ -0,0 +1,8 @@
+-- Fingerprint of the request an idempotency key was first used with
+-- (SHA-256 of type, payload, runAt, maxAttempts, priority and dependsOn).
+-- A retry with the key and another fingerprint is rejected instead of
+-- silently returning the first task. Rows stored before have no fingerprint.
+-- A nullable column without default does not rewrite the table.
+
+ALTER TABLE tasks
+    ADD COLUMN idempotency_fingerprint TEXT;
@@ -0,0 +1,29 @@
+-- Wakes up idle workers when new tasks are inserted.
+-- The payload is the earliest run_at of the inserted rows in epoch milliseconds,
+-- so a listener can ignore tasks that are scheduled for later.
+-- One statement-level trigger call sends one notification per INSERT,
+-- and PostgreSQL delivers it only after the transaction commits.
+
+CREATE OR REPLACE FUNCTION notify_task_created()
+RETURNS TRIGGER AS $$
+DECLARE
+    earliest TIMESTAMPTZ;
+BEGIN
+    SELECT min(run_at) INTO earliest FROM inserted_tasks;
+    IF earliest IS NOT NULL THEN
+        PERFORM pg_notify(
+            'task_created',
+            (extract(epoch FROM earliest) * 1000)::BIGINT::TEXT
+        );
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_tasks_notify_created ON tasks;
+
+CREATE TRIGGER trg_tasks_notify_created
+AFTER INSERT ON tasks
+REFERENCING NEW TABLE AS inserted_tasks
+FOR EACH STATEMENT
+EXECUTE FUNCTION notify_task_created();
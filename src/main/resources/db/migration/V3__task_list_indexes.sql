@@ -0,0 +1,10 @@
+-- Indexes for GET /tasks ordered by (created_at DESC, id DESC).
+-- Keyset pages read them as a range starting at the cursor.
+-- CONCURRENTLY keeps inserts running while the indexes are built on a large table;
+-- Flyway runs these statements outside a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_created_at_id
+    ON tasks(created_at DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_status_created_at_id
+    ON tasks(status, created_at DESC, id DESC);
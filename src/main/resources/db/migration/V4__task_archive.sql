@@ -0,0 +1,74 @@
+-- Archive for finished tasks.
+--
+-- tasks stays the hot table: PENDING and RUNNING tasks plus recently finished ones.
+-- TaskArchiver moves DONE/FAILED/CANCELED tasks and their attempts here in small
+-- batches. The archive is partitioned by day of archival, so retention drops whole
+-- partitions instead of deleting rows. Partitions are created by the archiver.
+
+CREATE TABLE tasks_archive (
+    id                  UUID NOT NULL,
+    type                TEXT NOT NULL,
+    payload             JSONB NOT NULL,
+
+    status              TEXT NOT NULL,
+    run_at              TIMESTAMPTZ NOT NULL,
+
+    attempt             INT NOT NULL,
+    max_attempts        INT NOT NULL,
+    error               TEXT,
+
+    locked_by           TEXT,
+    locked_until        TIMESTAMPTZ,
+
+    created_at          TIMESTAMPTZ NOT NULL,
+    updated_at          TIMESTAMPTZ NOT NULL,
+    archived_at         TIMESTAMPTZ NOT NULL,
+
+    PRIMARY KEY (id, archived_at)
+) PARTITION BY RANGE (archived_at);
+
+CREATE INDEX idx_tasks_archive_created_at_id ON tasks_archive(created_at DESC, id DESC);
+CREATE INDEX idx_tasks_archive_status_created_at_id ON tasks_archive(status, created_at DESC, id DESC);
+
+CREATE TABLE task_attempts_archive (
+    id                  BIGINT NOT NULL,
+    task_id             UUID NOT NULL,
+    attempt             INT NOT NULL,
+
+    started_at          TIMESTAMPTZ NOT NULL,
+    finished_at         TIMESTAMPTZ,
+    status              TEXT NOT NULL,
+    error               TEXT,
+    archived_at         TIMESTAMPTZ NOT NULL,
+
+    PRIMARY KEY (id, archived_at)
+) PARTITION BY RANGE (archived_at);
+
+CREATE INDEX idx_task_attempts_archive_task_id_attempt ON task_attempts_archive(task_id, attempt);
+
+-- Finds archive candidates without touching PENDING and RUNNING rows
+CREATE INDEX idx_tasks_finished_updated_at ON tasks(updated_at)
+    WHERE status IN ('DONE', 'FAILED', 'CANCELED');
+
+-- Read side of the API: hot and archived tasks in one relation.
+-- Filters and ORDER BY ... LIMIT are pushed into both branches,
+-- so each side is still read through its own indexes.
+CREATE VIEW tasks_all AS
+    SELECT id, type, payload, status, run_at,
+           attempt, max_attempts, error,
+           locked_by, locked_until,
+           created_at, updated_at
+    FROM tasks
+    UNION ALL
+    SELECT id, type, payload, status, run_at,
+           attempt, max_attempts, error,
+           locked_by, locked_until,
+           created_at, updated_at
+    FROM tasks_archive;
+
+CREATE VIEW task_attempts_all AS
+    SELECT id, task_id, attempt, started_at, finished_at, status, error
+    FROM task_attempts
+    UNION ALL
+    SELECT id, task_id, attempt, started_at, finished_at, status, error
+    FROM task_attempts_archive;
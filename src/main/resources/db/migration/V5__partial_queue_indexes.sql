@@ -0,0 +1,20 @@
+-- Partial indexes for the queue queries.
+-- idx_tasks_status_run_at and idx_tasks_status_until indexed every row, including
+-- DONE/FAILED/CANCELED ones that the claim and the lease reaper never read.
+-- The partial indexes only hold PENDING or RUNNING rows, so they stay small
+-- no matter how much history the table keeps.
+-- CONCURRENTLY keeps the queue running while the indexes change;
+-- Flyway runs these statements outside a transaction.
+
+-- Claim, targeted claim and prefetch: status = 'PENDING' AND run_at <= ...
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_pending_run_at
+    ON tasks(run_at)
+    WHERE status = 'PENDING';
+
+-- Lease reaper: status = 'RUNNING' AND locked_until < now()
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_running_locked_until
+    ON tasks(locked_until)
+    WHERE status = 'RUNNING';
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_tasks_status_run_at;
+DROP INDEX CONCURRENTLY IF EXISTS idx_tasks_status_until;
@@ -0,0 +1,22 @@
+-- Task priority: 0 (lowest, default) .. 9 (highest).
+-- A constant default does not rewrite the table.
+
+ALTER TABLE tasks
+    ADD COLUMN priority SMALLINT NOT NULL DEFAULT 0
+        CONSTRAINT chk_tasks_priority CHECK (priority BETWEEN 0 AND 9);
+
+ALTER TABLE tasks_archive
+    ADD COLUMN priority SMALLINT NOT NULL DEFAULT 0;
+
+CREATE OR REPLACE VIEW tasks_all AS
+    SELECT id, type, payload, status, run_at,
+           attempt, max_attempts, error,
+           locked_by, locked_until,
+           created_at, updated_at, priority
+    FROM tasks
+    UNION ALL
+    SELECT id, type, payload, status, run_at,
+           attempt, max_attempts, error,
+           locked_by, locked_until,
+           created_at, updated_at, priority
+    FROM tasks_archive;
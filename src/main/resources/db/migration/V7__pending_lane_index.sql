@@ -0,0 +1,9 @@
+-- Index of the claim query. Every (type, priority) pair is one lane, and the claim
+-- reads the due head of each lane as a range: type = ? AND priority = ? AND run_at <= now().
+-- Only PENDING rows are indexed, and future tasks sort after the end of the range,
+-- so each lane read stops after the tasks it returns.
+-- Flyway runs this statement outside a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_pending_lane
+    ON tasks(type, priority, run_at)
+    WHERE status = 'PENDING';
@@ -0,0 +1,7 @@
+-- Counts RUNNING tasks per type for the cluster-wide in-flight limit of the claim.
+-- Only RUNNING rows are indexed, so the count reads a handful of entries.
+-- Flyway runs this statement outside a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_running_type
+    ON tasks(type)
+    WHERE status = 'RUNNING';
@@ -0,0 +1,38 @@
+-- Recurring tasks.
+--
+-- A schedule fires either by a cron expression (evaluated in time_zone) or at a fixed
+-- rate. ScheduleMaterializer inserts the tasks of the next fires a short horizon ahead
+-- and moves next_fire_at forward in the same transaction. The task id of a fire is
+-- derived from (schedule id, fire time), so a repeated materialization inserts nothing.
+
+CREATE TABLE task_schedules (
+    id                  UUID PRIMARY KEY,
+    type                TEXT NOT NULL,
+    payload             JSONB NOT NULL,
+
+    cron                TEXT,
+    fixed_rate_ms       BIGINT,
+    time_zone           TEXT NOT NULL DEFAULT 'UTC',
+
+    max_attempts        INT NOT NULL DEFAULT 3,
+    priority            SMALLINT NOT NULL DEFAULT 0,
+    misfire_policy      TEXT NOT NULL DEFAULT 'FIRE_ONCE',  -- FIRE_ALL/FIRE_ONCE/SKIP
+
+    next_fire_at        TIMESTAMPTZ,                        -- NULL when the schedule never fires again
+
+    created_at          TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at          TIMESTAMPTZ NOT NULL DEFAULT now(),
+
+    CONSTRAINT chk_task_schedules_trigger CHECK ((cron IS NULL) <> (fixed_rate_ms IS NULL)),
+    CONSTRAINT chk_task_schedules_fixed_rate CHECK (fixed_rate_ms > 0),
+    CONSTRAINT chk_task_schedules_priority CHECK (priority BETWEEN 0 AND 9)
+);
+
+-- The materializer only reads schedules that fire within the horizon.
+CREATE INDEX idx_task_schedules_next_fire_at ON task_schedules(next_fire_at)
+    WHERE next_fire_at IS NOT NULL;
+
+CREATE TRIGGER trg_task_schedules_updated_at
+BEFORE UPDATE ON task_schedules
+FOR EACH ROW
+EXECUTE FUNCTION set_updated_at();
@@ -39,6 +39,9 @@ function renderTasks(tasks) {
 }
 
 function statusClass(status) {
+    if (status === "BLOCKED") {
+        return "statusBlocked";
+    }
     if (status === "PENDING") {
         return "statusPending";
     }
@@ -35,5 +35,11 @@ public abstract class IntegrationTestBase {
     void cleanDatabase() {
         jdbcTemplate.update("DELETE FROM task_attempts");
         jdbcTemplate.update("DELETE FROM tasks");
+        jdbcTemplate.update("DELETE FROM task_attempts_archive");
+        jdbcTemplate.update("DELETE FROM tasks_archive");
+        jdbcTemplate.update("DELETE FROM task_schedules");
+        jdbcTemplate.update("DELETE FROM task_payloads");
+        jdbcTemplate.update("DELETE FROM task_lanes");
+        jdbcTemplate.update("DELETE FROM task_rate_limits");
     }
 }
\ No newline at end of file
@@ -2,12 +2,15 @@ package com.andreibozhek.jobscheduler.tasks.api;
 
 import com.andreibozhek.jobscheduler.IntegrationTestBase;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.ResponseEntity;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -50,4 +53,167 @@ class TaskControllerTest extends IntegrationTestBase {
         assertThat(response.getBody().get("payload").get("message").asText()).isEqualTo("hello");
         assertThat(response.getBody().get("payload").isObject()).isTrue();
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifies that a batch stores valid items and reports invalid ones.
+     * <p>
+     * What this test checks:
+     * - POST /tasks/batch receives a JSON array with two valid items and one
+     *   item with an unsupported type;
+     * - the response counts two accepted and one rejected item;
+     * - accepted items return their new id, the rejected item returns an error;
+     * - the two valid tasks are stored in the database.
+     */
+    @Test
+    void createBatchStoresValidItemsAndReportsInvalidOnes() {
+        String runAt = OffsetDateTime.now().plusMinutes(1).toString();
+        List<Map<String, Object>> request = List.of(
+                Map.of("type", "echo", "payload", Map.of("message", "first"), "runAt", runAt),
+                Map.of("type", "unknown", "payload", Map.of("message", "second"), "runAt", runAt),
+                Map.of("type", "echo", "payload", Map.of("message", "third"), "runAt", runAt)
+        );
+
+        ResponseEntity<JsonNode> response = restTemplate.postForEntity(
+                "/tasks/batch",
+                request,
+                JsonNode.class
+        );
+
+        JsonNode body = response.getBody();
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(body).isNotNull();
+        assertThat(body.get("accepted").asInt()).isEqualTo(2);
+        assertThat(body.get("rejected").asInt()).isEqualTo(1);
+        assertThat(body.get("items").get(0).get("id").isNull()).isFalse();
+        assertThat(body.get("items").get(1).get("error").asText()).contains("Unsupported task type");
+        assertThat(body.get("items").get(2).get("id").isNull()).isFalse();
+
+        Integer stored = jdbcTemplate.queryForObject("SELECT count(*) FROM tasks", Integer.class);
+        assertThat(stored).isEqualTo(2);
+    }
+
+    /**
+     * Verifies that cursor pages walk the whole list without gaps or repeats.
+     * <p>
+     * What this test checks:
+     * - five tasks are created in one batch, so they share one created_at value
+     *   and only the id orders them;
+     * - the first page is loaded with limit only and returns X-Next-Cursor;
+     * - following the cursor returns pages of two, two and one task;
+     * - the last page has no X-Next-Cursor header;
+     * - every task is returned exactly once;
+     * - an invalid cursor is rejected with HTTP 400.
+     */
+    @Test
+    void listWithCursorReturnsEveryTaskOnce() {
+        String runAt = OffsetDateTime.now().plusMinutes(1).toString();
+        List<Map<String, Object>> request = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            request.add(Map.of("type", "echo", "payload", Map.of("message", "task-" + i), "runAt", runAt));
+        }
+        restTemplate.postForEntity("/tasks/batch", request, JsonNode.class);
+
+        List<String> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String url = "/tasks?limit=2";
+        while (url != null) {
+            ResponseEntity<JsonNode> page = restTemplate.getForEntity(url, JsonNode.class);
+            assertThat(page.getStatusCode().value()).isEqualTo(200);
+            page.getBody().forEach(t -> seen.add(t.get("id").asText()));
+            pageSizes.add(page.getBody().size());
+
+            String next = page.getHeaders().getFirst("X-Next-Cursor");
+            url = next == null ? null : "/tasks?limit=2&cursor=" + next;
+        }
+
+        assertThat(pageSizes).containsExactly(2, 2, 1);
+        assertThat(seen).hasSize(5).doesNotHaveDuplicates();
+
+        ResponseEntity<JsonNode> invalid = restTemplate.getForEntity("/tasks?cursor=not-a-cursor", JsonNode.class);
+        assertThat(invalid.getStatusCode().value()).isEqualTo(400);
+    }
+
+    /**
+     * Verifies that payload=false lists tasks without their payload.
+     * <p>
+     * What this test checks:
+     * - GET /tasks returns the payload by default;
+     * - GET /tasks?payload=false returns the same tasks without a payload field;
+     * - the other fields are still returned;
+     * - a cursor page with payload=false leaves the payload out too.
+     */
+    @Test
+    void listWithoutPayloadLeavesPayloadFieldOut() {
+        String runAt = OffsetDateTime.now().plusMinutes(1).toString();
+        List<Map<String, Object>> request = List.of(
+                Map.of("type", "echo", "payload", Map.of("message", "first"), "runAt", runAt),
+                Map.of("type", "echo", "payload", Map.of("message", "second"), "runAt", runAt)
+        );
+        restTemplate.postForEntity("/tasks/batch", request, JsonNode.class);
+
+        ResponseEntity<JsonNode> full = restTemplate.getForEntity("/tasks", JsonNode.class);
+        assertThat(full.getBody()).hasSize(2);
+        full.getBody().forEach(t -> assertThat(t.get("payload").isObject()).isTrue());
+
+        ResponseEntity<JsonNode> summary = restTemplate.getForEntity("/tasks?payload=false", JsonNode.class);
+        assertThat(summary.getStatusCode().value()).isEqualTo(200);
+        assertThat(summary.getBody()).hasSize(2);
+        summary.getBody().forEach(t -> {
+            assertThat(t.has("payload")).isFalse();
+            assertThat(t.get("id").asText()).isNotEmpty();
+            assertThat(t.get("type").asText()).isEqualTo("echo");
+            assertThat(t.get("status").asText()).isEqualTo("PENDING");
+        });
+
+        ResponseEntity<JsonNode> firstPage = restTemplate.getForEntity("/tasks?limit=1&payload=false", JsonNode.class);
+        String next = firstPage.getHeaders().getFirst("X-Next-Cursor");
+        assertThat(next).isNotNull();
+        ResponseEntity<JsonNode> secondPage = restTemplate.getForEntity(
+                "/tasks?limit=1&payload=false&cursor=" + next, JsonNode.class);
+        assertThat(secondPage.getBody()).hasSize(1);
+        assertThat(secondPage.getBody().get(0).has("payload")).isFalse();
+    }
+
+    /**
+     * Verifies the streaming export in both formats.
+     * <p>
+     * What this test checks:
+     * - GET /tasks/export with status=PENDING skips a canceled task;
+     * - NDJSON has one line per task and keeps the payload a JSON object;
+     * - CSV has a header line and quotes a payload that contains commas and quotes;
+     * - an unknown format is rejected with HTTP 400.
+     */
+    @Test
+    void exportStreamsFilteredTasksAsNdjsonAndCsv() throws Exception {
+        String runAt = OffsetDateTime.now().plusMinutes(1).toString();
+        List<Map<String, Object>> request = List.of(
+                Map.of("type", "echo", "payload", Map.of("message", "a, \"quoted\" b"), "runAt", runAt),
+                Map.of("type", "echo", "payload", Map.of("message", "second"), "runAt", runAt),
+                Map.of("type", "echo", "payload", Map.of("message", "canceled"), "runAt", runAt)
+        );
+        restTemplate.postForEntity("/tasks/batch", request, JsonNode.class);
+        jdbcTemplate.update("UPDATE tasks SET status = 'CANCELED' WHERE payload->>'message' = 'canceled'");
+
+        ResponseEntity<String> ndjson = restTemplate.getForEntity("/tasks/export?status=PENDING", String.class);
+        assertThat(ndjson.getStatusCode().value()).isEqualTo(200);
+        assertThat(ndjson.getHeaders().getContentType().toString()).startsWith("application/x-ndjson");
+        List<String> lines = ndjson.getBody().lines().toList();
+        assertThat(lines).hasSize(2);
+        ObjectMapper mapper = new ObjectMapper();
+        for (String line : lines) {
+            JsonNode task = mapper.readTree(line);
+            assertThat(task.get("status").asText()).isEqualTo("PENDING");
+            assertThat(task.get("payload").isObject()).isTrue();
+        }
+
+        ResponseEntity<String> csv = restTemplate.getForEntity("/tasks/export?status=PENDING&format=csv", String.class);
+        assertThat(csv.getStatusCode().value()).isEqualTo(200);
+        List<String> rows = csv.getBody().lines().toList();
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(0)).startsWith("id,type,status,");
+        assertThat(csv.getBody()).contains("\"{\"\"message\"\": \"\"a, \\\"\"quoted\\\"\" b\"\"}\"");
+
+        ResponseEntity<JsonNode> invalid = restTemplate.getForEntity("/tasks/export?format=xml", JsonNode.class);
+        assertThat(invalid.getStatusCode().value()).isEqualTo(400);
+    }
+}
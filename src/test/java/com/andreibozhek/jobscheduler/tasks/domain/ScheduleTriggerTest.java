@@ -0,0 +1,50 @@
+package com.andreibozhek.jobscheduler.tasks.domain;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduleTriggerTest {
+
+    /**
+     * Verifies that cron expressions are evaluated in the schedule time zone.
+     * <p>
+     * This test checks:
+     * - "every day at 09:00" in Europe/Berlin fires at 07:00 UTC in summer;
+     * - the same schedule fires at 08:00 UTC in winter;
+     * - the next fire is strictly after the given time.
+     */
+    @Test
+    void cronUsesScheduleTimeZone() {
+        ScheduleTrigger trigger = new ScheduleTrigger.Cron(CronExpression.parse("0 0 9 * * *"), ZoneId.of("Europe/Berlin"));
+
+        assertThat(trigger.next(OffsetDateTime.parse("2026-07-01T06:00:00Z")).toInstant())
+                .isEqualTo(OffsetDateTime.parse("2026-07-01T07:00:00Z").toInstant());
+        assertThat(trigger.next(OffsetDateTime.parse("2026-12-01T06:00:00Z")).toInstant())
+                .isEqualTo(OffsetDateTime.parse("2026-12-01T08:00:00Z").toInstant());
+        assertThat(trigger.next(OffsetDateTime.parse("2026-07-01T07:00:00Z")).toInstant())
+                .isEqualTo(OffsetDateTime.parse("2026-07-02T07:00:00Z").toInstant());
+    }
+
+    /**
+     * Verifies fixed rate fires stay on the grid of the anchor.
+     * <p>
+     * This test checks:
+     * - a time before the anchor returns the anchor;
+     * - a time on the grid returns the following grid point;
+     * - a time far after the anchor returns the next grid point in one step.
+     */
+    @Test
+    void fixedRateStaysOnAnchorGrid() {
+        OffsetDateTime anchor = OffsetDateTime.parse("2026-01-01T00:00:00Z");
+        ScheduleTrigger trigger = new ScheduleTrigger.FixedRate(anchor, 60_000);
+
+        assertThat(trigger.next(anchor.minusSeconds(5))).isEqualTo(anchor);
+        assertThat(trigger.next(anchor)).isEqualTo(anchor.plusMinutes(1));
+        assertThat(trigger.next(anchor.plusDays(30).plusSeconds(1))).isEqualTo(anchor.plusDays(30).plusMinutes(1));
+    }
+}
@@ -0,0 +1,95 @@
+package com.andreibozhek.jobscheduler.tasks.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryPolicyTest {
+
+    /**
+     * Verifies the exponential delay without jitter.
+     * <p>
+     * This test checks:
+     * - the first retry waits baseDelayMs;
+     * - every next attempt doubles the delay;
+     * - the delay stops at maxDelayMs, also for very large attempt numbers.
+     */
+    @Test
+    void exponentialDelayIsCapped() {
+        RetryPolicy policy = RetryPolicy.exponential(Duration.ofSeconds(1), Duration.ofSeconds(10), RetryPolicy.Jitter.NONE);
+        UUID id = UUID.randomUUID();
+
+        assertThat(policy.delayMs(id, 1)).isEqualTo(1_000);
+        assertThat(policy.delayMs(id, 2)).isEqualTo(2_000);
+        assertThat(policy.delayMs(id, 4)).isEqualTo(8_000);
+        assertThat(policy.delayMs(id, 5)).isEqualTo(10_000);
+        assertThat(policy.delayMs(id, 1_000)).isEqualTo(10_000);
+    }
+
+    /**
+     * Verifies the bounds of full jitter.
+     * <p>
+     * This test checks:
+     * - every delay is between 0 and the exponential delay of the attempt;
+     * - the delays of many tasks are not all the same.
+     */
+    @Test
+    void fullJitterStaysWithinExponentialDelay() {
+        RetryPolicy policy = RetryPolicy.exponential(Duration.ofSeconds(1), Duration.ofMinutes(1), RetryPolicy.Jitter.FULL);
+
+        long first = policy.delayMs(UUID.randomUUID(), 3);
+        boolean differs = false;
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.delayMs(UUID.randomUUID(), 3);
+            assertThat(delay).isBetween(0L, 4_000L);
+            differs |= delay != first;
+        }
+        assertThat(differs).isTrue();
+    }
+
+    /**
+     * Verifies decorrelated jitter.
+     * <p>
+     * This test checks:
+     * - the delay of a task and attempt is the same on every call, so any node
+     *   computes the same value;
+     * - every delay is between baseDelayMs and maxDelayMs.
+     */
+    @Test
+    void decorrelatedJitterIsStablePerTaskAndBounded() {
+        RetryPolicy policy = RetryPolicy.exponential(Duration.ofMillis(100), Duration.ofSeconds(5), RetryPolicy.Jitter.DECORRELATED);
+
+        for (int i = 0; i < 100; i++) {
+            UUID id = UUID.randomUUID();
+            for (int attempt = 1; attempt <= 10; attempt++) {
+                long delay = policy.delayMs(id, attempt);
+                assertThat(delay).isBetween(100L, 5_000L);
+                assertThat(policy.delayMs(id, attempt)).isEqualTo(delay);
+            }
+        }
+    }
+
+    /**
+     * Verifies the exception filter.
+     * <p>
+     * This test checks:
+     * - a policy without retryOn retries every exception;
+     * - with retryOn only the listed types and their subclasses are retried.
+     */
+    @Test
+    void retryOnLimitsRetriedExceptions() {
+        RetryPolicy all = RetryPolicy.exponential(Duration.ofSeconds(1), Duration.ofSeconds(10), RetryPolicy.Jitter.NONE);
+        RetryPolicy io = all.retryOn(IOException.class, UncheckedIOException.class);
+
+        assertThat(all.shouldRetry(new IllegalStateException())).isTrue();
+        assertThat(io.shouldRetry(new SocketTimeoutException())).isTrue();
+        assertThat(io.shouldRetry(new UncheckedIOException(new IOException()))).isTrue();
+        assertThat(io.shouldRetry(new IllegalStateException())).isFalse();
+    }
+}
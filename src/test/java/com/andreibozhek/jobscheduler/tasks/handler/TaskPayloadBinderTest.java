@@ -0,0 +1,134 @@
+package com.andreibozhek.jobscheduler.tasks.handler;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskPayloadBinderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Verifies payload validation at create time.
+     * <p>
+     * This test checks:
+     * - a payload that binds and meets the constraints is accepted;
+     * - a field of the wrong JSON type is rejected with the task type in the message;
+     * - a violated constraint is rejected with the payload property path;
+     * - payloads of plain handlers are not checked.
+     */
+    @Test
+    void validateBindsPayloadAndChecksConstraints() throws Exception {
+        TaskPayloadBinder binder = binder(new ResizeHandler(), new EchoTaskHandler());
+
+        assertThatCode(() -> binder.validate("resize", objectMapper.readTree("{\"url\":\"s3://a.png\",\"width\":100}")))
+                .doesNotThrowAnyException();
+
+        assertThatThrownBy(() -> binder.validate("resize", objectMapper.readTree("{\"url\":\"s3://a.png\",\"width\":\"wide\"}")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("payload does not match type resize");
+
+        assertThatThrownBy(() -> binder.validate("resize", objectMapper.readTree("{\"url\":\"\",\"width\":0}")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("payload.url")
+                .hasMessageContaining("payload.width");
+
+        assertThatCode(() -> binder.validate("echo", objectMapper.readTree("{\"anything\":[1,2]}")))
+                .doesNotThrowAnyException();
+    }
+
+    /**
+     * Verifies dispatch at execution time.
+     * <p>
+     * This test checks:
+     * - a typed handler gets the stored payload bound to its payload type;
+     * - calling handle(task) on a typed handler directly binds the payload too;
+     * - a stored payload that does not match the type fails with the task type in the message.
+     */
+    @Test
+    void executePassesBoundPayloadToTypedHandler() {
+        ResizeHandler handler = new ResizeHandler();
+        TaskPayloadBinder binder = binder(handler);
+
+        binder.execute(handler, task("resize", "{\"url\":\"s3://b.png\",\"width\":640}"));
+
+        handler.handle(task("resize", "{\"url\":\"s3://c.png\",\"width\":320}"));
+
+        assertThat(handler.received).containsExactly(
+                new Resize("s3://b.png", 640), new Resize("s3://c.png", 320));
+        assertThatThrownBy(() -> handler.handle(task("resize", "{\"width\":\"wide\"}")))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("resize");
+    }
+
+    /**
+     * Verifies that the worker path binds with the application mapper.
+     * <p>
+     * This test checks:
+     * - execute() uses the reader built from the mapper given to the binder, so
+     *   an unknown field allowed by that mapper is accepted;
+     * - a direct handle(task) call uses its own plain mapper and rejects that field.
+     */
+    @Test
+    void executeBindsWithBinderMapper() {
+        ResizeHandler handler = new ResizeHandler();
+        ObjectMapper lenient = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        TaskPayloadBinder binder = new TaskPayloadBinder(
+                List.of(handler), lenient, Validation.buildDefaultValidatorFactory().getValidator());
+        String payload = "{\"url\":\"s3://d.png\",\"width\":10,\"extra\":true}";
+
+        binder.execute(handler, task("resize", payload));
+
+        assertThat(handler.received).containsExactly(new Resize("s3://d.png", 10));
+        assertThatThrownBy(() -> handler.handle(task("resize", payload)))
+                .isInstanceOf(UncheckedIOException.class);
+    }
+
+    private TaskPayloadBinder binder(TaskHandler... handlers) {
+        return new TaskPayloadBinder(
+                List.of(handlers), objectMapper, Validation.buildDefaultValidatorFactory().getValidator());
+    }
+
+    private static Task task(String type, String payloadJson) {
+        OffsetDateTime now = OffsetDateTime.now();
+        return new Task(UUID.randomUUID(), type, payloadJson, TaskStatus.RUNNING, now,
+                1, 3, null, "worker-1", now.plusSeconds(30), now, now, 0);
+    }
+
+    record Resize(@NotBlank String url, @Positive int width) {}
+
+    static class ResizeHandler implements TypedTaskHandler<Resize> {
+        final List<Resize> received = new ArrayList<>();
+
+        @Override
+        public String type() {
+            return "resize";
+        }
+
+        @Override
+        public Class<Resize> payloadType() {
+            return Resize.class;
+        }
+
+        @Override
+        public void handle(Task task, Resize payload) {
+            received.add(payload);
+        }
+    }
+}
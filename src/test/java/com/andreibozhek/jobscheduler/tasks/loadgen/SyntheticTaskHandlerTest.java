@@ -0,0 +1,120 @@
+package com.andreibozhek.jobscheduler.tasks.loadgen;
+
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SyntheticTaskHandlerTest {
+
+    /**
+     * Verifies the latencies recorded by a successful run.
+     * <p>
+     * This test checks:
+     * - schedule-to-start and end-to-end are recorded for a measured task;
+     * - end-to-end starts at submittedAtMicros of the payload;
+     * - a warmup task is counted as succeeded but not recorded.
+     */
+    @Test
+    void successRecordsLatenciesOfMeasuredTasksOnly() {
+        LoadGenStats stats = new LoadGenStats();
+        SyntheticTaskHandler handler = handler(stats, 0);
+        long submittedAt = SyntheticTaskHandler.epochMicros(Instant.now().minusSeconds(2));
+
+        handler.handle(task(1, 3), new SyntheticPayload(submittedAt, true, ""));
+        handler.handle(task(1, 3), new SyntheticPayload(submittedAt, false, ""));
+
+        assertThat(stats.succeeded.sum()).isEqualTo(2);
+        assertThat(stats.scheduleToStart.getIntervalHistogram().getTotalCount()).isEqualTo(1);
+        var endToEnd = stats.endToEnd.getIntervalHistogram();
+        assertThat(endToEnd.getTotalCount()).isEqualTo(1);
+        assertThat(endToEnd.getMaxValue()).isGreaterThanOrEqualTo(2_000_000L);
+    }
+
+    /**
+     * Verifies synthetic failures.
+     * <p>
+     * This test checks:
+     * - with failureRate 1 every run throws;
+     * - only a failure of the last attempt counts as failed finally.
+     */
+    @Test
+    void failuresAreCountedAsFinalOnLastAttempt() {
+        LoadGenStats stats = new LoadGenStats();
+        SyntheticTaskHandler handler = handler(stats, 1);
+        long submittedAt = SyntheticTaskHandler.epochMicros(Instant.now());
+
+        SyntheticPayload payload = new SyntheticPayload(submittedAt, true, "");
+        assertThatThrownBy(() -> handler.handle(task(1, 2), payload))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> handler.handle(task(2, 2), payload))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(stats.failedAttempts.sum()).isEqualTo(2);
+        assertThat(stats.failedFinally.sum()).isEqualTo(1);
+        assertThat(stats.finished()).isEqualTo(1);
+    }
+
+    /**
+     * Verifies the log-normal execution time.
+     * <p>
+     * This test checks:
+     * - about half of the samples are at or below the median;
+     * - about 1% of the samples are above the configured p99.
+     */
+    @Test
+    void latencyFollowsConfiguredMedianAndP99() {
+        SyntheticTaskHandler handler = new SyntheticTaskHandler(properties(100, 1_000, 0), new LoadGenStats());
+
+        int samples = 100_000;
+        int atOrBelowMedian = 0;
+        int aboveP99 = 0;
+        for (int i = 0; i < samples; i++) {
+            long ms = handler.sampleLatencyMs();
+            if (ms <= 100) {
+                atOrBelowMedian++;
+            }
+            if (ms > 1_000) {
+                aboveP99++;
+            }
+        }
+
+        assertThat(atOrBelowMedian / (double) samples).isBetween(0.48, 0.52);
+        assertThat(aboveP99 / (double) samples).isBetween(0.005, 0.015);
+    }
+
+    private static SyntheticTaskHandler handler(LoadGenStats stats, double failureRate) {
+        return new SyntheticTaskHandler(properties(0, 0, failureRate), stats);
+    }
+
+    private static LoadGenProperties properties(double medianMs, double p99Ms, double failureRate) {
+        return new LoadGenProperties(100, 0, 1, 1, 3, 0, "build/loadgen", false,
+                new LoadGenProperties.Handler(medianMs, p99Ms, failureRate));
+    }
+
+    private static Task task(int attempt, int maxAttempts) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        return new Task(
+                UUID.randomUUID(),
+                "synthetic",
+                "{}",
+                TaskStatus.RUNNING,
+                now.minusSeconds(1),
+                attempt,
+                maxAttempts,
+                null,
+                "worker-1",
+                now.plusSeconds(30),
+                now,
+                now,
+                0
+        );
+    }
+}
@@ -0,0 +1,108 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import com.andreibozhek.jobscheduler.IntegrationTestBase;
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskCompletion;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskArchiveRepositoryTest extends IntegrationTestBase {
+
+    @Autowired
+    TaskRepository repo;
+
+    @Autowired
+    TaskArchiveRepository archive;
+
+    /**
+     * Verifies that finished tasks move to the archive and stay readable.
+     * <p>
+     * This test checks:
+     * - one task is finished with an attempt, another task is still PENDING;
+     * - archiveFinishedTasks(...) with no grace period moves one task;
+     * - the hot tasks and task_attempts tables keep only the PENDING task;
+     * - findByID() still returns the archived task with its status;
+     * - listAttempts() still returns the archived attempt.
+     */
+    @Test
+    void archiveFinishedTasksMovesOnlyFinishedTasks() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Task doneTask = task(TaskStatus.RUNNING, now);
+        Task pendingTask = task(TaskStatus.PENDING, now);
+        repo.insert(doneTask);
+        repo.insert(pendingTask);
+        repo.completeAll(List.of(
+                new TaskCompletion(doneTask.id(), "worker-test", 1, TaskStatus.DONE, null, 0, now, now)
+        ));
+
+        archive.ensurePartitions(LocalDate.now(ZoneOffset.UTC), 1);
+        int archived = archive.archiveFinishedTasks(0, 100);
+
+        assertThat(archived).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM tasks", UUID.class))
+                .containsExactly(pendingTask.id());
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM task_attempts", Integer.class))
+                .isZero();
+        assertThat(repo.findByID(doneTask.id()))
+                .hasValueSatisfying(t -> assertThat(t.status()).isEqualTo(TaskStatus.DONE));
+        assertThat(repo.listAttempts(doneTask.id())).hasSize(1);
+    }
+
+    /**
+     * Verifies that retention drops only old partitions.
+     * <p>
+     * This test checks:
+     * - partitions for four days up to today exist in both archive tables;
+     * - dropPartitionsBefore(yesterday) drops the two oldest days of both tables;
+     * - partitions of yesterday and today are kept.
+     */
+    @Test
+    void dropPartitionsBeforeDropsOnlyOldPartitions() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        archive.ensurePartitions(today.minusDays(3), 4);
+
+        List<String> dropped = archive.dropPartitionsBefore(today.minusDays(1));
+
+        assertThat(dropped).contains(
+                "tasks_archive_p" + day(today.minusDays(3)),
+                "tasks_archive_p" + day(today.minusDays(2)),
+                "task_attempts_archive_p" + day(today.minusDays(3)),
+                "task_attempts_archive_p" + day(today.minusDays(2))
+        );
+        assertThat(archive.listPartitions(TaskArchiveRepository.TASKS_ARCHIVE)).contains(
+                "tasks_archive_p" + day(today.minusDays(1)),
+                "tasks_archive_p" + day(today)
+        );
+    }
+
+    private static Task task(TaskStatus status, OffsetDateTime now) {
+        return new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"hello\"}",
+                status,
+                now.minusMinutes(1),
+                status == TaskStatus.RUNNING ? 1 : 0,
+                3,
+                null,
+                status == TaskStatus.RUNNING ? "worker-test" : null,
+                status == TaskStatus.RUNNING ? now.plusMinutes(1) : null,
+                now,
+                now,
+                0
+        );
+    }
+
+    private static String day(LocalDate date) {
+        return date.toString().replace("-", "");
+    }
+}
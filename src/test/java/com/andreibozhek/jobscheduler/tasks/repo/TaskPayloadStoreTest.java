@@ -0,0 +1,104 @@
+package com.andreibozhek.jobscheduler.tasks.repo;
+
+import com.andreibozhek.jobscheduler.IntegrationTestBase;
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskPayloadStoreTest extends IntegrationTestBase {
+
+    @Autowired
+    TaskPayloadStore payloadStore;
+
+    @Autowired
+    TaskRepository repo;
+
+    @Autowired
+    TaskArchiveRepository archive;
+
+    /**
+     * Verifies offloading and loading of payloads.
+     * <p>
+     * This test checks:
+     * - a small payload is returned unchanged and nothing is written to task_payloads;
+     * - a large payload with multi-byte characters is replaced by the reference;
+     * - resolve() and resolveAll() return the original payload;
+     * - resolveAll() keeps inline tasks and the order of the list;
+     * - a reference without a payload fails resolve() but is kept by resolveAll().
+     */
+    @Test
+    void offloadStoresLargePayloadsAndResolveLoadsThem() {
+        Task small = task("{\"message\": \"hello\"}");
+        Task large = task("{\"message\": \"" + "gr\u00fc\u00dfe ".repeat(5_000) + "\"}");
+
+        assertThat(payloadStore.offload(small)).isSameAs(small);
+
+        Task stored = payloadStore.offload(large);
+        assertThat(TaskPayloadStore.isReference(stored.payloadJson())).isTrue();
+        repo.insert(stored);
+        Task loaded = repo.findByID(large.id()).orElseThrow();
+        assertThat(loaded.payloadJson()).isEqualTo(TaskPayloadStore.reference(large.id()));
+
+        assertThat(payloadStore.resolve(loaded).payloadJson()).isEqualTo(large.payloadJson());
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM task_payloads", Integer.class)).isEqualTo(1);
+
+        Task other = task("{}");
+        Task dangling = other.withPayloadJson(TaskPayloadStore.reference(other.id()));
+        List<Task> resolved = payloadStore.resolveAll(List.of(small, loaded, dangling));
+        assertThat(resolved).extracting(Task::payloadJson)
+                .containsExactly(small.payloadJson(), large.payloadJson(), dangling.payloadJson());
+
+        assertThatThrownBy(() -> payloadStore.resolve(dangling))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(dangling.id().toString());
+    }
+
+    /**
+     * Verifies cleanup of payloads whose task is gone.
+     * <p>
+     * This test checks:
+     * - an old payload of a task in tasks is kept;
+     * - an old payload of a task in tasks_archive is kept;
+     * - an old payload without a task is deleted;
+     * - a recent payload without a task is kept, its task may still be inserted.
+     */
+    @Test
+    void deleteOrphansKeepsPayloadsOfHotAndArchivedTasks() {
+        Task hot = offloadedTask();
+        repo.insert(hot);
+        Task archived = offloadedTask();
+        repo.insert(archived.withStatus(TaskStatus.DONE));
+        archive.ensurePartitions(LocalDate.now(ZoneOffset.UTC), 1);
+        assertThat(archive.archiveFinishedTasks(0, 100)).isEqualTo(1);
+        offloadedTask();
+        Task recentOrphan = offloadedTask();
+        jdbcTemplate.update("UPDATE task_payloads SET created_at = now() - interval '40 days' WHERE task_id <> ?",
+                recentOrphan.id());
+
+        int deleted = payloadStore.deleteOrphans(OffsetDateTime.now().minusDays(30), 100);
+
+        assertThat(deleted).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("SELECT task_id FROM task_payloads", UUID.class))
+                .containsExactlyInAnyOrder(hot.id(), archived.id(), recentOrphan.id());
+    }
+
+    private Task offloadedTask() {
+        return payloadStore.offload(task("{\"message\": \"" + "x".repeat(10_000) + "\"}"));
+    }
+
+    private static Task task(String payloadJson) {
+        OffsetDateTime now = OffsetDateTime.now();
+        return new Task(UUID.randomUUID(), "echo", payloadJson, TaskStatus.PENDING, now.plusMinutes(5),
+                0, 3, null, null, null, now, now, 0);
+    }
+}
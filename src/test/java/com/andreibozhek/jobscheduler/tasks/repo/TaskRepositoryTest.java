@@ -1,16 +1,29 @@
 package com.andreibozhek.jobscheduler.tasks.repo;
 
 import com.andreibozhek.jobscheduler.IntegrationTestBase;
+import com.andreibozhek.jobscheduler.tasks.domain.QueueStats;
 import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskCompletion;
 import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import com.andreibozhek.jobscheduler.tasks.domain.TypeCapacity;
+import com.andreibozhek.jobscheduler.tasks.domain.UpcomingTask;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskHandler;
+import com.andreibozhek.jobscheduler.tasks.worker.TypeLimiter;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 class TaskRepositoryTest extends IntegrationTestBase {
 
@@ -46,7 +59,8 @@ class TaskRepositoryTest extends IntegrationTestBase {
                 "worker-old",
                 now.minusMinutes(1),
                 now,
-                now
+                now,
+                0
         );
 
         repo.insert(task);
@@ -93,7 +107,8 @@ class TaskRepositoryTest extends IntegrationTestBase {
                 "worker-active",
                 now.plusMinutes(1),
                 now,
-                now
+                now,
+                0
         );
 
         repo.insert(task);
@@ -138,12 +153,13 @@ class TaskRepositoryTest extends IntegrationTestBase {
                 null,
                 null,
                 now,
-                now
+                now,
+                0
         );
 
         repo.insert(task);
 
-        List<Task> claimed = repo.claimDueTasks("worker-test", 10, 30);
+        List<Task> claimed = repo.claimDueTasks("worker-test", List.of("echo"), 10, 30);
 
         Task updated = repo.findByID(taskId).orElseThrow();
 
@@ -183,12 +199,13 @@ class TaskRepositoryTest extends IntegrationTestBase {
                 null,
                 null,
                 now,
-                now
+                now,
+                0
         );
 
         repo.insert(task);
 
-        List<Task> claimed = repo.claimDueTasks("worker-test", 10, 30);
+        List<Task> claimed = repo.claimDueTasks("worker-test", List.of("echo"), 10, 30);
 
         Task updated = repo.findByID(taskId).orElseThrow();
 
@@ -225,7 +242,8 @@ class TaskRepositoryTest extends IntegrationTestBase {
                 null,
                 null,
                 now,
-                now
+                now,
+                0
         );
 
         Task secondTask = new Task(
@@ -240,13 +258,14 @@ class TaskRepositoryTest extends IntegrationTestBase {
                 null,
                 null,
                 now,
-                now
+                now,
+                0
         );
 
         repo.insert(firstTask);
         repo.insert(secondTask);
 
-        List<Task> claimed = repo.claimDueTasks("worker-test", 1, 30);
+        List<Task> claimed = repo.claimDueTasks("worker-test", List.of("echo"), 1, 30);
 
         Task updatedFirstTask = repo.findByID(firstTask.id()).orElseThrow();
         Task updatedSecondTask = repo.findByID(secondTask.id()).orElseThrow();
@@ -264,4 +283,748 @@ class TaskRepositoryTest extends IntegrationTestBase {
         assertThat(runningTasks).isEqualTo(1);
         assertThat(pendingTasks).isEqualTo(1);
     }
+
+    /**
+     * Verifies that a worker only releases tasks it still owns.
+     * <p>
+     * This test checks:
+     * - two tasks are RUNNING, one locked by this worker and one by another worker;
+     * - releaseClaimedTasks(...) is called with both ids;
+     * - only the task of this worker is updated and becomes PENDING;
+     * - the lock fields of the released task are cleared;
+     * - the task of the other worker stays RUNNING.
+     */
+    @Test
+    void releaseClaimedTasksReturnsOnlyOwnRunningTasksToPending() {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        Task ownTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"own\"}",
+                TaskStatus.RUNNING,
+                now.minusMinutes(1),
+                1,
+                3,
+                null,
+                "worker-test",
+                now.plusMinutes(1),
+                now,
+                now,
+                0
+        );
+
+        Task otherTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"other\"}",
+                TaskStatus.RUNNING,
+                now.minusMinutes(1),
+                1,
+                3,
+                null,
+                "worker-other",
+                now.plusMinutes(1),
+                now,
+                now,
+                0
+        );
+
+        repo.insert(ownTask);
+        repo.insert(otherTask);
+
+        int released = repo.releaseClaimedTasks("worker-test", List.of(ownTask.id(), otherTask.id()));
+
+        Task updatedOwnTask = repo.findByID(ownTask.id()).orElseThrow();
+        Task updatedOtherTask = repo.findByID(otherTask.id()).orElseThrow();
+
+        assertThat(released).isEqualTo(1);
+        assertThat(updatedOwnTask.status()).isEqualTo(TaskStatus.PENDING);
+        assertThat(updatedOwnTask.lockedBy()).isNull();
+        assertThat(updatedOwnTask.lockedUntil()).isNull();
+        assertThat(updatedOtherTask.status()).isEqualTo(TaskStatus.RUNNING);
+        assertThat(updatedOtherTask.lockedBy()).isEqualTo("worker-other");
+    }
+
+    /**
+     * Verifies that a targeted claim only takes the requested due task.
+     * <p>
+     * This test checks:
+     * - two tasks are PENDING and due;
+     * - claimTasksByIds(...) is called with the id of the first task only;
+     * - only the first task is returned and becomes RUNNING;
+     * - the second task stays PENDING.
+     */
+    @Test
+    void claimTasksByIdsClaimsOnlyRequestedTasks() {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        Task requestedTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"requested\"}",
+                TaskStatus.PENDING,
+                now.minusSeconds(1),
+                0,
+                3,
+                null,
+                null,
+                null,
+                now,
+                now,
+                0
+        );
+
+        Task otherTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"other\"}",
+                TaskStatus.PENDING,
+                now.minusSeconds(1),
+                0,
+                3,
+                null,
+                null,
+                null,
+                now,
+                now,
+                0
+        );
+
+        repo.insert(requestedTask);
+        repo.insert(otherTask);
+
+        List<Task> claimed = repo.claimTasksByIds("worker-test", List.of(requestedTask.id()), Map.of("echo", 30_000L), 50);
+
+        Task updatedOtherTask = repo.findByID(otherTask.id()).orElseThrow();
+
+        assertThat(claimed).hasSize(1);
+        assertThat(claimed.getFirst().id()).isEqualTo(requestedTask.id());
+        assertThat(claimed.getFirst().status()).isEqualTo(TaskStatus.RUNNING);
+        assertThat(claimed.getFirst().lockedBy()).isEqualTo("worker-test");
+        assertThat(updatedOtherTask.status()).isEqualTo(TaskStatus.PENDING);
+    }
+
+    /**
+     * Verifies that only tasks inside the prefetch window are listed.
+     * <p>
+     * This test checks:
+     * - one PENDING task is due in 10 seconds, one in 10 minutes;
+     * - findUpcomingTasks(...) with a 30 second window returns only the first one.
+     */
+    @Test
+    void findUpcomingTasksReturnsTasksInsideWindow() {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        Task soonTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"soon\"}",
+                TaskStatus.PENDING,
+                now.plusSeconds(10),
+                0,
+                3,
+                null,
+                null,
+                null,
+                now,
+                now,
+                0
+        );
+
+        Task laterTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"later\"}",
+                TaskStatus.PENDING,
+                now.plusMinutes(10),
+                0,
+                3,
+                null,
+                null,
+                null,
+                now,
+                now,
+                0
+        );
+
+        repo.insert(soonTask);
+        repo.insert(laterTask);
+
+        List<UpcomingTask> upcoming = repo.findUpcomingTasks(30_000, 100);
+
+        assertThat(upcoming).extracting(UpcomingTask::id).containsExactly(soonTask.id());
+    }
+
+    /**
+     * Verifies that a batch of results updates tasks and records attempts.
+     * <p>
+     * This test checks:
+     * - two tasks are RUNNING;
+     * - completeAll(...) receives a success for the first and a retry for the second;
+     * - the first task becomes DONE and its lock is cleared;
+     * - the second task goes back to PENDING with its error and a later run time;
+     * - one finished attempt row is stored for each task.
+     */
+    @Test
+    void completeAllWritesTaskResultsAndAttempts() {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        Task doneTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"done\"}",
+                TaskStatus.RUNNING,
+                now.minusMinutes(1),
+                1,
+                3,
+                null,
+                "worker-test",
+                now.plusMinutes(1),
+                now,
+                now,
+                0
+        );
+
+        Task retryTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"retry\"}",
+                TaskStatus.RUNNING,
+                now.minusMinutes(1),
+                1,
+                3,
+                null,
+                "worker-test",
+                now.plusMinutes(1),
+                now,
+                now,
+                0
+        );
+
+        repo.insert(doneTask);
+        repo.insert(retryTask);
+
+        repo.completeAll(List.of(
+                new TaskCompletion(doneTask.id(), "worker-test", 1, TaskStatus.DONE, null, 0, now, now),
+                new TaskCompletion(retryTask.id(), "worker-test", 1, TaskStatus.PENDING, "boom", 5000, now, now)
+        ));
+
+        Task updatedDoneTask = repo.findByID(doneTask.id()).orElseThrow();
+        Task updatedRetryTask = repo.findByID(retryTask.id()).orElseThrow();
+
+        assertThat(updatedDoneTask.status()).isEqualTo(TaskStatus.DONE);
+        assertThat(updatedDoneTask.lockedBy()).isNull();
+        assertThat(updatedRetryTask.status()).isEqualTo(TaskStatus.PENDING);
+        assertThat(updatedRetryTask.error()).isEqualTo("boom");
+        assertThat(updatedRetryTask.runAt()).isAfter(now);
+        assertThat(repo.listAttempts(doneTask.id()))
+                .singleElement()
+                .satisfies(a -> assertThat(a.status()).isEqualTo("SUCCESS"));
+        assertThat(repo.listAttempts(retryTask.id()))
+                .singleElement()
+                .satisfies(a -> assertThat(a.status()).isEqualTo("FAILED"));
+    }
+
+    /**
+     * Verifies that a result from a lost lease does not overwrite a newer attempt.
+     * <p>
+     * This test checks:
+     * - the task is RUNNING on attempt 2, claimed by worker-new;
+     * - completeAll(...) receives a result of attempt 1 from worker-old;
+     * - no result is applied;
+     * - the task stays RUNNING and locked by worker-new;
+     * - no attempt row is written for the stale result.
+     */
+    @Test
+    void completeAllIgnoresResultOfLostLease() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Task task = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"hello\"}",
+                TaskStatus.RUNNING,
+                now.minusMinutes(1),
+                2,
+                3,
+                null,
+                "worker-new",
+                now.plusMinutes(1),
+                now,
+                now,
+                0
+        );
+        repo.insert(task);
+
+        int applied = repo.completeAll(List.of(
+                new TaskCompletion(task.id(), "worker-old", 1, TaskStatus.DONE, null, 0, now, now)
+        ));
+
+        Task updated = repo.findByID(task.id()).orElseThrow();
+
+        assertThat(applied).isZero();
+        assertThat(updated.status()).isEqualTo(TaskStatus.RUNNING);
+        assertThat(updated.lockedBy()).isEqualTo("worker-new");
+        assertThat(repo.listAttempts(task.id())).isEmpty();
+    }
+
+    /**
+     * Verifies that lease renewal only extends this worker's running tasks.
+     * <p>
+     * This test checks:
+     * - one RUNNING task is locked by worker-a, another by worker-b;
+     * - renewLeases("worker-a", ...) receives both ids with a 10 minute lease;
+     * - only the task of worker-a is returned as renewed;
+     * - its locked_until moves about 10 minutes into the future;
+     * - the task of worker-b keeps its old locked_until.
+     */
+    @Test
+    void renewLeasesExtendsOnlyOwnRunningTasks() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Task ownTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"own\"}",
+                TaskStatus.RUNNING,
+                now.minusMinutes(1),
+                1,
+                3,
+                null,
+                "worker-a",
+                now.plusSeconds(5),
+                now,
+                now,
+                0
+        );
+        Task otherTask = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"other\"}",
+                TaskStatus.RUNNING,
+                now.minusMinutes(1),
+                1,
+                3,
+                null,
+                "worker-b",
+                now.plusSeconds(5),
+                now,
+                now,
+                0
+        );
+        repo.insert(ownTask);
+        repo.insert(otherTask);
+
+        List<UUID> renewed = repo.renewLeases("worker-a", Map.of(
+                ownTask.id(), 600_000L,
+                otherTask.id(), 600_000L
+        ));
+
+        assertThat(renewed).containsExactly(ownTask.id());
+        assertThat(repo.findByID(ownTask.id()).orElseThrow().lockedUntil())
+                .isAfter(now.plusMinutes(9));
+        assertThat(repo.findByID(otherTask.id()).orElseThrow().lockedUntil())
+                .isBefore(now.plusMinutes(1));
+    }
+
+    /**
+     * Verifies that a flood of one type does not starve another type.
+     * <p>
+     * This test checks:
+     * - five due "echo" tasks are older than one due "report" task;
+     * - claimDueTasks(...) for both types with batch size 2 is called;
+     * - one task of each type is claimed, although ordering by run_at alone
+     *   would return two "echo" tasks.
+     */
+    @Test
+    void claimDueTasksSharesBatchAcrossTypes() {
+        OffsetDateTime now = OffsetDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            repo.insert(pendingTask("echo", 0, now.minusMinutes(10 - i)));
+        }
+        Task reportTask = pendingTask("report", 0, now.minusMinutes(1));
+        repo.insert(reportTask);
+
+        List<Task> claimed = repo.claimDueTasks("worker-test", List.of("echo", "report"), 2, 30);
+
+        assertThat(claimed).extracting(Task::type).containsExactlyInAnyOrder("echo", "report");
+    }
+
+    /**
+     * Verifies that priorities are weighted but low priority is not starved.
+     * <p>
+     * This test checks:
+     * - three due tasks have priority 9 and three have priority 0;
+     * - claimDueTasks(...) with batch size 4 is called;
+     * - all three priority 9 tasks are claimed;
+     * - one priority 0 task is claimed in the same batch.
+     */
+    @Test
+    void claimDueTasksWeightsPrioritiesWithoutStarvation() {
+        OffsetDateTime now = OffsetDateTime.now();
+        for (int i = 0; i < 3; i++) {
+            repo.insert(pendingTask("echo", 0, now.minusMinutes(10 - i)));
+            repo.insert(pendingTask("echo", 9, now.minusMinutes(5 - i)));
+        }
+
+        List<Task> claimed = repo.claimDueTasks("worker-test", List.of("echo"), 4, 30);
+
+        assertThat(claimed).extracting(Task::priority).containsExactlyInAnyOrder(9, 9, 9, 0);
+    }
+
+    /**
+     * Verifies that claimed tasks get the lease of their handler.
+     * <p>
+     * This test checks:
+     * - the "echo" handler has a lease of 2 seconds, the worker default is 300 seconds;
+     * - claimDueTasks(...) with the capacities of TypeLimiter sets locked_until about 2 seconds ahead;
+     * - claimTasksByIds(...) with the lease of the type does the same;
+     * - a type without its own lease still gets lockSeconds.
+     */
+    @Test
+    void claimsUseTheLeaseOfTheHandler() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Task due = pendingTask("echo", 0, now.minusMinutes(1));
+        Task fired = pendingTask("echo", 0, now.minusMinutes(1));
+        Task report = pendingTask("report", 0, now.minusMinutes(1));
+        repo.insert(due);
+        repo.insert(report);
+        TypeLimiter limiter = new TypeLimiter(List.of(new ShortLeaseHandler()));
+
+        List<Task> claimed = repo.claimDueTasks("worker-test", limiter.capacities(1), 1, 300);
+        repo.insert(fired);
+        List<Task> claimedById = repo.claimTasksByIds(
+                "worker-test", List.of(fired.id()), Map.of("echo", 2_000L), 50);
+        List<Task> claimedDefault = repo.claimDueTasks("worker-test", List.of("report"), 1, 300);
+
+        assertThat(claimed).extracting(Task::id).containsExactly(due.id());
+        assertThat(claimed.get(0).lockedUntil()).isBetween(now.plusSeconds(1), now.plusSeconds(10));
+        assertThat(claimedById).extracting(Task::id).containsExactly(fired.id());
+        assertThat(claimedById.get(0).lockedUntil()).isBetween(now.plusSeconds(1), now.plusSeconds(10));
+        assertThat(claimedDefault.get(0).lockedUntil()).isAfter(now.plusSeconds(290));
+    }
+
+    /**
+     * Verifies that two workers share one cluster-wide rate limit.
+     * <p>
+     * This test checks:
+     * - ten "echo" tasks are due and the type allows 2 starts per second in the cluster;
+     * - the first worker claims 2 tasks, the full bucket, although it asks for 10;
+     * - a second worker right after it claims nothing, the bucket is shared;
+     * - one second later the second worker claims 2 tasks again.
+     */
+    @Test
+    void claimDueTasksSharesClusterRateLimitBetweenWorkers() {
+        OffsetDateTime now = OffsetDateTime.now();
+        for (int i = 0; i < 10; i++) {
+            repo.insert(pendingTask("echo", 0, now.minusMinutes(10 - i)));
+        }
+        List<TypeCapacity> capacity = List.of(new TypeCapacity("echo", 10, null, 2.0, null));
+
+        List<Task> first = repo.claimDueTasks("worker-a", capacity, 10, 30);
+        List<Task> second = repo.claimDueTasks("worker-b", capacity, 10, 30);
+        jdbcTemplate.update("UPDATE task_rate_limits SET refilled_at = refilled_at - interval '1 second'");
+        List<Task> later = repo.claimDueTasks("worker-b", capacity, 10, 30);
+
+        assertThat(first).hasSize(2);
+        assertThat(second).isEmpty();
+        assertThat(later).hasSize(2);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT tokens FROM task_rate_limits WHERE type = 'echo'", Double.class)).isLessThan(1.0);
+    }
+
+    /**
+     * Verifies that fairness carries over between claims of one task each.
+     * <p>
+     * This test checks:
+     * - three lanes are waiting: "echo" priority 9, "echo" priority 0 and "report" priority 0;
+     * - claimDueTasks(...) with batch size 1 is called 24 times;
+     * - every lane is served, the priority 9 lane most often;
+     * - the two priority 0 lanes take turns, their counts differ by at most one.
+     */
+    @Test
+    void claimDueTasksServesEveryLaneWithBatchSizeOne() {
+        OffsetDateTime now = OffsetDateTime.now();
+        for (int i = 0; i < 30; i++) {
+            repo.insert(pendingTask("echo", 9, now.minusMinutes(30 - i)));
+            repo.insert(pendingTask("echo", 0, now.minusMinutes(60 - i)));
+            repo.insert(pendingTask("report", 0, now.minusMinutes(60 - i)));
+        }
+
+        Map<String, Integer> served = new HashMap<>();
+        for (int i = 0; i < 24; i++) {
+            List<Task> claimed = repo.claimDueTasks("worker-test", List.of("echo", "report"), 1, 30);
+            assertThat(claimed).hasSize(1);
+            Task t = claimed.get(0);
+            served.merge(t.type() + "/" + t.priority(), 1, Integer::sum);
+        }
+
+        assertThat(served).containsOnlyKeys("echo/9", "echo/0", "report/0");
+        assertThat(served.get("echo/9")).isGreaterThan(served.get("echo/0") + served.get("report/0"));
+        assertThat(Math.abs(served.get("echo/0") - served.get("report/0"))).isLessThanOrEqualTo(1);
+    }
+
+    /**
+     * Verifies that a claim does not wait for a lane row locked by another claim.
+     * <p>
+     * This test checks:
+     * - a first claim creates the task_lanes row of echo/0;
+     * - while another transaction holds that row locked, a claim still returns
+     *   its task instead of waiting for the lock;
+     * - that claim leaves the locked row as it was;
+     * - once the lock is released, the next claim advances the lane again.
+     */
+    @Test
+    void claimDueTasksSkipsLockedLaneRows() throws Exception {
+        OffsetDateTime now = OffsetDateTime.now();
+        for (int i = 0; i < 3; i++) {
+            repo.insert(pendingTask("echo", 0, now.minusMinutes(3 - i)));
+        }
+        assertThat(repo.claimDueTasks("worker-a", List.of("echo"), 1, 30)).hasSize(1);
+        Double first = laneVtime("echo", 0);
+
+        try (Connection other = jdbcTemplate.getDataSource().getConnection()) {
+            other.setAutoCommit(false);
+            try (Statement st = other.createStatement()) {
+                st.execute("SELECT * FROM task_lanes WHERE type = 'echo' AND priority = 0 FOR UPDATE");
+            }
+
+            List<Task> claimed = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> repo.claimDueTasks("worker-b", List.of("echo"), 1, 30));
+
+            assertThat(claimed).hasSize(1);
+            assertThat(laneVtime("echo", 0)).isEqualTo(first);
+            other.rollback();
+        }
+
+        assertThat(repo.claimDueTasks("worker-a", List.of("echo"), 1, 30)).hasSize(1);
+        assertThat(laneVtime("echo", 0)).isGreaterThan(first);
+    }
+
+    /**
+     * Verifies that the claim respects the cluster-wide in-flight limit of a type.
+     * <p>
+     * This test checks:
+     * - one "echo" task is already RUNNING on another worker;
+     * - three "echo" tasks are due;
+     * - claimDueTasks(...) allows 10 tasks locally but at most 2 RUNNING in the cluster;
+     * - only one task is claimed, so two tasks of the type are RUNNING.
+     */
+    @Test
+    void claimDueTasksRespectsClusterMaxInFlight() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Task running = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"running\"}",
+                TaskStatus.RUNNING,
+                now.minusMinutes(1),
+                1,
+                3,
+                null,
+                "worker-other",
+                now.plusMinutes(1),
+                now,
+                now,
+                0
+        );
+        repo.insert(running);
+        for (int i = 0; i < 3; i++) {
+            repo.insert(pendingTask("echo", 0, now.minusMinutes(1)));
+        }
+
+        List<Task> claimed = repo.claimDueTasks(
+                "worker-test",
+                List.of(new TypeCapacity("echo", 10, 2, null, null)),
+                10,
+                30
+        );
+
+        assertThat(claimed).hasSize(1);
+    }
+
+    /**
+     * Verifies that a child runs only after all its parents are DONE.
+     * <p>
+     * This test checks:
+     * - a child of two unfinished parents is stored as BLOCKED and is not claimed;
+     * - after the first parent is DONE the child stays BLOCKED;
+     * - after the second parent is DONE the child is PENDING;
+     * - a child of a DONE parent is stored as PENDING right away;
+     * - a child of a FAILED parent is rejected.
+     */
+    @Test
+    void completeAllReleasesChildAfterAllParentsAreDone() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Task first = pendingTask("echo", 0, now.plusMinutes(5));
+        Task second = pendingTask("echo", 0, now.plusMinutes(5));
+        repo.insert(first);
+        repo.insert(second);
+
+        Task child = repo.insertWithDependencies(pendingTask("echo", 0, now.minusMinutes(1)), List.of(first.id(), second.id()), null, null);
+
+        assertThat(child.status()).isEqualTo(TaskStatus.BLOCKED);
+        assertThat(repo.claimDueTasks("worker-test", List.of("echo"), 10, 30)).isEmpty();
+
+        markRunning(first.id());
+        repo.completeAll(List.of(new TaskCompletion(first.id(), "worker-test", 1, TaskStatus.DONE, null, 0, now, now)));
+        assertThat(repo.findByID(child.id()).orElseThrow().status()).isEqualTo(TaskStatus.BLOCKED);
+
+        markRunning(second.id());
+        repo.completeAll(List.of(new TaskCompletion(second.id(), "worker-test", 1, TaskStatus.DONE, null, 0, now, now)));
+        assertThat(repo.findByID(child.id()).orElseThrow().status()).isEqualTo(TaskStatus.PENDING);
+
+        Task late = repo.insertWithDependencies(pendingTask("echo", 0, now), List.of(first.id()), null, null);
+        assertThat(late.status()).isEqualTo(TaskStatus.PENDING);
+
+        jdbcTemplate.update("UPDATE tasks SET status = 'FAILED' WHERE id = ?", second.id());
+        assertThatThrownBy(() -> repo.insertWithDependencies(pendingTask("echo", 0, now), List.of(second.id()), null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Verifies that a failed parent cancels the whole blocked subtree.
+     * <p>
+     * This test checks:
+     * - the chain parent -> child -> grandchild is created, both children are BLOCKED;
+     * - completeAll(...) marks the parent FAILED;
+     * - child and grandchild become CANCELED;
+     * - an unrelated BLOCKED task is not touched.
+     */
+    @Test
+    void failedParentCancelsBlockedDescendants() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Task parent = pendingTask("echo", 0, now.plusMinutes(5));
+        Task other = pendingTask("echo", 0, now.plusMinutes(5));
+        repo.insert(parent);
+        repo.insert(other);
+        Task child = repo.insertWithDependencies(pendingTask("echo", 0, now), List.of(parent.id()), null, null);
+        Task grandchild = repo.insertWithDependencies(pendingTask("echo", 0, now), List.of(child.id()), null, null);
+        Task unrelated = repo.insertWithDependencies(pendingTask("echo", 0, now), List.of(other.id()), null, null);
+
+        markRunning(parent.id());
+        repo.completeAll(List.of(new TaskCompletion(parent.id(), "worker-test", 1, TaskStatus.FAILED, "boom", 0, now, now)));
+
+        assertThat(repo.findByID(child.id()).orElseThrow().status()).isEqualTo(TaskStatus.CANCELED);
+        assertThat(repo.findByID(grandchild.id()).orElseThrow().status()).isEqualTo(TaskStatus.CANCELED);
+        assertThat(repo.findByID(unrelated.id()).orElseThrow().status()).isEqualTo(TaskStatus.BLOCKED);
+    }
+
+    /**
+     * Verifies the queue depth and lag used by the queue gauges.
+     * <p>
+     * This test checks:
+     * - an empty queue has no pending tasks and no lag;
+     * - a PENDING task due 2 minutes ago and one due in the future count as pending;
+     * - the lag is the wait of the oldest due task, about 120 seconds;
+     * - a RUNNING task is not counted.
+     */
+    @Test
+    void queueStatsReportsPendingDepthAndOldestDueLag() {
+        assertThat(repo.queueStats().pending()).isZero();
+        assertThat(repo.queueStats().oldestDueLagSeconds()).isZero();
+
+        OffsetDateTime now = OffsetDateTime.now();
+        repo.insert(pendingTask("echo", 0, now.minusMinutes(2)));
+        repo.insert(pendingTask("echo", 0, now.plusMinutes(5)));
+        Task running = pendingTask("echo", 0, now.minusMinutes(10));
+        repo.insert(running);
+        markRunning(running.id());
+
+        QueueStats stats = repo.queueStats();
+
+        assertThat(stats.pending()).isEqualTo(2);
+        assertThat(stats.oldestDueLagSeconds()).isBetween(119.0, 130.0);
+    }
+
+    /**
+     * Verifies the narrow projections.
+     * <p>
+     * This test checks:
+     * - findStatus() returns only the status, and empty for an unknown id;
+     * - the summary list has the same tasks and fields as the full list, without payload;
+     * - the full list and findByID() still carry the payload;
+     * - a claimed task carries the full view, with the new lease.
+     */
+    @Test
+    void projectionsReadOnlyTheColumnsTheyNeed() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Task first = pendingTask("echo", 0, now.minusMinutes(1));
+        Task second = pendingTask("echo", 3, now.plusMinutes(5));
+        repo.insert(first);
+        repo.insert(second);
+
+        assertThat(repo.findStatus(first.id())).contains(TaskStatus.PENDING);
+        assertThat(repo.findStatus(UUID.randomUUID())).isEmpty();
+
+        List<Task> full = repo.list(null, 10, 0);
+        List<Task> summary = repo.list(null, 10, 0, false);
+        assertThat(full).extracting(Task::payloadJson).containsOnly("{\"message\": \"hello\"}");
+        assertThat(summary).extracting(Task::payloadJson).containsOnlyNulls();
+        assertThat(summary)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("payloadJson")
+                .containsExactlyElementsOf(full);
+        assertThat(repo.findByID(second.id()).orElseThrow().priority()).isEqualTo(3);
+
+        List<Task> claimed = repo.claimDueTasks("worker-test", List.of("echo"), 10, 30);
+        assertThat(claimed).singleElement().satisfies(t -> {
+            assertThat(t.id()).isEqualTo(first.id());
+            assertThat(t.payloadJson()).isEqualTo("{\"message\": \"hello\"}");
+            assertThat(t.status()).isEqualTo(TaskStatus.RUNNING);
+            assertThat(t.lockedBy()).isEqualTo("worker-test");
+            assertThat(t.lockedUntil()).isAfter(now);
+            assertThat(t.attempt()).isEqualTo(1);
+        });
+    }
+
+    private Double laneVtime(String type, int priority) {
+        return jdbcTemplate.queryForObject(
+                "SELECT vtime FROM task_lanes WHERE type = ? AND priority = ?",
+                Double.class,
+                type,
+                priority
+        );
+    }
+
+    private void markRunning(UUID id) {
+        jdbcTemplate.update("""
+                UPDATE tasks
+                SET status = 'RUNNING', attempt = 1, locked_by = 'worker-test', locked_until = now() + interval '1 minute'
+                WHERE id = ?
+                """, id);
+    }
+
+    private static Task pendingTask(String type, int priority, OffsetDateTime runAt) {
+        OffsetDateTime now = OffsetDateTime.now();
+        return new Task(
+                UUID.randomUUID(),
+                type,
+                "{\"message\":\"hello\"}",
+                TaskStatus.PENDING,
+                runAt,
+                0,
+                3,
+                null,
+                null,
+                null,
+                now,
+                now,
+                priority
+        );
+    }
+
+    static class ShortLeaseHandler implements TaskHandler {
+        @Override
+        public String type() {
+            return "echo";
+        }
+
+        @Override
+        public void handle(Task task) {
+        }
+
+        @Override
+        public Duration lease() {
+            return Duration.ofSeconds(2);
+        }
+    }
 }
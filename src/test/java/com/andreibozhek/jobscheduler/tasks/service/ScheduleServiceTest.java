@@ -0,0 +1,65 @@
+package com.andreibozhek.jobscheduler.tasks.service;
+
+import com.andreibozhek.jobscheduler.IntegrationTestBase;
+import com.andreibozhek.jobscheduler.tasks.api.BadRequestApiException;
+import com.andreibozhek.jobscheduler.tasks.api.CreateScheduleRequest;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskSchedule;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.OffsetDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScheduleServiceTest extends IntegrationTestBase {
+
+    @Autowired
+    ScheduleService service;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * Verifies that schedule payloads get the same checks as task payloads.
+     * <p>
+     * What this test checks:
+     * - a payload with the reserved $payloadRef field is rejected, its fires
+     *   would otherwise look like offloaded payloads to the worker;
+     * - a payload above the inline limit but below tasks.payload.maxBytes is
+     *   accepted, there is no separate, smaller limit for schedules;
+     * - nothing is stored for the rejected request.
+     */
+    @Test
+    void createChecksPayloadLikeTasks() {
+        JsonNode reserved = objectMapper.createObjectNode()
+                .put(TaskPayloadStore.REFERENCE_FIELD, "00000000-0000-0000-0000-000000000000");
+        assertThatThrownBy(() -> service.create(request(reserved)))
+                .isInstanceOf(BadRequestApiException.class)
+                .hasMessageContaining(TaskPayloadStore.REFERENCE_FIELD);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM task_schedules", Integer.class)).isZero();
+
+        JsonNode large = objectMapper.createObjectNode().put("message", "x".repeat(20_000));
+        TaskSchedule created = service.create(request(large));
+
+        assertThat(created.payloadJson()).hasSizeGreaterThan(20_000);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM task_schedules", Integer.class)).isEqualTo(1);
+    }
+
+    private static CreateScheduleRequest request(JsonNode payload) {
+        return new CreateScheduleRequest(
+                "echo",
+                payload,
+                null,
+                60_000L,
+                null,
+                OffsetDateTime.now().plusMinutes(1),
+                null,
+                null,
+                null
+        );
+    }
+}
@@ -2,6 +2,8 @@ package com.andreibozhek.jobscheduler.tasks.service;
 
 import com.andreibozhek.jobscheduler.IntegrationTestBase;
 import com.andreibozhek.jobscheduler.tasks.api.BadRequestApiException;
+import com.andreibozhek.jobscheduler.tasks.api.BatchCreateResponse;
+import com.andreibozhek.jobscheduler.tasks.api.BatchItemResult;
 import com.andreibozhek.jobscheduler.tasks.api.CreateTaskRequest;
 import com.andreibozhek.jobscheduler.tasks.api.TaskConflictException;
 import com.andreibozhek.jobscheduler.tasks.api.UnsupportedTaskTypeException;
@@ -12,7 +14,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -43,6 +48,9 @@ class TaskServiceTest extends IntegrationTestBase {
                 "echo",
                 objectMapper.createObjectNode().put("message", "hello"),
                 OffsetDateTime.now().plusMinutes(1),
+                null,
+                null,
+                null,
                 null
         );
 
@@ -65,7 +73,10 @@ class TaskServiceTest extends IntegrationTestBase {
                 "ECHO",
                 objectMapper.createObjectNode().put("message", "hello"),
                 OffsetDateTime.now().plusMinutes(1),
-                3
+                3,
+                null,
+                null,
+                null
         );
 
         Task task = service.create(request);
@@ -87,7 +98,10 @@ class TaskServiceTest extends IntegrationTestBase {
                 "unknown",
                 objectMapper.createObjectNode().put("message", "hello"),
                 OffsetDateTime.now().plusMinutes(1),
-                3
+                3,
+                null,
+                null,
+                null
         );
 
         assertThatThrownBy(() -> service.create(request))
@@ -108,7 +122,10 @@ class TaskServiceTest extends IntegrationTestBase {
                 "echo",
                 objectMapper.createObjectNode().put("message", "hello"),
                 OffsetDateTime.now().minusMinutes(1),
-                3
+                3,
+                null,
+                null,
+                null
         );
 
         assertThatThrownBy(() -> service.create(request))
@@ -129,7 +146,10 @@ class TaskServiceTest extends IntegrationTestBase {
                 "echo",
                 objectMapper.createObjectNode().put("message", "hello"),
                 OffsetDateTime.now().plusMinutes(1),
-                3
+                3,
+                null,
+                null,
+                null
         );
 
         Task task = service.create(request);
@@ -165,7 +185,8 @@ class TaskServiceTest extends IntegrationTestBase {
                 "worker-test",
                 now.plusMinutes(1),
                 now,
-                now
+                now,
+                0
         );
 
         repo.insert(task);
@@ -179,23 +200,216 @@ class TaskServiceTest extends IntegrationTestBase {
      * <p>
      * What this test checks:
      * - the payload contains a long message;
-     * - after JSON serialization, the payload is larger than the allowed limit;
+     * - after JSON serialization, the payload is larger than tasks.payload.maxBytes;
      * - service.create(...) rejects the request;
      * - BadRequestApiException is thrown.
      */
     @Test
     void createTaskRejectsTooLargePayload() {
-        String message = "a".repeat(5000);
+        String message = "a".repeat(10 * 1024 * 1024);
 
         CreateTaskRequest request = new CreateTaskRequest(
                 "echo",
                 objectMapper.createObjectNode().put("message", message),
                 OffsetDateTime.now().plusMinutes(1),
-                3
+                3,
+                null,
+                null,
+                null
         );
 
         assertThatThrownBy(() -> service.create(request))
                 .isInstanceOf(BadRequestApiException.class);
     }
 
-}
\ No newline at end of file
+    /**
+     * Verifies that a large payload is stored outside the tasks row.
+     * <p>
+     * What this test checks:
+     * - a payload above tasks.payload.inlineMaxBytes is accepted;
+     * - the tasks row only holds the reference;
+     * - task_payloads holds the payload compressed, with its original size;
+     * - create and get return the full payload;
+     * - list returns the reference, the payload is not loaded for a page.
+     */
+    @Test
+    void createTaskStoresLargePayloadOutsideTasksRow() throws Exception {
+        CreateTaskRequest request = new CreateTaskRequest(
+                "echo",
+                objectMapper.createObjectNode().put("message", "large ".repeat(20_000)),
+                OffsetDateTime.now().plusMinutes(1),
+                3,
+                null,
+                null,
+                null
+        );
+        String payloadJson = objectMapper.writeValueAsString(request.payload());
+
+        Task created = service.create(request);
+
+        String stored = jdbcTemplate.queryForObject(
+                "SELECT payload::text FROM tasks WHERE id = ?", String.class, created.id());
+        assertThat(stored).isEqualTo("{\"$payloadRef\": \"" + created.id() + "\"}");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT size FROM task_payloads WHERE task_id = ?", Integer.class, created.id()))
+                .isEqualTo(payloadJson.length());
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT octet_length(data) FROM task_payloads WHERE task_id = ?", Integer.class, created.id()))
+                .isLessThan(payloadJson.length() / 10);
+
+        assertThat(objectMapper.readTree(created.payloadJson())).isEqualTo(request.payload());
+        assertThat(objectMapper.readTree(service.get(created.id()).orElseThrow().payloadJson()))
+                .isEqualTo(request.payload());
+        List<Task> listed = service.list(null, 10, 0, null).items();
+        assertThat(listed).hasSize(1);
+        assertThat(listed.get(0).payloadJson()).isEqualTo(stored);
+    }
+
+    /**
+     * Verifies that a retried request with an idempotency key creates one task.
+     * <p>
+     * What this test checks:
+     * - service.create(...) is called twice with the same key;
+     * - both calls return the same task id;
+     * - an insert with the key that bypasses the local cache also returns this task;
+     * - exactly one task with the key exists in the database.
+     */
+    @Test
+    void createTaskWithSameIdempotencyKeyReturnsFirstTask() {
+        String key = "order-" + UUID.randomUUID();
+        CreateTaskRequest request = new CreateTaskRequest(
+                "echo",
+                objectMapper.createObjectNode().put("message", "hello"),
+                OffsetDateTime.now().plusMinutes(1),
+                3,
+                null,
+                null,
+                key
+        );
+
+        Task first = service.create(request);
+        Task retry = service.create(request);
+        String fingerprint = jdbcTemplate.queryForObject(
+                "SELECT idempotency_fingerprint FROM tasks WHERE idempotency_key = ?", String.class, key);
+        Task other = repo.insertIfAbsent(new Task(
+                UUID.randomUUID(), "echo", "{}", TaskStatus.PENDING, OffsetDateTime.now(),
+                0, 3, null, null, null, OffsetDateTime.now(), OffsetDateTime.now(), 0
+        ), key, fingerprint);
+
+        assertThat(retry.id()).isEqualTo(first.id());
+        assertThat(other.id()).isEqualTo(first.id());
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM tasks WHERE idempotency_key = ?", Integer.class, key);
+        assertThat(count).isEqualTo(1);
+    }
+
+    /**
+     * Verifies that an idempotency key cannot be reused for another request.
+     * <p>
+     * What this test checks:
+     * - a retry with the same payload in another field order and an explicit
+     *   default maxAttempts returns the first task;
+     * - a request with the key and another payload is rejected from the local cache;
+     * - the same request is rejected with a conflict in a batch too;
+     * - an insert that bypasses the cache with another fingerprint is rejected
+     *   through the stored fingerprint;
+     * - exactly one task with the key exists in the database.
+     */
+    @Test
+    void createTaskWithReusedIdempotencyKeyIsRejected() {
+        String key = "order-" + UUID.randomUUID();
+        OffsetDateTime runAt = OffsetDateTime.now().plusMinutes(1);
+        CreateTaskRequest request = new CreateTaskRequest(
+                "echo",
+                objectMapper.createObjectNode().put("message", "hello").put("count", 1),
+                runAt,
+                null,
+                null,
+                null,
+                key
+        );
+        CreateTaskRequest sameRequest = new CreateTaskRequest(
+                "ECHO",
+                objectMapper.createObjectNode().put("count", 1).put("message", "hello"),
+                runAt,
+                3,
+                null,
+                null,
+                key
+        );
+        CreateTaskRequest otherRequest = new CreateTaskRequest(
+                "echo",
+                objectMapper.createObjectNode().put("message", "other"),
+                runAt,
+                null,
+                null,
+                null,
+                key
+        );
+
+        Task first = service.create(request);
+
+        assertThat(service.create(sameRequest).id()).isEqualTo(first.id());
+        assertThatThrownBy(() -> service.create(otherRequest))
+                .isInstanceOf(TaskConflictException.class)
+                .hasMessageContaining(key);
+        String item = """
+                {"type": "echo", "payload": {"message": "other"}, "runAt": "%s", "idempotencyKey": "%s"}
+                """.formatted(runAt, key);
+        BatchCreateResponse batch = service.createBatch(new ByteArrayInputStream(item.getBytes(StandardCharsets.UTF_8)));
+        assertThat(batch.rejected()).isEqualTo(1);
+        assertThat(batch.items().get(0).error()).contains(key);
+        assertThatThrownBy(() -> repo.insertIfAbsent(new Task(
+                UUID.randomUUID(), "echo", "{}", TaskStatus.PENDING, OffsetDateTime.now(),
+                0, 3, null, null, null, OffsetDateTime.now(), OffsetDateTime.now(), 0
+        ), key, "another-fingerprint"))
+                .isInstanceOf(TaskConflictException.class);
+
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM tasks WHERE idempotency_key = ?", Integer.class, key);
+        assertThat(count).isEqualTo(1);
+    }
+
+    /**
+     * Verifies that a batch reports items as created only once they are stored.
+     * <p>
+     * What this test checks:
+     * - a check constraint makes the database reject tasks with message "fail";
+     * - the batch has two chunk items, one of them failing, and one item with
+     *   an idempotency key that is stored on its own;
+     * - the failed chunk is reported as rejected for both of its items, with
+     *   the database error;
+     * - the keyed item is reported as created and results stay in index order;
+     * - only the keyed task is stored.
+     */
+    @Test
+    void createBatchReportsItemsOfFailedChunkAsRejected() {
+        String runAt = OffsetDateTime.now().plusMinutes(1).toString();
+        String body = """
+                {"type": "echo", "payload": {"message": "ok"}, "runAt": "%1$s"}
+                {"type": "echo", "payload": {"message": "fail"}, "runAt": "%1$s"}
+                {"type": "echo", "payload": {"message": "keyed"}, "runAt": "%1$s", "idempotencyKey": "batch-key"}
+                """.formatted(runAt);
+
+        jdbcTemplate.execute("""
+                ALTER TABLE tasks ADD CONSTRAINT test_reject_fail
+                CHECK (payload->>'message' <> 'fail') NOT VALID
+                """);
+        BatchCreateResponse response;
+        try {
+            response = service.createBatch(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE tasks DROP CONSTRAINT test_reject_fail");
+        }
+
+        assertThat(response.accepted()).isEqualTo(1);
+        assertThat(response.rejected()).isEqualTo(2);
+        assertThat(response.items()).extracting(BatchItemResult::index).containsExactly(0, 1, 2);
+        assertThat(response.items().get(0).id()).isNull();
+        assertThat(response.items().get(0).error()).contains("test_reject_fail");
+        assertThat(response.items().get(1).id()).isNull();
+        assertThat(response.items().get(2).id()).isNotNull();
+        assertThat(jdbcTemplate.queryForList("SELECT payload->>'message' FROM tasks", String.class))
+                .containsExactly("keyed");
+    }
+}
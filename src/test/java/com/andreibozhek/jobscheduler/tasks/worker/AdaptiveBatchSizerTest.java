@@ -0,0 +1,80 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveBatchSizerTest {
+
+    /**
+     * Verifies that full claims grow the batch and report a backlog.
+     * <p>
+     * This test checks:
+     * - the sizer starts at 10;
+     * - a claim that returns all requested tasks increases the size;
+     * - backlog() is true after a full claim.
+     */
+    @Test
+    void fullClaimIncreasesBatchSize() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(10, 1, 100);
+
+        sizer.onClaim(10, 10, 1_000_000);
+
+        assertThat(sizer.currentSize()).isGreaterThan(10);
+        assertThat(sizer.backlog()).isTrue();
+    }
+
+    /**
+     * Verifies that mostly empty claims halve the batch.
+     * <p>
+     * This test checks:
+     * - a claim returns less than half of the request;
+     * - the size is halved;
+     * - backlog() is false.
+     */
+    @Test
+    void sparseClaimHalvesBatchSize() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(10, 1, 100);
+
+        sizer.onClaim(10, 2, 1_000_000);
+
+        assertThat(sizer.currentSize()).isEqualTo(5);
+        assertThat(sizer.backlog()).isFalse();
+    }
+
+    /**
+     * Verifies that fast handlers make the batch grow faster.
+     * <p>
+     * This test checks:
+     * - handlers take 1 ms and a claim takes 4 ms;
+     * - a full claim grows the size by 4 instead of 1.
+     */
+    @Test
+    void fastHandlersIncreaseGrowthStep() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(10, 1, 100);
+        sizer.onTaskFinished(1_000_000);
+
+        sizer.onClaim(10, 10, 4_000_000);
+
+        assertThat(sizer.currentSize()).isEqualTo(14);
+    }
+
+    /**
+     * Verifies that the batch stays within its bounds and the free slots.
+     * <p>
+     * This test checks:
+     * - the size never exceeds maxSize;
+     * - nextBatchSize(...) is limited by the free slots.
+     */
+    @Test
+    void batchSizeRespectsBoundsAndFreeSlots() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(10, 1, 12);
+
+        for (int i = 0; i < 10; i++) {
+            sizer.onClaim(sizer.currentSize(), sizer.currentSize(), 1_000_000);
+        }
+
+        assertThat(sizer.currentSize()).isEqualTo(12);
+        assertThat(sizer.nextBatchSize(3)).isEqualTo(3);
+    }
+}
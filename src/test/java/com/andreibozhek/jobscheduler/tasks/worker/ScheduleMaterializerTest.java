@@ -0,0 +1,175 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.IntegrationTestBase;
+import com.andreibozhek.jobscheduler.tasks.domain.MisfirePolicy;
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskSchedule;
+import com.andreibozhek.jobscheduler.tasks.repo.LeaderLock;
+import com.andreibozhek.jobscheduler.tasks.repo.ScheduleRepository;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskPayloadStore;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduleMaterializerTest extends IntegrationTestBase {
+
+    @Autowired
+    ScheduleRepository schedules;
+
+    @Autowired
+    TaskRepository tasks;
+
+    @Autowired
+    TaskPayloadStore payloadStore;
+
+    @Autowired
+    LeaderLock leaderLock;
+
+    ScheduleMaterializer materializer;
+
+    @BeforeEach
+    void createMaterializer() {
+        materializer = new ScheduleMaterializer(schedules, tasks, payloadStore, leaderLock,
+                new ScheduleProperties(true, 1000, 60_000, 500, 100, 100, 60_000));
+    }
+
+    /**
+     * Verifies that fires within the horizon become tasks exactly once.
+     * <p>
+     * This test checks:
+     * - a schedule every 10 seconds starting now gets 7 tasks for a 60 second horizon;
+     * - the task ids are derived from the schedule id and the fire time;
+     * - next_fire_at moves to the first fire after the horizon;
+     * - a second run at the same time finds nothing to do;
+     * - a run that repeats the same fires (next_fire_at reset) inserts no duplicates.
+     */
+    @Test
+    void fixedRateScheduleMaterializesFiresOnce() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MILLIS);
+        TaskSchedule s = schedule("rate", now, MisfirePolicy.FIRE_ONCE);
+        schedules.insert(s);
+
+        ScheduleMaterializer.Batch first = materializer.materializeBatch(now);
+
+        assertThat(first.tasks()).isEqualTo(7);
+        assertThat(countTasks("rate")).isEqualTo(7);
+        assertThat(tasks.findByID(TaskSchedule.occurrenceId(s.id(), now.plusSeconds(60)))).isPresent();
+        assertThat(schedules.findById(s.id()).orElseThrow().nextFireAt()).isEqualTo(now.plusSeconds(70));
+
+        assertThat(materializer.materializeBatch(now).schedules()).isZero();
+
+        jdbcTemplate.update("UPDATE task_schedules SET next_fire_at = ? WHERE id = ?", now, s.id());
+        materializer.materializeBatch(now);
+        assertThat(countTasks("rate")).isEqualTo(7);
+    }
+
+    /**
+     * Verifies the misfire policies after a downtime of ten minutes.
+     * <p>
+     * This test checks:
+     * - every schedule fires once a minute and its last fire without a task was
+     *   9m45s ago, fires older than one minute count as missed;
+     * - SKIP creates only the fires not older than one minute: 45 seconds ago
+     *   and 15 seconds ahead;
+     * - FIRE_ONCE creates the same two plus one task for all missed fires, due now;
+     * - FIRE_ALL creates every fire from 9m45s ago up to 15 seconds ahead.
+     */
+    @Test
+    void missedFiresFollowMisfirePolicy() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MILLIS);
+        OffsetDateTime lastFire = now.minusMinutes(10).plusSeconds(15);
+        schedules.insert(schedule("skip", lastFire, MisfirePolicy.SKIP));
+        schedules.insert(schedule("once", lastFire, MisfirePolicy.FIRE_ONCE));
+        schedules.insert(schedule("all", lastFire, MisfirePolicy.FIRE_ALL));
+        materializer = new ScheduleMaterializer(schedules, tasks, payloadStore, leaderLock,
+                new ScheduleProperties(true, 1000, 30_000, 500, 100, 100, 60_000));
+
+        materializer.materializeBatch(now);
+
+        assertThat(countTasks("skip")).isEqualTo(2);
+        assertThat(countTasks("once")).isEqualTo(3);
+        assertThat(countTasks("all")).isEqualTo(11);
+
+        List<OffsetDateTime> onceRunAt = jdbcTemplate.queryForList(
+                "SELECT run_at FROM tasks WHERE payload->>'name' = 'once' ORDER BY run_at",
+                OffsetDateTime.class
+        );
+        assertThat(onceRunAt).containsExactly(now.minusSeconds(45), now, now.plusSeconds(15));
+    }
+
+    /**
+     * Verifies that large payloads of fires are offloaded like API payloads.
+     * <p>
+     * This test checks:
+     * - a schedule with a payload above the inline limit gets 7 tasks;
+     * - every task row holds the reference, every payload is in task_payloads;
+     * - resolving a task returns the payload of the schedule;
+     * - a run that repeats the same fires (next_fire_at reset) neither fails on
+     *   the stored payloads nor inserts duplicates.
+     */
+    @Test
+    void largePayloadsOfFiresAreOffloaded() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MILLIS);
+        String payload = "{\"name\": \"rate\", \"message\": \"" + "x".repeat(4_000) + "\"}";
+        TaskSchedule s = schedule("rate", payload, now, MisfirePolicy.FIRE_ONCE);
+        schedules.insert(s);
+
+        assertThat(materializer.materializeBatch(now).tasks()).isEqualTo(7);
+
+        Task stored = tasks.findByID(TaskSchedule.occurrenceId(s.id(), now)).orElseThrow();
+        assertThat(TaskPayloadStore.isReference(stored.payloadJson())).isTrue();
+        assertThat(payloadStore.resolve(stored).payloadJson()).isEqualTo(payload);
+        assertThat(countRows("SELECT count(*) FROM tasks WHERE payload->>'$payloadRef' IS NOT NULL")).isEqualTo(7);
+        assertThat(countRows("SELECT count(*) FROM task_payloads")).isEqualTo(7);
+
+        jdbcTemplate.update("UPDATE task_schedules SET next_fire_at = ? WHERE id = ?", now, s.id());
+        assertThat(materializer.materializeBatch(now).tasks()).isEqualTo(7);
+        assertThat(countRows("SELECT count(*) FROM tasks")).isEqualTo(7);
+        assertThat(countRows("SELECT count(*) FROM task_payloads")).isEqualTo(7);
+    }
+
+    private static TaskSchedule schedule(String name, OffsetDateTime nextFireAt, MisfirePolicy misfirePolicy) {
+        return schedule(name, "{\"name\":\"" + name + "\"}", nextFireAt, misfirePolicy);
+    }
+
+    private static TaskSchedule schedule(
+            String name, String payloadJson, OffsetDateTime nextFireAt, MisfirePolicy misfirePolicy) {
+        long rateMs = "rate".equals(name) ? 10_000 : 60_000;
+        return new TaskSchedule(
+                UUID.randomUUID(),
+                "echo",
+                payloadJson,
+                null,
+                rateMs,
+                "UTC",
+                3,
+                0,
+                misfirePolicy,
+                nextFireAt,
+                nextFireAt
+        );
+    }
+
+    private int countTasks(String name) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM tasks WHERE payload->>'name' = ?",
+                Integer.class,
+                name
+        );
+        return count == null ? 0 : count;
+    }
+
+    private int countRows(String sql) {
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class);
+        return count == null ? 0 : count;
+    }
+}
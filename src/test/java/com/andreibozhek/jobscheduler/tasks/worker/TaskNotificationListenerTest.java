@@ -0,0 +1,92 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.IntegrationTestBase;
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a real worker with the notification listener, so the context is closed
+ * after the class and its worker does not claim tasks of other tests.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "worker.enabled=true",
+                "worker.listen=true",
+                "worker.fixedDelayMs=60000",
+                "worker.wheel.enabled=false",
+                "tasks.schedules.enabled=false",
+                "tasks.archive.enabled=false"
+        }
+)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class TaskNotificationListenerTest extends IntegrationTestBase {
+
+    @Autowired
+    TaskRepository repo;
+
+    /**
+     * Verifies that an inserted task wakes up the worker through LISTEN/NOTIFY.
+     * <p>
+     * This test checks:
+     * - the listener connects to the test database with the connection details
+     *   of the pool and runs LISTEN task_created;
+     * - the worker polls only once a minute and the timing wheel is off, so
+     *   only the notification of the insert trigger can start a claim;
+     * - a due task inserted after LISTEN is DONE within a few seconds.
+     */
+    @Test
+    void insertedTaskWakesUpWorker() throws Exception {
+        awaitTrue(() -> count("""
+                SELECT count(*)
+                FROM pg_stat_activity
+                WHERE datname = current_database()
+                AND query = 'LISTEN task_created'
+                """) >= 1);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        Task task = new Task(
+                UUID.randomUUID(),
+                "echo",
+                "{\"message\":\"wake up\"}",
+                TaskStatus.PENDING,
+                now.minusSeconds(1),
+                0,
+                3,
+                null,
+                null,
+                null,
+                now,
+                now,
+                0
+        );
+        repo.insert(task);
+
+        awaitTrue(() -> repo.findStatus(task.id()).orElseThrow() == TaskStatus.DONE);
+        assertThat(repo.findStatus(task.id())).contains(TaskStatus.DONE);
+    }
+
+    private int count(String sql) {
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition met within 10 s").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.IntegrationTestBase;
+import com.andreibozhek.jobscheduler.tasks.domain.Task;
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import com.andreibozhek.jobscheduler.tasks.handler.TaskHandler;
+import com.andreibozhek.jobscheduler.tasks.repo.TaskRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stops a real worker while tasks run, so the context is closed after the
+ * class and the stopped worker is not reused by other tests.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "worker.enabled=true",
+                "worker.listen=false",
+                "worker.fixedDelayMs=100",
+                "worker.shutdownTimeoutMs=200",
+                "worker.wheel.enabled=false",
+                "tasks.schedules.enabled=false",
+                "tasks.archive.enabled=false"
+        }
+)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class TaskWorkerShutdownTest extends IntegrationTestBase {
+
+    static final CountDownLatch started = new CountDownLatch(2);
+    static final CountDownLatch stubbornDone = new CountDownLatch(1);
+
+    @Autowired
+    TaskRepository repo;
+
+    @Autowired
+    TaskWorker worker;
+
+    /**
+     * Verifies that shutdown does not release tasks whose handler is still running.
+     * <p>
+     * This test checks:
+     * - after worker.shutdownTimeoutMs, running handlers are interrupted;
+     * - a handler that stops on the interrupt queues its result, so its task
+     *   leaves RUNNING;
+     * - a handler that ignores the interrupt keeps its task RUNNING and locked
+     *   by the worker, so no other worker starts it while it still runs.
+     */
+    @Test
+    void stopLeavesStillRunningTaskToLeaseExpiry() throws Exception {
+        Task stubborn = task("stubborn");
+        Task sleepy = task("sleepy");
+        repo.insert(stubborn);
+        repo.insert(sleepy);
+
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        try {
+            worker.stop();
+
+            assertThat(repo.findStatus(stubborn.id())).contains(TaskStatus.RUNNING);
+            assertThat(jdbcTemplate.queryForObject(
+                    "SELECT locked_by FROM tasks WHERE id = ?", String.class, stubborn.id())).isNotNull();
+            awaitTrue(() -> repo.findStatus(sleepy.id()).orElseThrow() != TaskStatus.RUNNING);
+        } finally {
+            stubbornDone.countDown();
+        }
+    }
+
+    private static Task task(String type) {
+        OffsetDateTime now = OffsetDateTime.now();
+        return new Task(UUID.randomUUID(), type, "{}", TaskStatus.PENDING, now.minusSeconds(1),
+                0, 3, null, null, null, now, now, 0);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition met within 10 s").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    @TestConfiguration
+    static class Handlers {
+
+        @Bean
+        TaskHandler stubbornHandler() {
+            return new TaskHandler() {
+                @Override
+                public String type() {
+                    return "stubborn";
+                }
+
+                @Override
+                public void handle(Task task) {
+                    started.countDown();
+                    while (true) {
+                        try {
+                            stubbornDone.await();
+                            return;
+                        } catch (InterruptedException ignored) {
+                            // Keeps running like a handler that ignores interrupts
+                        }
+                    }
+                }
+            };
+        }
+
+        @Bean
+        TaskHandler sleepyHandler() {
+            return new TaskHandler() {
+                @Override
+                public String type() {
+                    return "sleepy";
+                }
+
+                @Override
+                public void handle(Task task) {
+                    started.countDown();
+                    try {
+                        Thread.sleep(60_000);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("interrupted", ex);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    /**
+     * Verifies that a task fires in the tick of its run time.
+     * <p>
+     * This test checks:
+     * - a task is added 1 second ahead;
+     * - advancing to just before the run time fires nothing;
+     * - advancing to the run time fires the task;
+     * - the wheel is empty afterwards.
+     */
+    @Test
+    void advanceFiresTaskAtItsRunTime() {
+        long start = 1_000_000L;
+        TimingWheel wheel = new TimingWheel(50, 64, 2, start);
+        UUID taskId = UUID.randomUUID();
+
+        wheel.add(taskId, start + 1000);
+
+        assertThat(wheel.advance(start + 950)).isEmpty();
+        assertThat(wheel.advance(start + 1000)).containsExactly(taskId);
+        assertThat(wheel.isEmpty()).isTrue();
+    }
+
+    /**
+     * Verifies that tasks on the higher level move down and still fire on time.
+     * <p>
+     * This test checks:
+     * - a task is added further ahead than one rotation of the lowest level;
+     * - it does not fire early;
+     * - it fires when its run time is reached.
+     */
+    @Test
+    void advanceCascadesTasksFromHigherLevel() {
+        long start = 1_000_000L;
+        TimingWheel wheel = new TimingWheel(50, 64, 2, start);
+        UUID taskId = UUID.randomUUID();
+        long runAt = start + 20_000;
+
+        wheel.add(taskId, runAt);
+
+        assertThat(wheel.advance(runAt - 50)).isEmpty();
+        assertThat(wheel.advance(runAt)).containsExactly(taskId);
+    }
+
+    /**
+     * Verifies that adding the same task again replaces its run time.
+     * <p>
+     * This test checks:
+     * - a task is added twice with different run times;
+     * - the old run time does not fire;
+     * - the new run time fires the task once.
+     */
+    @Test
+    void addWithNewRunTimeReplacesOldEntry() {
+        long start = 1_000_000L;
+        TimingWheel wheel = new TimingWheel(50, 64, 2, start);
+        UUID taskId = UUID.randomUUID();
+
+        wheel.add(taskId, start + 500);
+        wheel.add(taskId, start + 2000);
+
+        assertThat(wheel.advance(start + 1000)).isEmpty();
+        assertThat(wheel.advance(start + 2000)).containsExactly(taskId);
+        assertThat(wheel.size()).isZero();
+    }
+
+    /**
+     * Verifies that tasks beyond the horizon are rejected.
+     * <p>
+     * This test checks:
+     * - add(...) returns false for a run time beyond the horizon;
+     * - the task is not stored.
+     */
+    @Test
+    void addRejectsTaskBeyondHorizon() {
+        long start = 1_000_000L;
+        TimingWheel wheel = new TimingWheel(50, 64, 2, start);
+
+        boolean added = wheel.add(UUID.randomUUID(), start + wheel.horizonMs() * 2);
+
+        assertThat(added).isFalse();
+        assertThat(wheel.isEmpty()).isTrue();
+    }
+
+    /**
+     * Verifies that overdue tasks fire on the next advance.
+     * <p>
+     * This test checks:
+     * - a task is added with a run time in the past;
+     * - the next advance(...) returns it.
+     */
+    @Test
+    void advanceFiresOverdueTaskImmediately() {
+        long start = 1_000_000L;
+        TimingWheel wheel = new TimingWheel(50, 64, 2, start);
+        UUID taskId = UUID.randomUUID();
+
+        wheel.add(taskId, start - 500);
+
+        List<UUID> fired = wheel.advance(start);
+
+        assertThat(fired).containsExactly(taskId);
+    }
+}
@@ -0,0 +1,57 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    /**
+     * Verifies that a full bucket allows a burst up to its capacity.
+     * <p>
+     * This test checks:
+     * - a new bucket with capacity 5 has 5 tokens;
+     * - five single tokens can be taken at the same instant;
+     * - the sixth token is refused and nothing is taken;
+     * - the wait for the next token is one interval (100 ms at 10 per second).
+     */
+    @Test
+    void fullBucketAllowsBurstUpToCapacity() {
+        AtomicLong clock = new AtomicLong(1_000_000_000L);
+        TokenBucket bucket = new TokenBucket(10, 5, clock::get);
+
+        assertThat(bucket.available()).isEqualTo(5);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryTake(1)).isTrue();
+        }
+
+        assertThat(bucket.tryTake(1)).isFalse();
+        assertThat(bucket.available()).isZero();
+        assertThat(bucket.nanosUntilAvailable()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    /**
+     * Verifies that tokens come back with the configured rate.
+     * <p>
+     * This test checks:
+     * - an empty bucket at 10 tokens per second is used;
+     * - after 250 ms two whole tokens are available;
+     * - after a long pause the bucket holds no more than its capacity.
+     */
+    @Test
+    void tokensRefillWithRateUpToCapacity() {
+        AtomicLong clock = new AtomicLong(1_000_000_000L);
+        TokenBucket bucket = new TokenBucket(10, 5, clock::get);
+        bucket.tryTake(5);
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertThat(bucket.available()).isEqualTo(2);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(bucket.available()).isEqualTo(5);
+        assertThat(bucket.nanosUntilAvailable()).isZero();
+    }
+}
@@ -0,0 +1,67 @@
+package com.andreibozhek.jobscheduler.tasks.worker;
+
+import com.andreibozhek.jobscheduler.tasks.domain.TaskStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkerMetricsTest {
+
+    /**
+     * Verifies that handler runs are counted per type and outcome.
+     * <p>
+     * This test checks:
+     * - timers exist for every type and outcome before any task ran;
+     * - DONE, PENDING and FAILED results are recorded as success, retry and failure;
+     * - a type without a handler is recorded as unknown.
+     */
+    @Test
+    void taskDurationIsRecordedPerTypeAndOutcome() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        WorkerMetrics metrics = new WorkerMetrics(registry, List.of("echo", "report"));
+
+        assertThat(registry.get("worker.task.duration").tags("type", "report", "outcome", "failure").timer().count())
+                .isZero();
+
+        metrics.onTaskFinished("echo", TaskStatus.DONE, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.onTaskFinished("echo", TaskStatus.DONE, TimeUnit.MILLISECONDS.toNanos(40));
+        metrics.onTaskFinished("echo", TaskStatus.PENDING, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.onTaskFinished("report", TaskStatus.FAILED, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.onTaskFinished("other", TaskStatus.DONE, TimeUnit.MILLISECONDS.toNanos(5));
+
+        var success = registry.get("worker.task.duration").tags("type", "echo", "outcome", "success").timer();
+        assertThat(success.count()).isEqualTo(2);
+        assertThat(success.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(60);
+        assertThat(registry.get("worker.task.duration").tags("type", "echo", "outcome", "retry").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("worker.task.duration").tags("type", "report", "outcome", "failure").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("worker.task.duration").tags("type", "unknown", "outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    /**
+     * Verifies the claim meters.
+     * <p>
+     * This test checks:
+     * - poll and fired claims are recorded by separate latency timers;
+     * - the fill of a poll claim is claimed divided by requested tasks.
+     */
+    @Test
+    void claimLatencyAndFillAreRecorded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        WorkerMetrics metrics = new WorkerMetrics(registry, List.of("echo"));
+
+        metrics.onPollClaim(TimeUnit.MILLISECONDS.toNanos(3), 10, 5);
+        metrics.onPollClaim(TimeUnit.MILLISECONDS.toNanos(3), 10, 10);
+        metrics.onFiredClaim(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(registry.get("worker.claim.latency").tag("trigger", "poll").timer().count()).isEqualTo(2);
+        assertThat(registry.get("worker.claim.latency").tag("trigger", "fired").timer().count()).isEqualTo(1);
+        assertThat(registry.get("worker.claim.fill").summary().mean()).isEqualTo(0.75);
+    }
+}